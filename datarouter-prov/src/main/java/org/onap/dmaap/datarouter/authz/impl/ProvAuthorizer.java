@@ -26,20 +26,31 @@ package org.onap.dmaap.datarouter.authz.impl;
 import com.att.eelf.configuration.EELFLogger;
 import com.att.eelf.configuration.EELFManager;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.http.HttpServletRequest;
 import org.onap.dmaap.datarouter.authz.AuthorizationResponse;
 import org.onap.dmaap.datarouter.authz.Authorizer;
 import org.onap.dmaap.datarouter.authz.impl.AuthzResource.ResourceType;
 
 /** Authorizer for the provisioning API for Data Router R1.
+ *
+ * <p>Ownership decisions for individual feeds and subscriptions are cached, keyed by the resource, the subject and
+ * the subject's group, so a repeated request does not go back to the {@link ProvDataProvider}.  The cache is
+ * discarded whenever {@link #invalidateCache()} is called, which the provisioning server does each time the
+ * provisioning data changes.
  *
  * @author J. F. Lucas
  *
  */
 public class ProvAuthorizer implements Authorizer {
 
+    private static final int MAX_CACHED_DECISIONS = 10000;
+    private static final AtomicLong cacheGeneration = new AtomicLong();
+
     private EELFLogger log;
     private ProvDataProvider provData;
+    private volatile DecisionCache decisions = new DecisionCache(cacheGeneration.get());
 
     private static final String SUBJECT_HEADER = "X-DMAAP-DR-ON-BEHALF-OF";  // HTTP header carrying requester identity
     // HTTP header carrying requester identity  by group Rally : US708115
@@ -126,41 +137,86 @@ public class ProvAuthorizer implements Authorizer {
         return method != null && ("GET".equalsIgnoreCase(method) || "POST".equalsIgnoreCase(method));
     }
 
+    /**
+     * Discard all cached authorization decisions, in every ProvAuthorizer.  This must be called whenever the owner or
+     * group of a feed or subscription, or the members of a group, may have changed.
+     */
+    public static void invalidateCache() {
+        cacheGeneration.incrementAndGet();
+    }
+
     private boolean allowFeedAccess(AuthzResource resource, String method, String subject, String subjectgroup) {
-        boolean decision = false;
         // Allow GET, PUT, or DELETE if requester (subject) is the owner (publisher) of the feed
         if ( method != null && ("GET".equalsIgnoreCase(method) || "PUT".equalsIgnoreCase(method)
                                         || "DELETE".equalsIgnoreCase(method))) {
-
-            String owner = provData.getFeedOwner(resource.getId());
-            decision = (owner != null) && owner.equals(subject);
-            //Verifying by group Rally : US708115
-            if (subjectgroup != null) {
-                String feedOwner = provData.getGroupByFeedGroupId(subject, resource.getId());
-                decision = (feedOwner != null) && feedOwner.equals(subjectgroup);
-            }
+            return isOwner(resource, subject, subjectgroup);
         }
-        return decision;
+        return false;
     }
 
     private boolean allowSubAccess(AuthzResource resource, String method, String subject, String subjectgroup) {
-        boolean decision = false;
-
         // Allow GET, PUT, or DELETE if requester (subject) is the owner of the subscription (subscriber)
         if (method != null && ("GET".equalsIgnoreCase(method) || "PUT".equalsIgnoreCase(method)
                                        || "DELETE".equalsIgnoreCase(method) || "POST".equalsIgnoreCase(method))) {
+            return isOwner(resource, subject, subjectgroup);
+        }
+        return false;
+    }
 
-            String owner = provData.getSubscriptionOwner(resource.getId());
-            decision = (owner != null) && owner.equals(subject);
-
-            //Verifying by group Rally : US708115
-            if (subjectgroup != null) {
-                String feedowner = provData.getGroupBySubGroupId(subject, resource.getId());
-                decision = (feedowner != null) && feedowner.equals(subjectgroup);
+    private boolean isOwner(AuthzResource resource, String subject, String subjectgroup) {
+        long generation = cacheGeneration.get();
+        DecisionCache cache = decisions;
+        if (cache.generation != generation) {
+            cache = new DecisionCache(generation);
+            decisions = cache;
+        }
+        String key = resource.getType() + "|" + resource.getId() + "|" + subject + "|" + subjectgroup;
+        Boolean decision = cache.map.get(key);
+        if (decision == null) {
+            decision = (resource.getType() == ResourceType.FEED)
+                ? isFeedOwner(resource, subject, subjectgroup) : isSubOwner(resource, subject, subjectgroup);
+            // If the data changed while deciding, this cache is already stale, and the entry will never be seen
+            if (cache.map.size() >= MAX_CACHED_DECISIONS) {
+                cache.map.clear();
             }
+            cache.map.put(key, decision);
+        }
+        return decision;
+    }
+
+    private boolean isFeedOwner(AuthzResource resource, String subject, String subjectgroup) {
+        boolean decision;
+        String owner = provData.getFeedOwner(resource.getId());
+        decision = (owner != null) && owner.equals(subject);
+        //Verifying by group Rally : US708115
+        if (subjectgroup != null) {
+            String feedOwner = provData.getGroupByFeedGroupId(subject, resource.getId());
+            decision = (feedOwner != null) && feedOwner.equals(subjectgroup);
+        }
+        return decision;
+    }
+
+    private boolean isSubOwner(AuthzResource resource, String subject, String subjectgroup) {
+        boolean decision;
+        String owner = provData.getSubscriptionOwner(resource.getId());
+        decision = (owner != null) && owner.equals(subject);
+
+        //Verifying by group Rally : US708115
+        if (subjectgroup != null) {
+            String feedowner = provData.getGroupBySubGroupId(subject, resource.getId());
+            decision = (feedowner != null) && feedowner.equals(subjectgroup);
         }
 
         return decision;
     }
 
+    private static class DecisionCache {
+
+        private final long generation;
+        private final Map<String, Boolean> map = new ConcurrentHashMap<>();
+
+        DecisionCache(long generation) {
+            this.generation = generation;
+        }
+    }
 }
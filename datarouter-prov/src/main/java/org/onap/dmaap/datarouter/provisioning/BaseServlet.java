@@ -37,12 +37,15 @@ import java.security.cert.X509Certificate;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.UUID;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -66,8 +69,10 @@ import org.onap.dmaap.datarouter.provisioning.beans.NodeClass;
 import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
 import org.onap.dmaap.datarouter.provisioning.beans.Subscription;
 import org.onap.dmaap.datarouter.provisioning.beans.Updateable;
+import org.onap.dmaap.datarouter.provisioning.utils.AddressAcl;
 import org.onap.dmaap.datarouter.provisioning.utils.Poker;
 import org.onap.dmaap.datarouter.provisioning.utils.ProvDbUtils;
+import org.onap.dmaap.datarouter.provisioning.utils.RateLimitFilter;
 import org.onap.dmaap.datarouter.provisioning.utils.SynchronizerTask;
 import org.onap.dmaap.datarouter.provisioning.utils.ThrottleFilter;
 import org.slf4j.MDC;
@@ -84,6 +89,7 @@ import org.slf4j.MDC;
 public class BaseServlet extends HttpServlet implements ProvDataProvider {
 
     public static final String BEHALF_HEADER = "X-DMAAP-DR-ON-BEHALF-OF";
+    public static final String PROV_VERSION_HEADER = "X-DMAAP-DR-PROV-VERSION";
 
     public static final String EXCLUDE_AAF_HEADER = "X-EXCLUDE-AAF";
 
@@ -120,6 +126,8 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
     public static final String LOGLIST_CONTENT_TYPE = "application/vnd.dmaap-dr.log-list; version=1.0";
     public static final String PROVFULL_CONTENT_TYPE1 = "application/vnd.dmaap-dr.provfeed-full; version=1.0";
     public static final String PROVFULL_CONTENT_TYPE2 = "application/vnd.dmaap-dr.provfeed-full; version=2.0";
+    public static final String PROVDELTA_CONTENT_TYPE = "application/vnd.dmaap-dr.provfeed-delta; version=1.0";
+    public static final String WATCH_CONTENT_TYPE = "application/vnd.dmaap-dr.provfeed-watch; version=1.0";
     public static final String CERT_ATTRIBUTE = "javax.servlet.request.X509Certificate";
 
     static final String DB_PROBLEM_MSG = "There has been a problem with the DB.  It is suggested you "
@@ -168,9 +176,14 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
      */
     private static boolean requireCert = true;
     /**
-     * The set of authorized addresses and networks; pulled from the DB (PROV_AUTH_ADDRESSES).
+     * The authorized addresses and networks; pulled from the DB (PROV_AUTH_ADDRESSES), and compiled so that no DNS
+     * lookups are needed to check a request.
      */
-    private static Set<String> authorizedAddressesAndNetworks = new HashSet<>();
+    private static volatile AddressAcl authorizedAddresses = AddressAcl.compile(Collections.emptySet());
+    /**
+     * Timer used to re-resolve any host names in PROV_AUTH_ADDRESSES.
+     */
+    private static Timer authorizedAddressesTimer;
     /**
      * The set of authorized names; pulled from the DB (PROV_AUTH_SUBJECTS).
      */
@@ -413,12 +426,8 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
         // Is remote IP authorized?
         String remote = request.getRemoteAddr();
         try {
-            boolean found = false;
             InetAddress ip = InetAddress.getByName(remote);
-            for (String addrnet : authorizedAddressesAndNetworks) {
-                found |= addressMatchesNetwork(ip, addrnet);
-            }
-            if (!found) {
+            if (!authorizedAddresses.matches(ip)) {
                 return "Unauthorized address: " + remote;
             }
         } catch (UnknownHostException e) {
@@ -462,56 +471,12 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
         return false;
     }
 
-    /**
-     * Check if an IP address matches a network address.
-     *
-     * @param ip the IP address
-     * @param str  the network address; a bare IP address may be matched also
-     * @return true if they intersect
-     */
-    private static boolean addressMatchesNetwork(InetAddress ip, String str) {
-        int mlen = -1;
-        int substr = str.indexOf('/');
-        if (substr >= 0) {
-            mlen = Integer.parseInt(str.substring(substr + 1));
-            str = str.substring(0, substr);
-        }
-        try {
-            InetAddress i2 = InetAddress.getByName(str);
-            byte[] b1 = ip.getAddress();
-            byte[] b2 = i2.getAddress();
-            if (b1.length != b2.length) {
-                return false;
-            }
-            if (mlen > 0) {
-                byte[] masks = {
-                    (byte) 0x00, (byte) 0x80, (byte) 0xC0, (byte) 0xE0,
-                    (byte) 0xF0, (byte) 0xF8, (byte) 0xFC, (byte) 0xFE
-                };
-                byte mask = masks[mlen % 8];
-                for (substr = mlen / 8; substr < b1.length; substr++) {
-                    b1[substr] &= mask;
-                    b2[substr] &= mask;
-                    mask = 0;
-                }
-            }
-            for (substr = 0; substr < b1.length; substr++) {
-                if (b1[substr] != b2[substr]) {
-                    return false;
-                }
-            }
-        } catch (UnknownHostException e) {
-            intlogger.error("PROV0053 BaseServlet.addressMatchesNetwork: " + e.getMessage(), e);
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Something has changed in the provisioning data. Start the timers that will cause the pre-packaged JSON string to
      * be regenerated, and cause nodes and the other provisioning server to be notified.
      */
     public static void provisioningDataChanged() {
+        ProvAuthorizer.invalidateCache();
         long now = System.currentTimeMillis();
         Poker pkr = Poker.getPoker();
         pkr.setTimers(now + (pokeTimer1 * 1000L), now + (pokeTimer2 * 1000L));
@@ -524,7 +489,7 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
         Map<String, String> map = Parameters.getParameters();
         requireSecure = getBoolean(map, Parameters.PROV_REQUIRE_SECURE);
         requireCert = getBoolean(map, Parameters.PROV_REQUIRE_CERT);
-        authorizedAddressesAndNetworks = getSet(map, Parameters.PROV_AUTH_ADDRESSES);
+        setAuthorizedAddresses(getSet(map, Parameters.PROV_AUTH_ADDRESSES));
         authorizedNames = getSet(map, Parameters.PROV_AUTH_SUBJECTS);
         nodes = getSet(map, Parameters.NODES).toArray(new String[0]);
         maxFeeds = getInt(map, Parameters.PROV_MAXFEED_COUNT, DEFAULT_MAX_FEEDS);
@@ -587,8 +552,9 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
         }
         podAddresses = na;
 
-        // Update ThrottleFilter
+        // Update ThrottleFilter and RateLimitFilter
         ThrottleFilter.configure();
+        RateLimitFilter.configure();
 
         // Check if we are active or standby POD
         if (!isInitialActivePOD() && !isInitialStandbyPOD()) {
@@ -676,6 +642,9 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
             rv = false;
             intlogger.warn("PROV0005 doInsert: " + e.getMessage(), e);
         }
+        if (rv) {
+            Poker.getPoker().entityChanged(bean);
+        }
         return rv;
     }
 
@@ -693,6 +662,9 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
             rv = false;
             intlogger.warn("PROV0006 doUpdate: " + e.getMessage(), e);
         }
+        if (rv) {
+            Poker.getPoker().entityChanged(bean);
+        }
         return rv;
     }
 
@@ -710,9 +682,51 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
             rv = false;
             intlogger.warn("PROV0007 doDelete: " + e.getMessage(), e);
         }
+        if (rv) {
+            Poker.getPoker().entityChanged(bean);
+        }
         return rv;
     }
 
+    /**
+     * Compile a new set of authorized addresses, and make sure the timer which re-resolves host names is running.
+     */
+    private static void setAuthorizedAddresses(Set<String> entries) {
+        AddressAcl acl = AddressAcl.compile(entries);
+        synchronized (BaseServlet.class) {
+            authorizedAddresses = acl;
+            if (authorizedAddressesTimer == null) {
+                long interval = 300000L;
+                try {
+                    interval = Long.parseLong(ProvRunner.getProvProperties().getProperty(
+                        "org.onap.dmaap.datarouter.provserver.auth_addresses_refresh", "300000"));
+                } catch (NumberFormatException e) {
+                    intlogger.warn("PROV0054 Bad auth_addresses_refresh, using " + interval + " ms");
+                }
+                authorizedAddressesTimer = new Timer("AuthAddressRefresh", true);
+                authorizedAddressesTimer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        refreshAuthorizedAddresses();
+                    }
+                }, interval, interval);
+            }
+        }
+    }
+
+    /**
+     * Resolve the host names in the authorized addresses again, unless the addresses have been changed meanwhile.
+     */
+    private static void refreshAuthorizedAddresses() {
+        AddressAcl acl = authorizedAddresses;
+        AddressAcl refreshed = acl.refresh();
+        synchronized (BaseServlet.class) {
+            if (authorizedAddresses == acl) {
+                authorizedAddresses = refreshed;
+            }
+        }
+    }
+
     private static boolean getBoolean(Map<String, String> map, String name) {
         String str = map.get(name);
         return "true".equalsIgnoreCase(str);
@@ -811,7 +825,7 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
     public String getFeedOwner(String feedId) {
         try {
             int intID = Integer.parseInt(feedId);
-            Feed feed = Feed.getFeedById(intID);
+            Feed feed = Feed.getCachedFeedById(intID);
             if (feed != null) {
                 return feed.getPublisher();
             }
@@ -825,7 +839,7 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
     public String getFeedClassification(String feedId) {
         try {
             int intID = Integer.parseInt(feedId);
-            Feed feed = Feed.getFeedById(intID);
+            Feed feed = Feed.getCachedFeedById(intID);
             if (feed != null) {
                 return feed.getAuthorization().getClassification();
             }
@@ -839,7 +853,7 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
     public String getSubscriptionOwner(String subId) {
         try {
             int intID = Integer.parseInt(subId);
-            Subscription sub = Subscription.getSubscriptionById(intID);
+            Subscription sub = Subscription.getCachedSubscriptionById(intID);
             if (sub != null) {
                 return sub.getSubscriber();
             }
@@ -882,11 +896,11 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
     @Override
     public String getGroupByFeedGroupId(String owner, String feedId) {
         try {
-            Feed feed = Feed.getFeedById(Integer.parseInt(feedId));
+            Feed feed = Feed.getCachedFeedById(Integer.parseInt(feedId));
             if (feed != null) {
                 int groupid = feed.getGroupid();
                 if (groupid > 0) {
-                    Group group = Group.getGroupById(groupid);
+                    Group group = Group.getCachedGroupById(groupid);
                     if (group != null && isUserMemberOfGroup(group, owner)) {
                         return group.getAuthid();
                     }
@@ -907,11 +921,11 @@ public class BaseServlet extends HttpServlet implements ProvDataProvider {
     public String getGroupBySubGroupId(String owner, String subId) {
         try {
             int intID = Integer.parseInt(subId);
-            Subscription sub = Subscription.getSubscriptionById(intID);
+            Subscription sub = Subscription.getCachedSubscriptionById(intID);
             if (sub != null) {
                 int groupid = sub.getGroupid();
                 if (groupid > 0) {
-                    Group group = Group.getGroupById(groupid);
+                    Group group = Group.getCachedGroupById(groupid);
                     if (group != null && isUserMemberOfGroup(group, owner)) {
                         return group.getAuthid();
                     }
@@ -38,6 +38,7 @@ import org.onap.dmaap.datarouter.authz.AuthorizationResponse;
 import org.onap.dmaap.datarouter.provisioning.beans.EventLogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.Feed;
 import org.onap.dmaap.datarouter.provisioning.eelf.EelfMsgs;
+import org.onap.dmaap.datarouter.provisioning.utils.Poker;
 
 
 
@@ -202,7 +203,7 @@ public class FeedServlet extends ProxyServlet {
                 sendResponseError(resp, HttpServletResponse.SC_BAD_REQUEST, message, eventlogger);
                 return;
             }
-            Feed feed = Feed.getFeedById(feedid);
+            Feed feed = Feed.getCachedFeedById(feedid);
             if (feed == null || feed.isDeleted()) {
                 message = MISSING_FEED;
                 elr.setMessage(message);
@@ -405,7 +406,9 @@ public class FeedServlet extends ProxyServlet {
                         Boolean changeowner = (Boolean) jo.get("changeowner");
                         if (changeowner != null && changeowner.equals(true)) {
                             feed.setPublisher(req.getHeader(BEHALF_HEADER));
-                            feed.changeOwnerShip();
+                            if (feed.changeOwnerShip()) {
+                                Poker.getPoker().entityChanged(feed);
+                            }
                         }
                     } catch (JSONException je) {
                         eventlogger.error("PROV0103 FeedServlet.doPut: " + je.getMessage(), je);
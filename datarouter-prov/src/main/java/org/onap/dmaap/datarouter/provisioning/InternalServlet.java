@@ -38,16 +38,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Properties;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.json.JSONArray;
+import org.json.JSONObject;
 import org.onap.dmaap.datarouter.provisioning.beans.EventLogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.LogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
 import org.onap.dmaap.datarouter.provisioning.eelf.EelfMsgs;
 import org.onap.dmaap.datarouter.provisioning.utils.LogfileLoader;
 import org.onap.dmaap.datarouter.provisioning.utils.Poker;
+import org.onap.dmaap.datarouter.provisioning.utils.ProvisioningGeneration;
+import org.onap.dmaap.datarouter.provisioning.utils.ProvisioningWatchers;
 import org.onap.dmaap.datarouter.provisioning.utils.RLEBitSet;
 import org.onap.dmaap.datarouter.provisioning.utils.SynchronizerTask;
 
@@ -68,7 +72,25 @@ import org.onap.dmaap.datarouter.provisioning.utils.SynchronizerTask;
  * <tr class="altColor">
  * <td class="colFirst">/internal/prov</td>
  * <td class="colOne">GET</td>
- * <td class="colLast">used to GET a full JSON copy of the provisioning data.</td>
+ * <td class="colLast">used to GET a full JSON copy of the provisioning data.  The version of the data is returned in
+ * the X-DMAAP-DR-PROV-VERSION header, and as a strong ETag; a request with a matching If-None-Match header gets a 304.
+ * The copy is gzip'd if the Accept-Encoding header allows it, and then has its own ETag.  If a <i>since=&lt;version&gt;</i> parameter is given,
+ * only the changes made since that version are returned, unless the version is too old, in which case the full copy
+ * is returned.</td>
+ * </tr>
+ * <tr class="altColor">
+ * <td class="colFirst">/internal/prov/watch</td>
+ * <td class="colOne">GET</td>
+ * <td class="colLast">used by a node to wait for a change to the provisioning data. The request is held open until
+ * the data moves on from the <i>version=&lt;version&gt;</i> given, or a subscription reset is issued, or the watch
+ * times out (204). A node which gives its name in a <i>node=&lt;name&gt;</i> parameter is not poked while it has a
+ * watch open.</td>
+ * </tr>
+ * <tr class="rowColor">
+ * <td class="colFirst">/internal/pokes</td>
+ * <td class="colOne">GET</td>
+ * <td class="colLast">used to GET the counts of successful and failed pokes, and the poke latencies, of each node and
+ * POD which this server has poked.</td>
  * </tr>
  * <tr class="rowColor">
  * <td class="colFirst">/internal/fetchProv</td>
@@ -260,6 +282,16 @@ public class InternalServlet extends ProxyServlet {
                 resp.setStatus(HttpServletResponse.SC_OK);
                 return;
             }
+            if ("/prov/watch".equals(path)) {
+                if (!req.isAsyncSupported()) {
+                    sendResponseError(resp, HttpServletResponse.SC_BAD_REQUEST, "Watch not supported.", eventlogger);
+                    return;
+                }
+                Poker.getPoker();    // make sure the current version is known
+                ProvisioningWatchers.getInstance().watch(req.getParameter("node"), req.getParameter("version"),
+                    req.startAsync(), getWatchTimeout(props));
+                return;
+            }
             if ("/prov".equals(path)) {
                 if (isProxyOK(req) && isProxyServer()) {
                     if (super.doGetWithFallback(req, resp)) {
@@ -269,15 +301,35 @@ public class InternalServlet extends ProxyServlet {
                     intlogger.info("Active server unavailable; falling back to local copy.");
                 }
                 Poker pkr = Poker.getPoker();
+                String since = req.getParameter("since");
+                String delta = (since == null) ? null : pkr.getProvisioningDelta(since);
                 resp.setStatus(HttpServletResponse.SC_OK);
-                resp.setContentType(PROVFULL_CONTENT_TYPE2);
                 try {
-                    resp.getOutputStream().print(pkr.getProvisioningString());
+                    if (delta != null) {
+                        resp.setContentType(PROVDELTA_CONTENT_TYPE);
+                        resp.getOutputStream().print(delta);
+                        return;
+                    }
+                    sendProvisioningGeneration(pkr.getProvisioningGeneration(), req, resp);
                 } catch (IOException ioe) {
                     intlogger.error("PROV0131 InternalServlet.doGet: " + ioe.getMessage(), ioe);
                 }
                 return;
             }
+            if ("/pokes".equals(path)) {
+                JSONObject jo = new JSONObject();
+                for (Map.Entry<String, Poker.PokeStats> entry : Poker.getPoker().getPokeStats().entrySet()) {
+                    jo.put(entry.getKey(), entry.getValue().asJSONObject());
+                }
+                resp.setStatus(HttpServletResponse.SC_OK);
+                resp.setContentType("application/json");
+                try {
+                    resp.getOutputStream().print(jo.toString());
+                } catch (IOException ioe) {
+                    intlogger.error("PROV0140 InternalServlet.doGet: " + ioe.getMessage(), ioe);
+                }
+                return;
+            }
             if ("/logs".equals(path) || LOGS.equals(path)) {
                 resp.setStatus(HttpServletResponse.SC_OK);
                 resp.setContentType("application/json");
@@ -510,7 +562,8 @@ public class InternalServlet extends ProxyServlet {
                     elr.setResult(HttpServletResponse.SC_CREATED);
                     resp.setStatus(HttpServletResponse.SC_CREATED);
                     eventlogger.info(elr.toString());
-                    LogfileLoader.getLoader();    // This starts the logfile loader "task"
+                    // This starts the logfile loader "task", if need be, and hands it the new file
+                    LogfileLoader.getLoader().fileSpooled(donepath.toFile());
                 } catch (IOException ioe) {
                     intlogger.error("PROV0138 InternalServlet.doPost: " + ioe.getMessage(), ioe);
                 }
@@ -567,6 +620,53 @@ public class InternalServlet extends ProxyServlet {
         return sb.toString();
     }
 
+    private void sendProvisioningGeneration(ProvisioningGeneration gen, HttpServletRequest req,
+        HttpServletResponse resp) throws IOException {
+        if (gen == null) {
+            sendResponseError(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Provisioning data not available.",
+                eventlogger);
+            return;
+        }
+        boolean gzip = acceptsGzip(req.getHeader("Accept-Encoding"));
+        resp.setHeader(PROV_VERSION_HEADER, gen.getVersion());
+        resp.setHeader("ETag", gzip ? gen.getGzipEtag() : gen.getEtag());
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (gen.matches(req.getHeader("If-None-Match"))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        resp.setContentType(PROVFULL_CONTENT_TYPE2);
+        byte[] body = gen.getBytes();
+        if (gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+            body = gen.getGzipped();
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    private static long getWatchTimeout(Properties props) {
+        try {
+            return Long.parseLong(props.getProperty("org.onap.dmaap.datarouter.provserver.watch_timeout", "60000"));
+        } catch (NumberFormatException e) {
+            intlogger.warn("PROV0130 Bad watch_timeout, using 60000 ms: " + e.getMessage());
+            return 60000L;
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     private JSONArray generateLogfileList() {
         JSONArray ja = new JSONArray();
         Properties prop = ProvRunner.getProvProperties();
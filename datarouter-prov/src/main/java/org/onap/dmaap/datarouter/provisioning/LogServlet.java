@@ -28,24 +28,35 @@ import static org.onap.dmaap.datarouter.provisioning.utils.HttpServletUtils.send
 
 import com.att.eelf.configuration.EELFLogger;
 import com.att.eelf.configuration.EELFManager;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.onap.dmaap.datarouter.provisioning.beans.DeliveryRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.BaseLogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.EventLogRecord;
-import org.onap.dmaap.datarouter.provisioning.beans.ExpiryRecord;
-import org.onap.dmaap.datarouter.provisioning.beans.LOGJSONable;
-import org.onap.dmaap.datarouter.provisioning.beans.PublishRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.Subscription;
 import org.onap.dmaap.datarouter.provisioning.eelf.EelfMsgs;
 import org.onap.dmaap.datarouter.provisioning.utils.LOGJSONObject;
@@ -72,88 +83,222 @@ public class LogServlet extends BaseServlet {
     private static final String RESULTSQL = "resultSQL";
     private static final String FILENAMESQL = "filenameSQL";
     private static final String TIMESQL = "timeSQL";
-    private static final String LOG_RECORDSSQL = "select * from LOG_RECORDS where FEEDID = ";
+    private static final String SELECT_SQL = "select * from LOG_RECORDS where ";
+    private static final String FEEDID_SQL = "FEEDID = ";
+    private static final String SUBID_SQL = "DELIVERY_SUBID = ";
+    private static final String LIMIT = "limit";
+    private static final String CURSOR_TIME = "cursorTime";
+    private static final String CURSOR_ID = "cursorId";
+    private static final String START_TIME = "startTime";
+    private static final String END_TIME = "endTime";
+    /**
+     * The page size when there is a cursor but no limit, and the largest page which may be asked for.
+     */
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10000;
+    private static final int OUTPUT_BUFFER = 65536;
+    /**
+     * Rows are fetched from the DB this many at a time, rather than all at once.
+     */
+    private static final int FETCH_SIZE = 1000;
 
     private final boolean isfeedlog;
 
+    /**
+     * Writes the records of one type from a query straight to the response, with the same JSON as the record beans
+     * would produce.  The fields to write are worked out once, from the <i>fields</i> parameter, rather than by
+     * building and filtering a JSON object for each row.
+     */
     public abstract static class RowHandler {
-        private final ServletOutputStream out;
-        private final String[] fields;
+        static final int STATUS_CODE = 0;
+        static final int PUBLISH_ID = 1;
+        static final int REQUEST_URI = 2;
+        static final int SOURCE_IP = 3;
+        static final int METHOD = 4;
+        static final int CONTENT_TYPE = 5;
+        static final int ENDPOINT_ID = 6;
+        static final int DELIVERY_ID = 7;
+        static final int EXPIRY_REASON = 8;
+        static final int ATTEMPTS = 9;
+        static final int TYPE = 10;
+        static final int DATE = 11;
+        static final int CONTENT_LENGTH = 12;
+        static final int FILE_NAME = 13;
+        private static final String[] KEYS = {"statusCode", "publishId", "requestURI", "sourceIP", "method",
+            "contentType", "endpointId", "deliveryId", "expiryReason", "attempts", "type", "date", "contentLength",
+            "fileName"};
+        private static final boolean[] NUMERIC = {true, false, false, false, false, false, false, false, false, true,
+            false, false, true, false};
+
+        private final Writer out;
+        private final int[] keys;
+        private final int[] fields;
+        private final String[] names;
+        private final String[] values = new String[KEYS.length];
+        private final SimpleDateFormat sdf = new SimpleDateFormat(FMT_2);
+        private long lastSecond;
+        private String datePrefix;
         private boolean firstrow;
 
         /**
          * Row setter.
-         * @param out ServletOutputStream
+         * @param out Writer for the response
          * @param fieldparam String field
          * @param bool boolean
+         * @param keys the keys of a record of this type, in the order they are written
          */
-        RowHandler(ServletOutputStream out, String fieldparam, boolean bool) {
+        RowHandler(Writer out, String fieldparam, boolean bool, int[] keys) {
             this.out = out;
             this.firstrow = bool;
-            this.fields = (fieldparam != null) ? fieldparam.split(":") : null;
+            this.keys = keys;
+            this.fields = (fieldparam != null) ? selectFields(keys, fieldparam.split(":")) : keys;
+            this.names = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                names[i] = LOGJSONObject.quote(KEYS[fields[i]]) + ":";
+            }
+        }
+
+        private static int[] selectFields(int[] keys, String[] wanted) {
+            Set<Integer> selected = new LinkedHashSet<>();
+            for (String name : wanted) {
+                for (int key : keys) {
+                    if (KEYS[key].equals(name)) {
+                        selected.add(key);
+                    }
+                }
+            }
+            int[] fields = new int[selected.size()];
+            int ix = 0;
+            for (int key : selected) {
+                fields[ix++] = key;
+            }
+            return fields;
         }
 
         /**
-         * Handling row from DB.
+         * Handling row from DB.  A row lacking any of the keys of its type is skipped.
          * @param rs DB Resultset
+         * @return true if the row was written
+         * @throws IOException if the response cannot be written
          */
-        void handleRow(ResultSet rs) {
+        boolean handleRow(ResultSet rs) throws IOException {
             try {
-                LOGJSONable js = buildJSONable(rs);
-                LOGJSONObject jo = js.asJSONObject();
-                if (fields != null) {
-                    // filter out unwanted fields
-                    LOGJSONObject j2 = new LOGJSONObject();
-                    for (String key : fields) {
-                        Object val = jo.opt(key);
-                        if (val != null) {
-                            j2.put(key, val);
-                        }
-                    }
-                    jo = j2;
+                readBaseRow(rs);
+                readRow(rs, values);
+            } catch (SQLException exception) {
+                intlogger.info("Failed to handle row. Exception = " + exception.getMessage(), exception);
+                return false;
+            }
+            for (int key : keys) {
+                if (values[key] == null) {
+                    intlogger.info("Failed to handle row. Exception = JSONObject[\"" + KEYS[key] + "\"] not found.");
+                    return false;
                 }
-                String str = firstrow ? "\n" : ",\n";
-                str += jo.toString();
-                out.print(str);
-                firstrow = false;
-            } catch (Exception exception) {
-                intlogger.info("Failed to handle row. Exception = " + exception.getMessage(),exception);
             }
+            out.write(firstrow ? "\n{" : ",\n{");
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(names[i]);
+                if (NUMERIC[fields[i]]) {
+                    out.write(values[fields[i]]);
+                } else {
+                    LOGJSONObject.quote(values[fields[i]], out);
+                }
+            }
+            out.write('}');
+            firstrow = false;
+            return true;
         }
 
-        public abstract LOGJSONable buildJSONable(ResultSet rs) throws SQLException;
+        private void readBaseRow(ResultSet rs) throws SQLException {
+            String method = rs.getString("METHOD");
+            values[DATE] = formatDate(rs.getLong("EVENT_TIME"));
+            values[PUBLISH_ID] = rs.getString("PUBLISH_ID");
+            values[REQUEST_URI] = rs.getString("REQURI");
+            values[METHOD] = method;
+            if ("PUT".equals(method)) {
+                values[CONTENT_TYPE] = rs.getString("CONTENT_TYPE");
+                values[CONTENT_LENGTH] = Long.toString(rs.getLong("CONTENT_LENGTH"));
+            } else {
+                values[CONTENT_TYPE] = null;
+                values[CONTENT_LENGTH] = null;
+            }
+        }
+
+        /**
+         * Format the time of a record as {@link BaseLogRecord} does.  Records come in bursts, so the formatted
+         * date and time up to the second is reused while it stays the same.
+         */
+        private String formatDate(long time) {
+            long second = Math.floorDiv(time, 1000L);
+            if (datePrefix == null || second != lastSecond) {
+                String str = sdf.format(new Date(time));
+                lastSecond = second;
+                datePrefix = str.substring(0, str.length() - 4);
+                return str;
+            }
+            int millis = (int) Math.floorMod(time, 1000L);
+            return datePrefix + (millis < 10 ? "00" : (millis < 100 ? "0" : "")) + millis + "Z";
+        }
+
+        /**
+         * Read the values for the keys particular to this record type.
+         * @param rs DB Resultset
+         * @param values the values, indexed by key; missing values are left null
+         * @throws SQLException on a DB error
+         */
+        abstract void readRow(ResultSet rs, String[] values) throws SQLException;
     }
 
     public static class PublishRecordRowHandler extends RowHandler {
-        PublishRecordRowHandler(ServletOutputStream out, String fields, boolean bool) {
-            super(out, fields, bool);
+        private static final int[] KEY_ORDER = {STATUS_CODE, PUBLISH_ID, REQUEST_URI, SOURCE_IP, METHOD,
+            CONTENT_TYPE, ENDPOINT_ID, TYPE, DATE, CONTENT_LENGTH, FILE_NAME};
+
+        PublishRecordRowHandler(Writer out, String fields, boolean bool) {
+            super(out, fields, bool, KEY_ORDER);
         }
 
         @Override
-        public LOGJSONable buildJSONable(ResultSet rs) throws SQLException {
-            return new PublishRecord(rs);
+        void readRow(ResultSet rs, String[] values) throws SQLException {
+            values[TYPE] = "pub";
+            values[STATUS_CODE] = Integer.toString(rs.getInt("STATUS"));
+            values[SOURCE_IP] = rs.getString("REMOTE_ADDR");
+            values[ENDPOINT_ID] = rs.getString("USER");
+            values[FILE_NAME] = rs.getString("FILENAME");
         }
     }
 
     public static class DeliveryRecordRowHandler extends RowHandler {
-        DeliveryRecordRowHandler(ServletOutputStream out, String fields, boolean bool) {
-            super(out, fields, bool);
+        private static final int[] KEY_ORDER = {STATUS_CODE, DELIVERY_ID, PUBLISH_ID, REQUEST_URI, METHOD,
+            CONTENT_TYPE, TYPE, DATE, CONTENT_LENGTH};
+
+        DeliveryRecordRowHandler(Writer out, String fields, boolean bool) {
+            super(out, fields, bool, KEY_ORDER);
         }
 
         @Override
-        public LOGJSONable buildJSONable(ResultSet rs) throws SQLException {
-            return new DeliveryRecord(rs);
+        void readRow(ResultSet rs, String[] values) throws SQLException {
+            values[TYPE] = "del";
+            values[STATUS_CODE] = Integer.toString(rs.getInt("RESULT"));
+            values[DELIVERY_ID] = rs.getString("USER");
         }
     }
 
     public static class ExpiryRecordRowHandler extends RowHandler {
-        ExpiryRecordRowHandler(ServletOutputStream out, String fields, boolean bool) {
-            super(out, fields, bool);
+        private static final int[] KEY_ORDER = {EXPIRY_REASON, PUBLISH_ID, ATTEMPTS, REQUEST_URI, METHOD,
+            CONTENT_TYPE, TYPE, DATE, CONTENT_LENGTH};
+
+        ExpiryRecordRowHandler(Writer out, String fields, boolean bool) {
+            super(out, fields, bool, KEY_ORDER);
         }
 
         @Override
-        public LOGJSONable buildJSONable(ResultSet rs) throws SQLException {
-            return new ExpiryRecord(rs);
+        void readRow(ResultSet rs, String[] values) throws SQLException {
+            values[TYPE] = "exp";
+            values[EXPIRY_REASON] = rs.getString("REASON");
+            values[ATTEMPTS] = Integer.toString(rs.getInt("ATTEMPTS"));
         }
     }
 
@@ -189,6 +334,10 @@ public class LogServlet extends BaseServlet {
     /**
      * GET a logging URL -- retrieve logging data for a feed or subscription.
      * See the <b>Logging API</b> document for details on how this method should be invoked.
+     *
+     * <p>If a <i>limit</i> (or a <i>cursor</i>) is given, the records of all types are returned in order of time,
+     * at most <i>limit</i> at a time; when there are more, the response has a <code>Link</code> header with
+     * <code>rel="next"</code>, whose URL has the <i>cursor</i> for the next page.
      */
     @Override
     public void doGet(HttpServletRequest req, HttpServletResponse resp) {
@@ -214,36 +363,53 @@ public class LogServlet extends BaseServlet {
             resp.setContentType(LOGLIST_CONTENT_TYPE);
             try (ServletOutputStream out = resp.getOutputStream()) {
                 final String fields = req.getParameter("fields");
+                if (map.get(LIMIT) != null) {
+                    // The page is kept until its end is found, so that the link to the next one can be sent first
+                    ByteArrayOutputStream page = new ByteArrayOutputStream();
+                    Writer writer = new OutputStreamWriter(page, getCharset(resp));
+                    String cursor = getPage(id, writer, fields, map);
+                    writer.flush();
+                    if (cursor != null) {
+                        resp.setHeader("Link", "<" + getNextPageUrl(req, map, cursor) + ">; rel=\"next\"");
+                    }
+                    out.print("[");
+                    page.writeTo(out);
+                    out.print("]");
+                    return;
+                }
                 out.print("[");
+                // The records go through a buffer, in the encoding print() would have used
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, getCharset(resp)), OUTPUT_BUFFER);
                 if (isfeedlog) {
                     // Handle /feedlog/feedid request
                     boolean firstrow = true;
                     // 1. Collect publish records for this feed
-                    RowHandler rh = new PublishRecordRowHandler(out, fields, firstrow);
+                    RowHandler rh = new PublishRecordRowHandler(writer, fields, firstrow);
                     getPublishRecordsForFeed(id, rh, map);
                     firstrow = rh.firstrow;
                     // 2. Collect delivery records for subscriptions to this feed
-                    rh = new DeliveryRecordRowHandler(out, fields, firstrow);
+                    rh = new DeliveryRecordRowHandler(writer, fields, firstrow);
                     getDeliveryRecordsForFeed(id, rh, map);
                     firstrow = rh.firstrow;
                     // 3. Collect expiry records for subscriptions to this feed
-                    rh = new ExpiryRecordRowHandler(out, fields, firstrow);
+                    rh = new ExpiryRecordRowHandler(writer, fields, firstrow);
                     getExpiryRecordsForFeed(id, rh, map);
                 } else {
                     // Handle /sublog/subid request
-                    Subscription sub = Subscription.getSubscriptionById(id);
+                    Subscription sub = Subscription.getCachedSubscriptionById(id);
                     if (sub != null) {
                         // 1. Collect publish records for the feed this subscription feeds
-                        RowHandler rh = new PublishRecordRowHandler(out, fields, true);
+                        RowHandler rh = new PublishRecordRowHandler(writer, fields, true);
                         getPublishRecordsForFeed(sub.getFeedid(), rh, map);
                         // 2. Collect delivery records for this subscription
-                        rh = new DeliveryRecordRowHandler(out, fields, rh.firstrow);
+                        rh = new DeliveryRecordRowHandler(writer, fields, rh.firstrow);
                         getDeliveryRecordsForSubscription(id, rh, map);
                         // 3. Collect expiry records for this subscription
-                        rh = new ExpiryRecordRowHandler(out, fields, rh.firstrow);
+                        rh = new ExpiryRecordRowHandler(writer, fields, rh.firstrow);
                         getExpiryRecordsForSubscription(id, rh, map);
                     }
                 }
+                writer.flush();
                 out.print("]");
             } catch (IOException ioe) {
                 eventlogger.error("PROV0141 LogServlet.doGet: " + ioe.getMessage(), ioe);
@@ -294,6 +460,15 @@ public class LogServlet extends BaseServlet {
         }
     }
 
+    private static Charset getCharset(HttpServletResponse resp) {
+        String encoding = resp.getCharacterEncoding();
+        try {
+            return (encoding != null) ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
     private Map<String, String> buildMapFromRequest(HttpServletRequest req) {
         Map<String, String> map = new HashMap<>();
         String str = req.getParameter("type");
@@ -400,6 +575,34 @@ public class LogServlet extends BaseServlet {
             etime = stime + TWENTYFOUR_HOURS;
         }
         map.put(TIMESQL, String.format(" AND EVENT_TIME >= %d AND EVENT_TIME <= %d", stime, etime));
+        map.put(START_TIME, Long.toString(stime));
+        map.put(END_TIME, Long.toString(etime));
+
+        str = req.getParameter("cursor");
+        if (str != null) {
+            long[] position = decodeCursor(str);
+            if (position == null) {
+                map.put("err", "bad cursor");
+                return map;
+            }
+            map.put(CURSOR_TIME, Long.toString(position[0]));
+            map.put(CURSOR_ID, Long.toString(position[1]));
+            map.put(LIMIT, Integer.toString(DEFAULT_LIMIT));
+        }
+        str = req.getParameter("limit");
+        if (str != null) {
+            int limit = -1;
+            try {
+                limit = Integer.parseInt(str);
+            } catch (NumberFormatException e) {
+                intlogger.error("Failed to parse input", e);
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                map.put("err", "bad limit");
+                return map;
+            }
+            map.put(LIMIT, Integer.toString(limit));
+        }
         return map;
     }
 
@@ -426,70 +629,242 @@ public class LogServlet extends BaseServlet {
         return -1;
     }
 
-    private void getPublishRecordsForFeed(int feedid, RowHandler rh, Map<String, String> map) {
+    private void getPublishRecordsForFeed(int feedid, RowHandler rh, Map<String, String> map) throws IOException {
+        String where = getPublishWhereForFeed(feedid, map);
+        if (where != null) {
+            getRecordsForSQL(SELECT_SQL + where, rh);
+        }
+    }
+
+    private void getDeliveryRecordsForFeed(int feedid, RowHandler rh, Map<String, String> map) throws IOException {
+        String where = getDeliveryWhereForFeed(feedid, map);
+        if (where != null) {
+            getRecordsForSQL(SELECT_SQL + where, rh);
+        }
+    }
+
+    private void getDeliveryRecordsForSubscription(int subid, RowHandler rh, Map<String, String> map)
+        throws IOException {
+        String where = getDeliveryWhereForSubscription(subid, map);
+        if (where != null) {
+            getRecordsForSQL(SELECT_SQL + where, rh);
+        }
+    }
+
+    private void getExpiryRecordsForFeed(int feedid, RowHandler rh, Map<String, String> map) throws IOException {
+        String where = getExpiryWhereForFeed(feedid, map);
+        if (where != null) {
+            getRecordsForSQL(SELECT_SQL + where, rh);
+        }
+    }
+
+    private void getExpiryRecordsForSubscription(int subid, RowHandler rh, Map<String, String> map)
+        throws IOException {
+        String where = getExpiryWhereForSubscription(subid, map);
+        if (where != null) {
+            getRecordsForSQL(SELECT_SQL + where, rh);
+        }
+    }
+
+    private String getPublishWhereForFeed(int feedid, Map<String, String> map) {
         String type = map.get("type");
         if ("all".equals(type) || "pub".equals(type)) {
-            String sql = LOG_RECORDSSQL + feedid
+            return FEEDID_SQL + feedid
                 + " AND TYPE = 'pub'"
                 + map.get(TIMESQL) + map.get(PUBLISHSQL) + map.get(STATUSSQL) + map.get(FILENAMESQL);
-            getRecordsForSQL(sql, rh);
         }
+        return null;
     }
 
-    private void getDeliveryRecordsForFeed(int feedid, RowHandler rh, Map<String, String> map) {
+    private String getDeliveryWhereForFeed(int feedid, Map<String, String> map) {
         String type = map.get("type");
         if ("all".equals(type) || "del".equals(type)) {
-            String sql = LOG_RECORDSSQL + feedid
+            return FEEDID_SQL + feedid
                 + " AND TYPE = 'del'"
                 + map.get(TIMESQL) + map.get(PUBLISHSQL) + map.get(RESULTSQL);
-            getRecordsForSQL(sql, rh);
         }
+        return null;
     }
 
-    private void getDeliveryRecordsForSubscription(int subid, RowHandler rh, Map<String, String> map) {
+    private String getDeliveryWhereForSubscription(int subid, Map<String, String> map) {
         String type = map.get("type");
         if ("all".equals(type) || "del".equals(type)) {
-            String sql = "select * from LOG_RECORDS where DELIVERY_SUBID = " + subid
+            return SUBID_SQL + subid
                 + " AND TYPE = 'del'"
                 + map.get(TIMESQL) + map.get(PUBLISHSQL) + map.get(RESULTSQL);
-            getRecordsForSQL(sql, rh);
         }
+        return null;
     }
 
-    private void getExpiryRecordsForFeed(int feedid, RowHandler rh, Map<String, String> map) {
+    private String getExpiryWhereForFeed(int feedid, Map<String, String> map) {
         String type = map.get("type");
         if ("all".equals(type) || "exp".equals(type)) {
             String st = map.get(STATUSSQL);
             if (st == null || st.length() == 0) {
-                String sql = LOG_RECORDSSQL + feedid
+                return FEEDID_SQL + feedid
                     + " AND TYPE = 'exp'"
                     + map.get(TIMESQL) + map.get(PUBLISHSQL) + map.get(REASON_SQL);
-                getRecordsForSQL(sql, rh);
             }
         }
+        return null;
     }
 
-    private void getExpiryRecordsForSubscription(int subid, RowHandler rh, Map<String, String> map) {
+    private String getExpiryWhereForSubscription(int subid, Map<String, String> map) {
         String type = map.get("type");
         if ("all".equals(type) || "exp".equals(type)) {
             String st = map.get(STATUSSQL);
             if (st == null || st.length() == 0) {
-                String sql = "select * from LOG_RECORDS where DELIVERY_SUBID = " + subid
+                return SUBID_SQL + subid
                     + " AND TYPE = 'exp'"
                     + map.get(TIMESQL) + map.get(PUBLISHSQL) + map.get(REASON_SQL);
-                getRecordsForSQL(sql, rh);
             }
         }
+        return null;
     }
 
-    private void getRecordsForSQL(String sql, RowHandler rh) {
+    /**
+     * Write one page of the records of all three types, in (EVENT_TIME, RECORD_ID) order, starting after the
+     * position in the cursor (if any).  Each type is read by its own subquery, with its own ORDER BY and LIMIT, so
+     * that it can seek to the cursor in the (FEEDID or DELIVERY_SUBID, EVENT_TIME, RECORD_ID) index and stop after a
+     * page; the subqueries are merged by a UNION ALL.
+     *
+     * @return the cursor for the next page, or null if this is the last page
+     */
+    private String getPage(int id, Writer writer, String fields, Map<String, String> map) throws IOException {
+        List<String> wheres = new ArrayList<>();
+        if (isfeedlog) {
+            wheres.add(getPublishWhereForFeed(id, map));
+            wheres.add(getDeliveryWhereForFeed(id, map));
+            wheres.add(getExpiryWhereForFeed(id, map));
+        } else {
+            Subscription sub = Subscription.getCachedSubscriptionById(id);
+            if (sub == null) {
+                return null;
+            }
+            wheres.add(getPublishWhereForFeed(sub.getFeedid(), map));
+            wheres.add(getDeliveryWhereForSubscription(id, map));
+            wheres.add(getExpiryWhereForSubscription(id, map));
+        }
+        wheres.removeIf(Objects::isNull);
+        if (wheres.isEmpty()) {
+            return null;
+        }
+        int limit = Integer.parseInt(map.get(LIMIT));
+        String after = "";
+        if (map.get(CURSOR_TIME) != null) {
+            String time = map.get(CURSOR_TIME);
+            after = " AND EVENT_TIME >= " + time + " AND (EVENT_TIME > " + time + " OR RECORD_ID > "
+                + map.get(CURSOR_ID) + ")";
+        }
+        String order = " ORDER BY EVENT_TIME, RECORD_ID LIMIT " + (limit + 1);
+        StringBuilder sql = new StringBuilder("select * from (");
+        String pfx = "";
+        for (String where : wheres) {
+            sql.append(pfx).append('(').append(SELECT_SQL).append(where).append(after).append(order).append(')');
+            pfx = " UNION ALL ";
+        }
+        sql.append(") PAGE").append(order);
+        Map<String, RowHandler> handlers = new HashMap<>();
+        handlers.put("pub", new PublishRecordRowHandler(writer, fields, true));
+        handlers.put("del", new DeliveryRecordRowHandler(writer, fields, true));
+        handlers.put("exp", new ExpiryRecordRowHandler(writer, fields, true));
+        intlogger.debug(sql.toString());
+        long start = System.currentTimeMillis();
+        String next = null;
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            ps.setFetchSize(Math.min(limit + 1, FETCH_SIZE));
+            try (ResultSet rs = ps.executeQuery()) {
+                int count = 0;
+                long time = 0;
+                long recordId = 0;
+                while (rs.next()) {
+                    if (++count > limit) {
+                        next = encodeCursor(time, recordId);
+                        break;
+                    }
+                    time = rs.getLong("EVENT_TIME");
+                    recordId = rs.getLong("RECORD_ID");
+                    RowHandler rh = handlers.get(rs.getString("TYPE"));
+                    if (rh != null && rh.handleRow(rs)) {
+                        for (RowHandler handler : handlers.values()) {
+                            handler.firstrow = false;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException sqlException) {
+            intlogger.info("Failed to get Records. Exception = " + sqlException.getMessage(), sqlException);
+        }
+        intlogger.debug("Time: " + (System.currentTimeMillis() - start) + " ms");
+        return next;
+    }
+
+    /**
+     * Build the URL of the next page: the same query, with the time window fixed and the new cursor.
+     */
+    private static String getNextPageUrl(HttpServletRequest req, Map<String, String> map, String cursor)
+        throws UnsupportedEncodingException {
+        StringBuffer url = req.getRequestURL();
+        StringBuilder sb = new StringBuilder((url != null) ? url.toString() : req.getRequestURI());
+        char sep = '?';
+        Map<String, String[]> params = req.getParameterMap();
+        if (params != null) {
+            for (Map.Entry<String, String[]> param : params.entrySet()) {
+                String name = param.getKey();
+                if (!"cursor".equals(name) && !"start".equals(name) && !"end".equals(name)
+                    && !"limit".equals(name)) {
+                    for (String value : param.getValue()) {
+                        sb.append(sep).append(URLEncoder.encode(name, "UTF-8")).append('=')
+                            .append(URLEncoder.encode(value, "UTF-8"));
+                        sep = '&';
+                    }
+                }
+            }
+        }
+        sb.append(sep).append("start=").append(map.get(START_TIME))
+            .append("&end=").append(map.get(END_TIME))
+            .append("&limit=").append(map.get(LIMIT))
+            .append("&cursor=").append(cursor);
+        return sb.toString();
+    }
+
+    static String encodeCursor(long time, long recordId) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((time + "." + recordId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decode a cursor.
+     *
+     * @return the event time and record ID in the cursor, or null if it is not valid
+     */
+    static long[] decodeCursor(String cursor) {
+        try {
+            String str = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int ix = str.indexOf('.');
+            if (ix > 0) {
+                long[] position = {Long.parseLong(str.substring(0, ix)), Long.parseLong(str.substring(ix + 1))};
+                if (position[0] >= 0 && position[1] >= 0) {
+                    return position;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            intlogger.debug("Bad cursor: " + cursor);
+        }
+        return null;
+    }
+
+    private void getRecordsForSQL(String sql, RowHandler rh) throws IOException {
         intlogger.debug(sql);
         long start = System.currentTimeMillis();
         try (Connection conn = ProvDbUtils.getInstance().getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                rh.handleRow(rs);
+            PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rh.handleRow(rs);
+                }
             }
         } catch (SQLException sqlException) {
             intlogger.info("Failed to get Records. Exception = " + sqlException.getMessage(),sqlException);
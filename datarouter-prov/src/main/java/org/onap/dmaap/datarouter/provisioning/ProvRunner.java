@@ -59,7 +59,7 @@ import org.onap.dmaap.datarouter.provisioning.utils.SynchronizerTask;
  * <li>One background Thread runs the {@link SynchronizerTask} which is used to periodically
  * synchronize the database between active and standby servers.</li>
  * <li>One background Thread runs the {@link Poker} which is used to notify the nodes whenever
- * provisioning data changes.</li>
+ * provisioning data changes. The nodes themselves are poked in parallel from a small pool of threads.</li>
  * <li>One task is run once a day to run {@link PurgeLogDirTask} which purges older logs from the
  * /opt/app/datartr/logs directory.</li>
  * </ul>
@@ -47,6 +47,7 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.jetbrains.annotations.NotNull;
 import org.onap.dmaap.datarouter.provisioning.utils.AafPropsUtils;
+import org.onap.dmaap.datarouter.provisioning.utils.RateLimitFilter;
 import org.onap.dmaap.datarouter.provisioning.utils.ThrottleFilter;
 
 
@@ -204,17 +205,25 @@ public class ProvServer {
         servletContextHandler.setContextPath("/");
         servletContextHandler.addServlet(new ServletHolder(new FeedServlet()), "/feed/*");
         servletContextHandler.addServlet(new ServletHolder(new FeedLogServlet()), "/feedlog/*");
-        servletContextHandler.addServlet(new ServletHolder(new PublishServlet()), "/publish/*");
+        ServletHolder publishServletHolder = new ServletHolder(new PublishServlet());
+        publishServletHolder.setAsyncSupported(true);    // for throttled /publish requests
+        servletContextHandler.addServlet(publishServletHolder, "/publish/*");
         servletContextHandler.addServlet(new ServletHolder(new SubscribeServlet()), "/subscribe/*");
         servletContextHandler.addServlet(new ServletHolder(new StatisticsServlet()), "/statistics/*");
         servletContextHandler.addServlet(new ServletHolder(new SubLogServlet()), "/sublog/*");
         servletContextHandler.addServlet(new ServletHolder(new GroupServlet()), "/group/*");
         servletContextHandler.addServlet(new ServletHolder(new SubscriptionServlet()), "/subs/*");
-        servletContextHandler.addServlet(new ServletHolder(new InternalServlet()), "/internal/*");
+        ServletHolder internalServletHolder = new ServletHolder(new InternalServlet());
+        internalServletHolder.setAsyncSupported(true);    // for /internal/prov/watch
+        servletContextHandler.addServlet(internalServletHolder, "/internal/*");
         servletContextHandler.addServlet(new ServletHolder(new RouteServlet()), "/internal/route/*");
         servletContextHandler.addServlet(new ServletHolder(new DRFeedsServlet()), "/");
-        servletContextHandler.addFilter(new FilterHolder(new ThrottleFilter()),
-            "/publish/*", EnumSet.of(DispatcherType.REQUEST));
+        FilterHolder throttleFilterHolder = new FilterHolder(new ThrottleFilter());
+        throttleFilterHolder.setAsyncSupported(true);
+        servletContextHandler.addFilter(throttleFilterHolder, "/publish/*", EnumSet.of(DispatcherType.REQUEST));
+        FilterHolder rateLimitFilterHolder = new FilterHolder(new RateLimitFilter());
+        rateLimitFilterHolder.setAsyncSupported(true);
+        servletContextHandler.addFilter(rateLimitFilterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
         return servletContextHandler;
     }
 }
@@ -15,7 +15,9 @@ import org.onap.dmaap.datarouter.provisioning.store.StatisticsStore;
 import org.onap.dmaap.datarouter.provisioning.utils.ProvDbUtils;
 
 import static org.onap.dmaap.datarouter.provisioning.BaseServlet.FEEDIDS;
+import static org.onap.dmaap.datarouter.provisioning.StatisticsServlet.END_TIME;
 import static org.onap.dmaap.datarouter.provisioning.StatisticsServlet.FEEDID;
+import static org.onap.dmaap.datarouter.provisioning.StatisticsServlet.START_TIME;
 
 public class StatisticsRequestHandler {
   private static final StatisticsStore statisticsStore = new StatisticsStore();
@@ -56,7 +58,9 @@ public class StatisticsRequestHandler {
     if (map.get(FEEDIDS) != null) {
       feedids = map.get(FEEDIDS);
     }
-    statisticsStore.getRecordsForSQL(feedids, outputType, responseStream, resp);
+    long start = Long.parseLong(map.getOrDefault(START_TIME, "0"));
+    long end = Long.parseLong(map.getOrDefault(END_TIME, Long.toString(Long.MAX_VALUE)));
+    statisticsStore.getRecordsForSQL(feedids, start, end, outputType, responseStream, resp);
   }
 
   /**
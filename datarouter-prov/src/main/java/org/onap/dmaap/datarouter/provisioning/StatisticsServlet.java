@@ -57,20 +57,8 @@ public class StatisticsServlet extends BaseServlet {
     private static final String FMT2 = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
     public static final String FEEDID = "FEEDID";
 
-    //sql Strings
-    private static final String SQL_SELECT_NAME = "SELECT (SELECT NAME FROM FEEDS AS f WHERE f.FEEDID in(";
-    private static final String SQL_FEED_ID = ") and f.FEEDID=e.FEEDID) AS FEEDNAME, e.FEEDID as FEEDID, ";
-    private static final String SQL_SELECT_COUNT = "(SELECT COUNT(*) FROM LOG_RECORDS AS c WHERE c.FEEDID in(";
-    private static final String SQL_TYPE_PUB = ") and c.FEEDID=e.FEEDID AND c.TYPE='PUB') AS FILES_PUBLISHED,";
-    private static final String SQL_SELECT_SUM = "(SELECT SUM(content_length) FROM LOG_RECORDS AS c WHERE c.FEEDID in(";
-    private static final String SQL_PUBLISH_LENGTH = ") and c.FEEDID=e.FEEDID AND c.TYPE='PUB') AS PUBLISH_LENGTH, COUNT(e.EVENT_TIME) as FILES_DELIVERED,";
-    private static final String SQL_SUBSCRIBER_URL = " sum(m.content_length) as DELIVERED_LENGTH, SUBSTRING_INDEX(e.REQURI,'/',+3) as SUBSCRIBER_URL,";
-    private static final String SQL_SUB_ID = " e.DELIVERY_SUBID as SUBID, ";
-    private static final String SQL_DELIVERY_TIME = " e.EVENT_TIME AS PUBLISH_TIME, m.EVENT_TIME AS DELIVERY_TIME, ";
-    private static final String SQL_AVERAGE_DELAY = " AVG(e.EVENT_TIME - m.EVENT_TIME)/1000 as AverageDelay FROM LOG_RECORDS";
-    private static final String SQL_JOIN_RECORDS = " e JOIN LOG_RECORDS m ON m.PUBLISH_ID = e.PUBLISH_ID AND e.FEEDID IN (";
-    private static final String SQL_STATUS_204 = " AND m.STATUS=204 AND e.RESULT=204 ";
-    private static final String SQL_GROUP_SUB_ID = " group by SUBID";
+    static final String START_TIME = "startTime";
+    static final String END_TIME = "endTime";
     private static final StatisticsRequestHandler requestHandler = new StatisticsRequestHandler();
 
     /**
@@ -238,6 +226,8 @@ public class StatisticsServlet extends BaseServlet {
             etime = stime + TWENTYFOUR_HOURS;
         }
         map.put("timeSQL", String.format(" AND EVENT_TIME >= %d AND EVENT_TIME <= %d", stime, etime));
+        map.put(START_TIME, Long.toString(stime));
+        map.put(END_TIME, Long.toString(etime));
         return map;
     }
 
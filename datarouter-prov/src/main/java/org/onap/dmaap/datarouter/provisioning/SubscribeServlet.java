@@ -120,7 +120,7 @@ public class SubscribeServlet extends ProxyServlet {
                 sendResponseError(resp, HttpServletResponse.SC_BAD_REQUEST, message, eventlogger);
                 return;
             }
-            Feed feed = Feed.getFeedById(feedid);
+            Feed feed = Feed.getCachedFeedById(feedid);
             if (feed == null || feed.isDeleted()) {
                 message = MISSING_FEED;
                 elr.setMessage(message);
@@ -210,7 +210,7 @@ public class SubscribeServlet extends ProxyServlet {
                 sendResponseError(resp, HttpServletResponse.SC_BAD_REQUEST, message, eventlogger);
                 return;
             }
-            Feed feed = Feed.getFeedById(feedid);
+            Feed feed = Feed.getCachedFeedById(feedid);
             if (feed == null || feed.isDeleted()) {
                 message = MISSING_FEED;
                 elr.setMessage(message);
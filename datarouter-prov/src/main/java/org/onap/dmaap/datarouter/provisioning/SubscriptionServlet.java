@@ -34,6 +34,7 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.json.JSONException;
@@ -42,6 +43,8 @@ import org.onap.dmaap.datarouter.authz.AuthorizationResponse;
 import org.onap.dmaap.datarouter.provisioning.beans.EventLogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.Subscription;
 import org.onap.dmaap.datarouter.provisioning.eelf.EelfMsgs;
+import org.onap.dmaap.datarouter.provisioning.utils.Poker;
+import org.onap.dmaap.datarouter.provisioning.utils.ProvisioningWatchers;
 import org.onap.dmaap.datarouter.provisioning.utils.SynchronizerTask;
 
 /**
@@ -209,7 +212,7 @@ public class SubscriptionServlet extends ProxyServlet {
                 sendResponseError(resp, HttpServletResponse.SC_BAD_REQUEST, message, eventlogger);
                 return;
             }
-            Subscription sub = Subscription.getSubscriptionById(subid);
+            Subscription sub = Subscription.getCachedSubscriptionById(subid);
             if (sub == null) {
                 message = BAD_SUB;
                 elr.setMessage(message);
@@ -391,7 +394,9 @@ public class SubscriptionServlet extends ProxyServlet {
                         Boolean changeowner = (Boolean) jo.get("changeowner");
                         if (changeowner != null && changeowner.equals(true)) {
                             sub.setSubscriber(req.getHeader(BEHALF_HEADER));
-                            sub.changeOwnerShip();
+                            if (sub.changeOwnerShip()) {
+                                Poker.getPoker().entityChanged(sub);
+                            }
                         }
                     } catch (JSONException je) {
                         eventlogger.error("PROV0193 SubscriptionServlet.doPut: " + je.getMessage(), je);
@@ -523,9 +528,13 @@ public class SubscriptionServlet extends ProxyServlet {
         }
 
         void resetSubscription(int subid) {
+            // Nodes watching /internal/prov/watch are told directly; the rest are sent a GET
+            Set<String> watching = ProvisioningWatchers.getInstance().subscriptionReset(subid);
             for (String nodename : BaseServlet.getNodes()) {
-                String url = String.format(URL_TEMPLATE, nodename, subid);
-                urls.add(url);
+                if (!watching.contains(nodename)) {
+                    String url = String.format(URL_TEMPLATE, nodename, subid);
+                    urls.add(url);
+                }
             }
         }
 
@@ -32,8 +32,10 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 import org.onap.dmaap.datarouter.provisioning.utils.LOGJSONObject;
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
 
 /**
  * Define the common fields used by the three types of records generated by DR nodes.
@@ -76,6 +78,33 @@ public class BaseLogRecord implements LOGJSONable, Loadable {
         }
     }
 
+    /**
+     * BaseLogRecord constructor from a tokenized log line.  The timestamp is taken to be in UTC.
+     * @param tok the tokenized line
+     * @throws ParseException in case of parse error
+     */
+    protected BaseLogRecord(LogLineTokenizer tok) throws ParseException {
+        this.eventTime     = tok.getEpochMillis(0);
+        this.publishId     = tok.get(2);
+        this.feedid        = tok.getInt(3);
+        if (tok.equals(1, "DLX")) {
+            this.requestUri    = "";
+            this.method        = "GET";    // Note: we need a valid value in this field, even though unused
+            this.contentType   = "";
+            this.contentLength = tok.getLong(5);
+        } else  if (tok.equals(1, "PUB") || tok.equals(1, "LOG") || tok.equals(1, "PBF")) {
+            this.requestUri    = tok.get(4);
+            this.method        = tok.get(5);
+            this.contentType   = tok.get(6);
+            this.contentLength = tok.getLong(7);
+        } else {
+            this.requestUri    = tok.get(5);
+            this.method        = tok.get(6);
+            this.contentType   = tok.get(7);
+            this.contentLength = tok.getLong(8);
+        }
+    }
+
     protected BaseLogRecord(ResultSet rs) throws SQLException {
         this.eventTime     = rs.getLong("EVENT_TIME");
         this.publishId     = rs.getString("PUBLISH_ID");
@@ -86,6 +115,9 @@ public class BaseLogRecord implements LOGJSONable, Loadable {
         this.contentLength = rs.getLong("CONTENT_LENGTH");
     }
 
+    /**
+     * Parse the timestamp of a log line.  The timestamp is taken to be in UTC, as it is by {@link LogLineTokenizer}.
+     */
     protected Date parseDate(final String str) throws ParseException {
         int[] num = new int[7];
         int place = 0;
@@ -103,7 +135,7 @@ public class BaseLogRecord implements LOGJSONable, Loadable {
         if (place != 7) {
             throw new ParseException("parseDate()", 1);
         }
-        Calendar cal = new GregorianCalendar();
+        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
         cal.set(Calendar.YEAR, num[0]);
         cal.set(Calendar.MONTH, num[1] - 1);
         cal.set(Calendar.DAY_OF_MONTH, num[2]);
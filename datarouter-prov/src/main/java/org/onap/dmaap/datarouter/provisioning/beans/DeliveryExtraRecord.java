@@ -29,6 +29,8 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.text.ParseException;
 
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
+
 /**
  * The representation of a Delivery Extra (DLX) Record, as retrieved from the DB.
  * @author Robert Eby
@@ -49,6 +51,17 @@ public class DeliveryExtraRecord extends BaseLogRecord {
         this.contentLength2 = Long.parseLong(pp[6]);
     }
 
+    /**
+     * DLX constructor from a tokenized log line.
+     * @param tok the tokenized line
+     * @throws ParseException in case of parse error
+     */
+    public DeliveryExtraRecord(LogLineTokenizer tok) throws ParseException {
+        super(tok);
+        this.subid = tok.getInt(4);
+        this.contentLength2 = tok.getLong(6);
+    }
+
     @Override
     public void load(PreparedStatement ps) throws SQLException {
         ps.setString(1, "dlx");        // field 1: type
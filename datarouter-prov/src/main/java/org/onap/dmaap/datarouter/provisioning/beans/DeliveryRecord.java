@@ -32,6 +32,7 @@ import java.text.ParseException;
 import java.util.LinkedHashMap;
 
 import org.onap.dmaap.datarouter.provisioning.utils.LOGJSONObject;
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
 
 
 /**
@@ -69,6 +70,27 @@ public class DeliveryRecord extends BaseLogRecord {
         }
     }
 
+    /**
+     * Constructor for DeliverRecord from a tokenized log line.
+     * @param tok the tokenized line
+     * @param subid the subscription, one of those listed in the line
+     * @throws ParseException in case of parse error
+     */
+    public DeliveryRecord(LogLineTokenizer tok, int subid) throws ParseException {
+        super(tok);
+        String thisFileid = tok.get(5);
+        if (thisFileid.lastIndexOf('/') >= 0) {
+            thisFileid = thisFileid.substring(thisFileid.lastIndexOf('/') + 1);
+        }
+        this.subid = subid;
+        this.fileid = thisFileid;
+        this.result = tok.getInt(10);
+        this.user = tok.get(9);
+        if (this.user.length() > 50) {
+            this.user = this.user.substring(0, 50);
+        }
+    }
+
     /**
      * DeliverRecord constructor from ResultSet.
      * @param rs ResultSet
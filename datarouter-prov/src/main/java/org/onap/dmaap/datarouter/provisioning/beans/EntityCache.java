@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+
+package org.onap.dmaap.datarouter.provisioning.beans;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * A read-through cache of provisioning beans (feeds, subscriptions or groups), keyed by ID.  A bean is loaded from
+ * the DB the first time it is asked for, and then served from memory until the bean's insert, update or delete method
+ * invalidates it; the {@link org.onap.dmaap.datarouter.provisioning.utils.SynchronizerTask} goes through these same
+ * methods, so changes synced from the peer POD are seen too.  The cache may also be loaded in bulk, as is done when
+ * the provisioning document is rebuilt from the DB.
+ *
+ * <p>The beans in the cache are shared between all callers, and must not be modified.  Code which intends to modify a
+ * bean and write it back should read it from the DB instead.
+ *
+ * <p>Every invalidation moves the cache on to a new generation.  A bean which was loaded from the DB in an earlier
+ * generation is discarded rather than cached, so a slow load can never overwrite the effect of a concurrent change.
+ *
+ * @param <T> the type of bean
+ */
+public class EntityCache<T> {
+
+    private final IntFunction<T> loader;
+    private final Map<Integer, T> entities = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache.
+     *
+     * @param loader the function to load a bean from the DB by ID; it returns null if there is no such bean
+     */
+    public EntityCache(IntFunction<T> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Get a bean, from the cache if possible.
+     *
+     * @param id the ID of the bean
+     * @return the bean, or null if it does not exist
+     */
+    public T get(int id) {
+        T bean = entities.get(id);
+        if (bean != null) {
+            hits.increment();
+            return bean;
+        }
+        misses.increment();
+        long gen = generation.get();
+        bean = loader.apply(id);
+        if (bean != null) {
+            entities.put(id, bean);
+            if (generation.get() != gen) {
+                entities.remove(id, bean);
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * Get the current generation of the cache, which should be read before loading beans for {@link #load}.
+     *
+     * @return the generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Load beans which were read from the DB into the cache.  Nothing is loaded if the cache has been invalidated
+     * since the beans were read.
+     *
+     * @param beans the beans, keyed by ID
+     * @param gen the generation of the cache before the beans were read
+     */
+    public void load(Map<Integer, T> beans, long gen) {
+        if (generation.get() != gen) {
+            return;
+        }
+        entities.putAll(beans);
+        if (generation.get() != gen) {
+            for (Map.Entry<Integer, T> entry : beans.entrySet()) {
+                entities.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Discard the cached copy of a bean, after the bean has been changed in the DB.
+     *
+     * @param id the ID of the bean
+     */
+    public void invalidate(int id) {
+        generation.incrementAndGet();
+        entities.remove(id);
+    }
+
+    /**
+     * Discard all cached beans.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entities.clear();
+    }
+
+    /**
+     * Get the number of lookups which were served from the cache.
+     *
+     * @return the count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups which had to go to the DB.
+     *
+     * @return the count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of beans held in the cache.
+     *
+     * @return the count
+     */
+    public int size() {
+        return entities.size();
+    }
+}
@@ -32,6 +32,7 @@ import java.text.ParseException;
 import java.util.LinkedHashMap;
 
 import org.onap.dmaap.datarouter.provisioning.utils.LOGJSONObject;
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
 
 
 /**
@@ -69,6 +70,26 @@ public class ExpiryRecord extends BaseLogRecord {
         }
     }
 
+    /**
+     * ExpiryRecord constructor from a tokenized log line.
+     * @param tok the tokenized line
+     * @throws ParseException in case of parse error
+     */
+    public ExpiryRecord(LogLineTokenizer tok) throws ParseException {
+        super(tok);
+        String thisFileid = tok.get(5);
+        if (thisFileid.lastIndexOf('/') >= 0) {
+            thisFileid = thisFileid.substring(thisFileid.lastIndexOf('/') + 1);
+        }
+        this.subid = tok.getInt(4);
+        this.fileid = thisFileid;
+        this.deliveryAttempts = tok.getInt(10);
+        this.reason = tok.get(9);
+        if (!"notRetryable".equals(reason) && !"retriesExhausted".equals(reason) && !"diskFull".equals(reason)) {
+            this.reason = "other";
+        }
+    }
+
     /**
      * ExpiryRecord constructor from ResultSet.
      * @param rs ResultSet of ExpiryREcord attributes
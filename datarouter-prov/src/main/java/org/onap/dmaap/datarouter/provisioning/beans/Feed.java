@@ -63,6 +63,7 @@ public class Feed extends Syncable {
     private static final String DEL = "deleted";
     private static final String LAST_MOD = "last_mod";
     private static final String CREATED_DATE = "created_date";
+    private static final EntityCache<Feed> cache = new EntityCache<>(Feed::getFeedById);
 
     private int feedid;
     private int groupid; //New field is added - Groups feature Rally:US708115 - 1610
@@ -251,6 +252,26 @@ public class Feed extends Syncable {
         return getFeedBySQL(sql);
     }
 
+    /**
+     * Get a specific feed, from the feed cache if possible.  The Feed returned is shared, and must not be modified;
+     * use {@link #getFeedById(int)} to get a copy which can be changed and written back.
+     *
+     * @param id the Feed ID
+     * @return the Feed object, or null if it does not exist
+     */
+    public static Feed getCachedFeedById(int id) {
+        return cache.get(id);
+    }
+
+    /**
+     * Get the cache used by {@link #getCachedFeedById(int)}.
+     *
+     * @return the feed cache
+     */
+    public static EntityCache<Feed> getCache() {
+        return cache;
+    }
+
     /**
      * Get a specific feed from the DB, based upon its name and version.
      *
@@ -598,6 +619,7 @@ public class Feed extends Syncable {
             rv = false;
             intlogger.error("PROV0007 doDelete: " + e.getMessage(), e);
         }
+        cache.invalidate(feedid);
         return rv;
     }
 
@@ -657,6 +679,7 @@ public class Feed extends Syncable {
             rv = false;
             intlogger.error("PROV0005 doInsert: " + e.getMessage(), e);
         }
+        cache.invalidate(feedid);
         return rv;
     }
 
@@ -730,6 +753,7 @@ public class Feed extends Syncable {
             rv = false;
             intlogger.warn("PROV0006 doUpdate: " + e.getMessage(), e);
         }
+        cache.invalidate(feedid);
         return rv;
     }
 
@@ -749,6 +773,7 @@ public class Feed extends Syncable {
             rv = false;
             intlogger.warn("PROV0008 changeOwnerShip: " + e.getMessage(), e);
         }
+        cache.invalidate(feedid);
         return rv;
     }
 
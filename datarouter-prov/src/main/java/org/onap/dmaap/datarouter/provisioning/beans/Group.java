@@ -50,6 +50,7 @@ public class Group extends Syncable {
     private static final String GROUP_ID_CONST = "groupid";
     private static EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
     private static int nextGroupid = getMaxGroupID() + 1;
+    private static final EntityCache<Group> cache = new EntityCache<>(Group::getGroupById);
 
     private int groupid;
     private String authid;
@@ -166,6 +167,24 @@ public class Group extends Syncable {
         return !list.isEmpty() ? list.get(0) : null;
     }
 
+    /**
+     * Get group using groupid, from the group cache if possible.  The Group returned is shared, and must not be
+     * modified; use {@link #getGroupById(int)} to get a copy which can be changed and written back.
+     * @param id id of group
+     * @return group object, or null if it does not exist
+     */
+    public static Group getCachedGroupById(int id) {
+        return cache.get(id);
+    }
+
+    /**
+     * Get the cache used by {@link #getCachedGroupById(int)}.
+     * @return the group cache
+     */
+    public static EntityCache<Group> getCache() {
+        return cache;
+    }
+
     /**
      * Get group from DB using AUTHID.
      * @param id AUTHID
@@ -301,6 +320,7 @@ public class Group extends Syncable {
             rv = false;
             intlogger.error("PROV0005 doInsert: " + e.getMessage(), e);
         }
+        cache.invalidate(groupid);
         return rv;
     }
 
@@ -320,6 +340,7 @@ public class Group extends Syncable {
             rv = false;
             intlogger.error("PROV0006 doUpdate: " + e.getMessage(), e);
         }
+        cache.invalidate(groupid);
         return rv;
     }
 
@@ -333,6 +354,7 @@ public class Group extends Syncable {
             rv = false;
             intlogger.error("PROV0007 doDelete: " + e.getMessage(), e);
         }
+        cache.invalidate(groupid);
         return rv;
     }
 
@@ -60,6 +60,7 @@ public class IngressRoute extends NodeClass implements Comparable<IngressRoute>
     private final String subnet;
     private int nodelist;
     private SortedSet<String> nodes;
+    private volatile SubnetMatcher matcher;     // built on first use, unless validated by the constructor
 
     /**
      * Ingress route constructor.
@@ -88,7 +89,7 @@ public class IngressRoute extends NodeClass implements Comparable<IngressRoute>
         this.subnet = (subnet == null) ? "-" : subnet;
         this.nodelist = -1;
         this.nodes = null;
-        if (Feed.getFeedById(feedid) == null) {
+        if (Feed.getCachedFeedById(feedid) == null) {
             throw new IllegalArgumentException("No such feed: " + feedid);
         }
         if (!"-".equals(this.subnet)) {
@@ -96,6 +97,7 @@ public class IngressRoute extends NodeClass implements Comparable<IngressRoute>
             if (!sm.isValid()) {
                 throw new IllegalArgumentException("Invalid subnet: " + subnet);
             }
+            this.matcher = sm;
         }
     }
 
@@ -237,36 +239,72 @@ public class IngressRoute extends NodeClass implements Comparable<IngressRoute>
         if (this.feedid != feedid) {
             return false;
         }
-        // Get user from request and compare
+        return matches(getUser(req), getRemoteAddress(req));
+    }
+
+    /**
+     * Does this particular IngressRoute match a request for its feed, given the user and address already extracted from
+     * the request? This allows a caller checking several routes to decode the request only once.
+     *
+     * @param user the user from the request's Authorization header, or null if there is none
+     * @param addr the requester's IP address in network byte order, or null if it could not be determined
+     * @return true if a match, false otherwise
+     */
+    public boolean matches(String user, byte[] addr) {
         // Note: we don't check the password; the node will do that
-        if (userid.length() > 0 && !"-".equals(userid)) {
-            String credentials = req.getHeader("Authorization");
-            if (credentials == null || !credentials.startsWith("Basic ")) {
-                return false;
-            }
-            String cred = new String(Base64.decodeBase64(credentials.substring(6)));
-            int ix = cred.indexOf(':');
-            if (ix >= 0) {
-                cred = cred.substring(0, ix);
-            }
-            if (!cred.equals(this.userid)) {
-                return false;
-            }
+        if (userid.length() > 0 && !"-".equals(userid) && !userid.equals(user)) {
+            return false;
         }
         // If this route has a subnet, match it against the requester's IP addr
         if (subnet.length() > 0 && !"-".equals(subnet)) {
-            try {
-                InetAddress inet = InetAddress.getByName(req.getRemoteAddr());
-                SubnetMatcher sm = new SubnetMatcher(subnet);
-                return sm.matches(inet.getAddress());
-            } catch (UnknownHostException e) {
-                intlogger.error("PROV0008 matches: " + e.getMessage(), e);
-                return false;
-            }
+            return addr != null && getMatcher().matches(addr);
         }
         return true;
     }
 
+    private SubnetMatcher getMatcher() {
+        SubnetMatcher sm = matcher;
+        if (sm == null) {
+            sm = new SubnetMatcher(subnet);
+            matcher = sm;
+        }
+        return sm;
+    }
+
+    /**
+     * Get the user name from the Basic Authorization header of a request.
+     *
+     * @param req the request
+     * @return the user name, or null if the request has no Basic credentials
+     */
+    public static String getUser(HttpServletRequest req) {
+        String credentials = req.getHeader("Authorization");
+        if (credentials == null || !credentials.startsWith("Basic ")) {
+            return null;
+        }
+        String cred = new String(Base64.decodeBase64(credentials.substring(6)));
+        int ix = cred.indexOf(':');
+        if (ix >= 0) {
+            cred = cred.substring(0, ix);
+        }
+        return cred;
+    }
+
+    /**
+     * Get the IP address of the requester.
+     *
+     * @param req the request
+     * @return the address in network byte order, or null if it cannot be determined
+     */
+    public static byte[] getRemoteAddress(HttpServletRequest req) {
+        try {
+            return InetAddress.getByName(req.getRemoteAddr()).getAddress();
+        } catch (UnknownHostException e) {
+            intlogger.error("PROV0008 matches: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Compare IP addresses as byte arrays to a subnet specified as a CIDR. Taken from
      * org.onap.dmaap.datarouter.node.SubnetMatcher and modified somewhat.
@@ -297,11 +335,12 @@ public class IngressRoute extends NodeClass implements Comparable<IngressRoute>
                 }
                 mask = 0;
             } else {
-                int num = Integer.parseInt(subnet.substring(index + 1));
+                int num = 0;
                 try {
+                    num = Integer.parseInt(subnet.substring(index + 1));
                     sn = InetAddress.getByName(subnet.substring(0, index)).getAddress();
                     valid = true;
-                } catch (UnknownHostException e) {
+                } catch (NumberFormatException | UnknownHostException e) {
                     intlogger.error("PROV0008 SubnetMatcher: " + e.getMessage(), e);
                     valid = false;
                 }
@@ -336,6 +375,15 @@ public class IngressRoute extends NodeClass implements Comparable<IngressRoute>
         }
     }
 
+    /**
+     * Get the feed ID for this route.
+     *
+     * @return the feed ID
+     */
+    public int getFeedid() {
+        return feedid;
+    }
+
     /**
      * Get the list of node names for this route.
      *
@@ -35,6 +35,7 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.text.ParseException;
 import java.util.Iterator;
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
 import org.onap.dmaap.datarouter.provisioning.utils.ProvDbUtils;
 import org.onap.dmaap.datarouter.provisioning.utils.RLEBitSet;
 
@@ -113,6 +114,31 @@ public class LogRecord extends BaseLogRecord {
         this.fileName = pp[20];
     }
 
+    /**
+     * LogRecord Constructor from a tokenized log line.
+     * @param tok the tokenized line
+     * @throws ParseException in case of parse error
+     */
+    public LogRecord(LogLineTokenizer tok) throws ParseException {
+        super(tok);
+        this.type = tok.get(8);
+        this.feedFileID = tok.get(9);
+        this.remoteAddr = tok.get(10);
+        this.user = tok.get(11);
+        this.status = tok.getInt(12);
+
+        this.subID = tok.getInt(13);
+        this.fileID = tok.get(14);
+        this.result = tok.getInt(15);
+
+        this.attempts = tok.getInt(16);
+        this.reason = tok.get(17);
+
+        this.recordId = tok.getLong(18);
+        this.clength2 = (tok.size() == 21) ? tok.getLong(19) : 0;
+        this.fileName = tok.get(20);
+    }
+
     /**
      * Print all log records whose RECORD_IDs are in the bit set provided.
      *
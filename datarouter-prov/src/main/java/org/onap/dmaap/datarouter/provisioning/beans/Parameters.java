@@ -70,6 +70,7 @@ public class Parameters extends Syncable {
     public static final String DELIVERY_RETRY_RATIO = "DELIVERY_RETRY_RATIO";
     public static final String DELIVERY_MAX_AGE = "DELIVERY_MAX_AGE";
     public static final String THROTTLE_FILTER = "THROTTLE_FILTER";
+    public static final String API_RATE_LIMITS = "API_RATE_LIMITS";
     public static final String STATIC_ROUTING_NODES = "STATIC_ROUTING_NODES";
 
     private static EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
@@ -28,6 +28,8 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.text.ParseException;
 
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
+
 /**
  * The representation of a Publish Failure (PBF) Record, as retrieved from the DB.
  *
@@ -54,6 +56,19 @@ public class PubFailRecord extends BaseLogRecord {
         this.error = pp[11];
     }
 
+    /**
+     * PBF record constructor from a tokenized log line.
+     * @param tok the tokenized line
+     * @throws ParseException in case of parse error
+     */
+    public PubFailRecord(LogLineTokenizer tok) throws ParseException {
+        super(tok);
+        this.contentLengthReceived = tok.getLong(8);
+        this.sourceIP = tok.get(9);
+        this.user = tok.get(10);
+        this.error = tok.get(11);
+    }
+
     public long getContentLengthReceived() {
         return contentLengthReceived;
     }
@@ -32,6 +32,7 @@ import java.util.LinkedHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.onap.dmaap.datarouter.provisioning.utils.LOGJSONObject;
+import org.onap.dmaap.datarouter.provisioning.utils.LogLineTokenizer;
 
 
 /**
@@ -75,6 +76,29 @@ public class PublishRecord extends BaseLogRecord {
         this.fileName = StringUtils.substringAfterLast(this.getRequestUri(), "/");
     }
 
+    /**
+     * Publish record constructor from a tokenized log line.
+     * @param tok the tokenized line
+     * @throws ParseException in case of parse error
+     */
+    public PublishRecord(LogLineTokenizer tok) throws ParseException {
+        super(tok);
+        String requrl = tok.get(4);
+        int ix = requrl.indexOf("/publish/");
+        if (ix < 0) {
+            throw new ParseException("bad pattern", 0);
+        }
+        ix = requrl.indexOf('/', ix + 9);
+        if (ix < 0) {
+            throw new ParseException("bad pattern", 0);
+        }
+        this.feedFileid = requrl.substring(ix + 1);
+        this.remoteAddr = tok.get(8);
+        this.user = tok.get(9);
+        this.status = tok.getInt(10);
+        this.fileName = StringUtils.substringAfterLast(requrl, "/");
+    }
+
     /**
      * Publish record constructor.
      * @param rs ResultSet from DB
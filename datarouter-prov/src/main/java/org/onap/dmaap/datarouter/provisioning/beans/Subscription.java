@@ -59,6 +59,7 @@ public class Subscription extends Syncable {
     private static final String CREATED_DATE = "created_date";
     private static EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
     private static int nextSubid = getMaxSubID() + 1;
+    private static final EntityCache<Subscription> cache = new EntityCache<>(Subscription::getSubscriptionById);
 
     private int subid;
     private int feedid;
@@ -213,6 +214,24 @@ public class Subscription extends Syncable {
         return !list.isEmpty() ? list.get(0) : null;
     }
 
+    /**
+     * Get subscription by id, from the subscription cache if possible.  The Subscription returned is shared, and must
+     * not be modified; use {@link #getSubscriptionById(int)} to get a copy which can be changed and written back.
+     * @param id subscription id
+     * @return subscription, or null if it does not exist
+     */
+    public static Subscription getCachedSubscriptionById(int id) {
+        return cache.get(id);
+    }
+
+    /**
+     * Get the cache used by {@link #getCachedSubscriptionById(int)}.
+     * @return the subscription cache
+     */
+    public static EntityCache<Subscription> getCache() {
+        return cache;
+    }
+
     public static Collection<Subscription> getAllSubscriptions() {
         return getSubscriptionsForSQL("select * from SUBSCRIPTIONS");
     }
@@ -529,6 +548,7 @@ public class Subscription extends Syncable {
                 intlogger.error(SQLEXCEPTION + e.getMessage(), e);
             }
         }
+        cache.invalidate(subid);
         return rv;
     }
 
@@ -555,6 +575,7 @@ public class Subscription extends Syncable {
             rv = false;
             intlogger.warn("PROV0006 doUpdate: " + e.getMessage(), e);
         }
+        cache.invalidate(subid);
         return rv;
     }
 
@@ -574,6 +595,7 @@ public class Subscription extends Syncable {
             rv = false;
             intlogger.warn("PROV0006 doUpdate: " + e.getMessage(), e);
         }
+        cache.invalidate(subid);
         return rv;
     }
 
@@ -588,6 +610,7 @@ public class Subscription extends Syncable {
             rv = false;
             intlogger.warn("PROV0007 doDelete: " + e.getMessage(), e);
         }
+        cache.invalidate(subid);
         return rv;
     }
 
@@ -2,7 +2,12 @@ package org.onap.dmaap.datarouter.provisioning.store;
 
 import com.att.eelf.configuration.EELFLogger;
 import com.att.eelf.configuration.EELFManager;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -21,12 +26,42 @@ import static org.onap.dmaap.datarouter.provisioning.StatisticsServlet.FEEDID;
 public class StatisticsStore {
 
   private static final EELFLogger eventlogger = EELFManager.getInstance().getLogger("EventLog");
+  private static final long MS_PER_HOUR = 3600000L;
+  /**
+   * Output is written through a buffer of this size, rather than a row at a time.
+   */
+  private static final int OUTPUT_BUFFER = 65536;
+  /**
+   * Rows are fetched from the DB this many at a time, rather than all at once.
+   */
+  private static final int FETCH_SIZE = 1000;
+  private static final String[] FIELDS = {"FEEDNAME", FEEDID, "FILES_PUBLISHED", "PUBLISH_LENGTH", "FILES_DELIVERED",
+    "DELIVERED_LENGTH", "SUBSCRIBER_URL", "SUBID", "PUBLISH_TIME", "DELIVERY_TIME", "AverageDelay"};
+  private static final String[] JSON_KEYS = new String[FIELDS.length];
+
+  static {
+    for (int i = 0; i < FIELDS.length; i++) {
+      JSON_KEYS[i] = LOGJSONObject.quote(FIELDS[i].toLowerCase()) + ":";
+    }
+  }
 
-  public void getRecordsForSQL(String feedids, String outputType, ServletOutputStream out,
+  /**
+   * getRecordsForSQL - Writing the statistics of feeds, and of their subscriptions, over a period of time.
+   * The statistics come from the hourly rollups kept by the LogfileLoader, so the period is rounded out to
+   * whole hours.
+   *
+   * @param feedids comma separated list of feed IDs
+   * @param start start of the period, in ms
+   * @param end end of the period, in ms
+   * @param outputType "csv" or "json"
+   * @param out ServletOutputStream
+   * @param resp HttpServletResponse
+   */
+  public void getRecordsForSQL(String feedids, long start, long end, String outputType, ServletOutputStream out,
                                HttpServletResponse resp) {
     try {
       try (Connection conn = ProvDbUtils.getInstance().getConnection();
-           PreparedStatement ps = makePreparedStatement(feedids, conn);
+           PreparedStatement ps = makePreparedStatement(feedids, start, end, conn);
            ResultSet rs = ps.executeQuery()) {
         if ("csv".equals(outputType)) {
           resp.setContentType("application/octet-stream");
@@ -34,10 +69,14 @@ public class StatisticsStore {
           resp.setHeader("Content-Disposition",
             "attachment; filename=\"result:" + LocalDateTime.now().format(formatter) + ".csv\"");
           eventlogger.info("Generating CSV file from Statistics resultset");
-          rsToCSV(rs, out);
+          Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset()), OUTPUT_BUFFER);
+          rsToCSV(rs, writer);
+          writer.flush();
         } else {
           eventlogger.info("Generating JSON for Statistics resultset");
-          this.rsToJson(rs, out);
+          Writer writer = new BufferedWriter(new OutputStreamWriter(out, getCharset(resp)), OUTPUT_BUFFER);
+          this.rsToJson(rs, writer);
+          writer.flush();
         }
       } catch (SQLException e) {
         eventlogger.error("SQLException:" + e);
@@ -51,85 +90,106 @@ public class StatisticsStore {
     }
   }
 
-  private PreparedStatement makePreparedStatement(String feedids, Connection conn) throws SQLException, ParseException {
-    String sql;
+  private PreparedStatement makePreparedStatement(String feedids, long start, long end, Connection conn)
+      throws SQLException, ParseException {
     eventlogger.info("Generating sql query to get Statistics resultset. ");
-    sql =  "SELECT * FROM LOG_RECORDS WHERE id in(" + feedids + ")";
+    String ids = getFeedIdList(feedids);
+    String hours = " WHERE FEEDID IN (" + ids + ") AND HOUR_START >= ? AND HOUR_START <= ?";
+    String sql = "SELECT f.NAME AS FEEDNAME, d.FEEDID AS FEEDID, p.FILES_PUBLISHED AS FILES_PUBLISHED,"
+      + " p.PUBLISH_LENGTH AS PUBLISH_LENGTH, d.FILES_DELIVERED AS FILES_DELIVERED,"
+      + " d.DELIVERED_LENGTH AS DELIVERED_LENGTH, d.SUBSCRIBER_URL AS SUBSCRIBER_URL, d.SUBID AS SUBID,"
+      + " p.PUBLISH_TIME AS PUBLISH_TIME, d.DELIVERY_TIME AS DELIVERY_TIME,"
+      + " CASE WHEN d.DELAY_COUNT > 0 THEN d.DELAY_SUM / 1000.0 / d.DELAY_COUNT END AS AverageDelay"
+      + " FROM (SELECT FEEDID, SUBID, SUM(FILES_DELIVERED) AS FILES_DELIVERED,"
+      + " SUM(DELIVERED_LENGTH) AS DELIVERED_LENGTH, SUM(DELAY_SUM) AS DELAY_SUM, SUM(DELAY_COUNT) AS DELAY_COUNT,"
+      + " MAX(SUBSCRIBER_URL) AS SUBSCRIBER_URL, MAX(LAST_EVENT_TIME) AS DELIVERY_TIME FROM LOG_STATS_HOURLY"
+      + hours + " AND SUBID <> 0 GROUP BY FEEDID, SUBID) d"
+      + " LEFT JOIN (SELECT FEEDID, SUM(FILES_PUBLISHED) AS FILES_PUBLISHED, SUM(PUBLISH_LENGTH) AS PUBLISH_LENGTH,"
+      + " MAX(LAST_EVENT_TIME) AS PUBLISH_TIME FROM LOG_STATS_HOURLY"
+      + hours + " AND SUBID = 0 GROUP BY FEEDID) p ON p.FEEDID = d.FEEDID"
+      + " LEFT JOIN FEEDS f ON f.FEEDID = d.FEEDID"
+      + " ORDER BY d.FEEDID, d.SUBID";
     eventlogger.debug("SQL Query for Statistics resultset. " + sql);
-    return conn.prepareStatement(sql);
+    long firstHour = Math.floorDiv(start, MS_PER_HOUR) * MS_PER_HOUR;
+    PreparedStatement ps = conn.prepareStatement(sql);
+    ps.setFetchSize(FETCH_SIZE);
+    ps.setLong(1, firstHour);
+    ps.setLong(2, end);
+    ps.setLong(3, firstHour);
+    ps.setLong(4, end);
+    return ps;
+  }
+
+  private static Charset getCharset(HttpServletResponse resp) {
+    String encoding = resp.getCharacterEncoding();
+    try {
+      return (encoding != null) ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+    } catch (IllegalArgumentException e) {
+      return StandardCharsets.ISO_8859_1;
+    }
+  }
+
+  /**
+   * getFeedIdList - Checking a list of feed IDs before it is put in a query.
+   *
+   * @param feedids comma separated list of feed IDs
+   * @return the feed IDs which are numbers, comma separated; or "-1" if there are none
+   */
+  static String getFeedIdList(String feedids) {
+    StringBuilder ids = new StringBuilder();
+    for (String id : feedids.split(",")) {
+      try {
+        int feedid = Integer.parseInt(id.trim());
+        ids.append((ids.length() > 0) ? "," : "").append(feedid);
+      } catch (NumberFormatException e) {
+        eventlogger.debug("Ignoring feed ID " + id);
+      }
+    }
+    return (ids.length() > 0) ? ids.toString() : "-1";
   }
 
 
   /**
-   * rsToJson - Converting RS to JSON object.
+   * rsToCSV - Writing the ResultSet as CSV, as the rows are read.
    *
-   * @param out ServletOutputStream
    * @param rs as ResultSet
+   * @param out Writer
    * @throws IOException input/output exception
    * @throws SQLException SQL exception
    */
-  private void rsToCSV(ResultSet rs, ServletOutputStream out) throws IOException, SQLException {
-    String header = "FEEDNAME,FEEDID,FILES_PUBLISHED,PUBLISH_LENGTH, FILES_DELIVERED, "
-      + "DELIVERED_LENGTH, SUBSCRIBER_URL, SUBID, PUBLISH_TIME,DELIVERY_TIME, AverageDelay\n";
-    out.write(header.getBytes());
-
+  private void rsToCSV(ResultSet rs, Writer out) throws IOException, SQLException {
+    out.write("FEEDNAME,FEEDID,FILES_PUBLISHED,PUBLISH_LENGTH, FILES_DELIVERED, "
+      + "DELIVERED_LENGTH, SUBSCRIBER_URL, SUBID, PUBLISH_TIME,DELIVERY_TIME, AverageDelay\n");
     while (rs.next()) {
-      String line = rs.getString("FEEDNAME")
-        + ","
-        + rs.getString(FEEDID)
-        + ","
-        + rs.getString("FILES_PUBLISHED")
-        + ","
-        + rs.getString("PUBLISH_LENGTH")
-        + ","
-        + rs.getString("FILES_DELIVERED")
-        + ","
-        + rs.getString("DELIVERED_LENGTH")
-        + ","
-        + rs.getString("SUBSCRIBER_URL")
-        + ","
-        + rs.getString("SUBID")
-        + ","
-        + rs.getString("PUBLISH_TIME")
-        + ","
-        + rs.getString("DELIVERY_TIME")
-        + ","
-        + rs.getString("AverageDelay")
-        + ","
-        + "\n";
-      out.write(line.getBytes());
-      out.flush();
+      for (String key : FIELDS) {
+        out.write(String.valueOf(rs.getString(key)));
+        out.write(',');
+      }
+      out.write('\n');
     }
   }
 
   /**
-   * rsToJson - Converting RS to JSON object.
+   * rsToJson - Writing the ResultSet as JSON, as the rows are read.
    *
-   * @param out ServletOutputStream
    * @param rs as ResultSet
+   * @param out Writer
    * @throws IOException input/output exception
    * @throws SQLException SQL exception
    */
-  private void rsToJson(ResultSet rs, ServletOutputStream out) throws IOException, SQLException {
-    String[] fields = {"FEEDNAME", FEEDID, "FILES_PUBLISHED", "PUBLISH_LENGTH", "FILES_DELIVERED",
-      "DELIVERED_LENGTH", "SUBSCRIBER_URL", "SUBID", "PUBLISH_TIME", "DELIVERY_TIME",
-      "AverageDelay"};
-    StringBuilder line = new StringBuilder();
-    line.append("[\n");
+  private void rsToJson(ResultSet rs, Writer out) throws IOException, SQLException {
+    out.write("[\n");
     while (rs.next()) {
-      LOGJSONObject j2 = new LOGJSONObject();
-      for (String key : fields) {
-        Object val = rs.getString(key);
-        if (val != null) {
-          j2.put(key.toLowerCase(), val);
-        } else {
-          j2.put(key.toLowerCase(), "");
-        }
+      char sep = '{';
+      for (int i = 0; i < FIELDS.length; i++) {
+        String val = rs.getString(FIELDS[i]);
+        out.write(sep);
+        out.write(JSON_KEYS[i]);
+        LOGJSONObject.quote((val != null) ? val : "", out);
+        sep = ',';
       }
-      line.append(j2.toString());
-      line.append(",\n");
+      out.write("},\n");
     }
-    line.append("]");
-    out.print(line.toString());
+    out.write("]");
   }
 }
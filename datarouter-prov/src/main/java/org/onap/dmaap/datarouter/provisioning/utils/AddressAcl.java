@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An access control list of IP addresses and networks, such as the PROV_AUTH_ADDRESSES parameter, compiled into a
+ * binary prefix trie (one for IPv4 and one for IPv6).  Each entry may be an IP address, a host name, or either of
+ * these followed by /<i>prefix-length</i>.  Host names are resolved when the list is compiled, so checking an address
+ * never does a DNS lookup; call {@link #refresh()} from time to time to pick up changes to the DNS.
+ *
+ * <p>The matching rules are those of the original per-request check: an entry with no prefix length, or a prefix
+ * length of zero or more than the length of the address, matches only that address.  An entry which cannot be
+ * resolved matches nothing.  Instances are immutable.
+ */
+public class AddressAcl {
+
+    private static final EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9.]+|.*:.*");
+
+    private final Set<String> entries;
+    private final boolean hasHostNames;
+    private final Trie ipv4 = new Trie();
+    private final Trie ipv6 = new Trie();
+
+    private AddressAcl(Set<String> entries) {
+        this.entries = entries;
+        boolean names = false;
+        for (String entry : entries) {
+            int ix = entry.indexOf('/');
+            String host = (ix >= 0) ? entry.substring(0, ix) : entry;
+            int bits = -1;
+            try {
+                if (ix >= 0) {
+                    bits = Integer.parseInt(entry.substring(ix + 1));
+                }
+                if (!IP_LITERAL.matcher(host).matches()) {
+                    names = true;
+                }
+                byte[] addr = InetAddress.getByName(host).getAddress();
+                if (bits <= 0 || bits > addr.length * 8) {
+                    bits = addr.length * 8;
+                }
+                ((addr.length == 4) ? ipv4 : ipv6).insert(addr, bits);
+            } catch (UnknownHostException | NumberFormatException e) {
+                intlogger.error("PROV0053 AddressAcl: cannot use " + entry + ": " + e.getMessage(), e);
+            }
+        }
+        this.hasHostNames = names;
+    }
+
+    /**
+     * Compile a list of addresses and networks.
+     *
+     * @param entries the addresses, host names and networks
+     * @return the compiled list
+     */
+    public static AddressAcl compile(Collection<String> entries) {
+        return new AddressAcl(Collections.unmodifiableSet(new HashSet<>(entries)));
+    }
+
+    /**
+     * Recompile this list, resolving any host names again.
+     *
+     * @return a new compiled list, or this one if it contains no host names
+     */
+    public AddressAcl refresh() {
+        return hasHostNames ? new AddressAcl(entries) : this;
+    }
+
+    /**
+     * Does the list contain any host names, which may need to be resolved again?
+     *
+     * @return true if there are host names in the list
+     */
+    public boolean hasHostNames() {
+        return hasHostNames;
+    }
+
+    /**
+     * Get the entries this list was compiled from.
+     *
+     * @return an unmodifiable set of entries
+     */
+    public Set<String> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Is an address matched by any entry in the list?
+     *
+     * @param addr the address
+     * @return true if the address matches
+     */
+    public boolean matches(InetAddress addr) {
+        byte[] bytes = addr.getAddress();
+        return ((bytes.length == 4) ? ipv4 : ipv6).matches(bytes);
+    }
+
+    /**
+     * A binary trie of address prefixes.  Node 0 is the root; the children of node n are at 2n (for a 0 bit) and
+     * 2n + 1 (for a 1 bit) in the children array, and 0 means there is no child.
+     */
+    private static class Trie {
+
+        private int[] children = new int[64];
+        private boolean[] terminal = new boolean[32];
+        private int size = 1;
+
+        void insert(byte[] addr, int bits) {
+            int node = 0;
+            for (int i = 0; i < bits; i++) {
+                if (terminal[node]) {
+                    return;     // a shorter prefix already matches everything below here
+                }
+                int ix = 2 * node + bit(addr, i);
+                if (children[ix] == 0) {
+                    int child = newNode();    // may grow the arrays
+                    children[ix] = child;
+                }
+                node = children[ix];
+            }
+            terminal[node] = true;
+        }
+
+        boolean matches(byte[] addr) {
+            int node = 0;
+            int bits = addr.length * 8;
+            for (int i = 0; !terminal[node]; i++) {
+                if (i == bits) {
+                    return false;
+                }
+                node = children[2 * node + bit(addr, i)];
+                if (node == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int newNode() {
+            if (size == terminal.length) {
+                terminal = Arrays.copyOf(terminal, size * 2);
+                children = Arrays.copyOf(children, size * 4);
+            }
+            return size++;
+        }
+
+        private static int bit(byte[] addr, int ix) {
+            return (addr[ix >> 3] >> (7 - (ix & 7))) & 1;
+        }
+    }
+}
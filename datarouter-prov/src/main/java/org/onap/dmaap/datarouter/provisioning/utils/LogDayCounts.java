@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps the number of LOG_RECORDS rows for each day (UTC) of EVENT_TIME in the small LOG_DAY_COUNTS table, so that
+ * the size of LOG_RECORDS and the retention cutoff can be found without scanning it.  The counts are updated by the
+ * {@link LogfileLoader} after it inserts rows, and when it prunes old rows.  LOG_RECORDS is a MyISAM table, but
+ * LOG_DAY_COUNTS is InnoDB, so that a failed update of the counts is rolled back as a whole and can simply be tried
+ * again.
+ *
+ * <p>A database without the table (one created before the table was added to <code>sql_init_01.sql</code>, or the H2
+ * database used by the unit tests) gets it the first time {@link #createTable(Connection)} is called, filled in with
+ * one scan of LOG_RECORDS.  Should the counts ever drift (rows loaded or removed by hand, say), dropping the table
+ * has them rebuilt when the provisioning server next starts.
+ */
+public class LogDayCounts {
+
+    static final long MS_PER_DAY = 86400000L;
+
+    private static final EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
+    private static final String COUNT_DAYS_SQL = "SELECT FLOOR(EVENT_TIME/86400000) AS EVENT_DAY, COUNT(*) AS RECORDS"
+        + " FROM LOG_RECORDS";
+
+    private LogDayCounts() {
+    }
+
+    /**
+     * Create and fill in the LOG_DAY_COUNTS table, if it does not exist yet.
+     *
+     * @param conn a DB connection
+     * @return true if the table was created
+     * @throws SQLException if the table cannot be created
+     */
+    public static boolean createTable(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "LOG_DAY_COUNTS", null)) {
+            if (rs.next()) {
+                ProvDbUtils.useInnoDb(conn, "LOG_DAY_COUNTS");
+                return false;
+            }
+        }
+        intlogger.info("PROV8014 Creating LOG_DAY_COUNTS from LOG_RECORDS");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE LOG_DAY_COUNTS (EVENT_DAY INT NOT NULL PRIMARY KEY,"
+                + " RECORDS BIGINT NOT NULL) ENGINE = InnoDB");
+            stmt.execute("INSERT INTO LOG_DAY_COUNTS (EVENT_DAY, RECORDS) " + COUNT_DAYS_SQL + " GROUP BY EVENT_DAY");
+        }
+        return true;
+    }
+
+    /**
+     * Add to the counts of some days.  This does not commit; the caller does so once all the summaries of the rows it
+     * has inserted are updated, or rolls back so the update can be tried again.
+     *
+     * @param conn a DB connection
+     * @param counts a map from the day (days since the epoch) to the number of records added for that day
+     * @throws SQLException on a DB error
+     */
+    public static void add(Connection conn, Map<Long, Long> counts) throws SQLException {
+        if (counts.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO LOG_DAY_COUNTS (EVENT_DAY, RECORDS)"
+            + " VALUES (?, ?) ON DUPLICATE KEY UPDATE RECORDS = RECORDS + VALUES(RECORDS)")) {
+            for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+                ps.setLong(1, entry.getKey());
+                ps.setLong(2, entry.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Get the number of records held for each day.
+     *
+     * @param conn a DB connection
+     * @return a map from the day (days since the epoch) to the number of records
+     * @throws SQLException on a DB error
+     */
+    public static SortedMap<Long, Long> getDayCounts(Connection conn) throws SQLException {
+        SortedMap<Long, Long> days = new TreeMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+            "SELECT EVENT_DAY, RECORDS FROM LOG_DAY_COUNTS WHERE RECORDS > 0");
+            ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                days.put(rs.getLong("EVENT_DAY"), rs.getLong("RECORDS"));
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Update the counts after the records from before a day boundary have been removed.
+     *
+     * @param conn a DB connection
+     * @param cutoff the time, in ms, of the start of a day
+     * @param all true if all records before <i>cutoff</i> were removed; if not, the days before <i>cutoff</i> are
+     *     counted again
+     * @throws SQLException on a DB error
+     */
+    public static void removeBefore(Connection conn, long cutoff, boolean all) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM LOG_DAY_COUNTS WHERE EVENT_DAY < ?")) {
+            ps.setLong(1, cutoff / MS_PER_DAY);
+            ps.executeUpdate();
+        }
+        if (!all) {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO LOG_DAY_COUNTS (EVENT_DAY, RECORDS) "
+                + COUNT_DAYS_SQL + " WHERE EVENT_TIME < ? GROUP BY EVENT_DAY")) {
+                ps.setLong(1, cutoff);
+                ps.executeUpdate();
+            }
+        }
+    }
+}
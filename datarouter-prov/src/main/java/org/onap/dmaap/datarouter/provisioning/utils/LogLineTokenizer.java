@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Splits a line of a DR logfile into its '|' separated fields in a single pass, recording only where each field starts
+ * and ends.  Numeric fields are parsed straight from the line, and a field is only copied into a String when it is
+ * asked for as one.  One tokenizer is meant to be reused, via {@link #reset(String)}, for every line of a file.
+ *
+ * <p>The fields are exactly those <code>line.split("\\|")</code> would give (trailing empty fields are dropped), and
+ * the numeric methods accept and reject exactly what {@link Integer#parseInt(String)} and {@link
+ * Long#parseLong(String)} do.  Instances are not thread safe.
+ */
+public class LogLineTokenizer {
+
+    private static final long MS_PER_DAY = 86400000L;
+
+    private String line = "";
+    private int[] starts = new int[24];
+    private int[] ends = new int[24];
+    private int count;
+    private final int[] dateFields = new int[7];
+
+    /**
+     * Tokenize a new line, discarding the previous one.
+     *
+     * @param newLine the line
+     * @return this tokenizer
+     */
+    public LogLineTokenizer reset(String newLine) {
+        line = newLine;
+        count = 0;
+        int start = 0;
+        int ix;
+        while ((ix = line.indexOf('|', start)) >= 0) {
+            add(start, ix);
+            start = ix + 1;
+        }
+        add(start, line.length());
+        if (!line.isEmpty()) {
+            while (count > 0 && starts[count - 1] == ends[count - 1]) {
+                count--;
+            }
+        }
+        return this;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Get the number of fields in the line.
+     *
+     * @return the count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get a field as a String.
+     *
+     * @param field the index of the field
+     * @return the text of the field
+     */
+    public String get(int field) {
+        check(field);
+        return line.substring(starts[field], ends[field]);
+    }
+
+    /**
+     * Does a field hold exactly the given text?
+     *
+     * @param field the index of the field
+     * @param text the text
+     * @return true if it does
+     */
+    public boolean equals(int field, String text) {
+        check(field);
+        return ends[field] - starts[field] == text.length() && line.startsWith(text, starts[field]);
+    }
+
+    /**
+     * Does a field hold the given text, ignoring case?
+     *
+     * @param field the index of the field
+     * @param text the text
+     * @return true if it does
+     */
+    public boolean equalsIgnoreCase(int field, String text) {
+        check(field);
+        return ends[field] - starts[field] == text.length()
+            && line.regionMatches(true, starts[field], text, 0, text.length());
+    }
+
+    /**
+     * Parse a field as an int.
+     *
+     * @param field the index of the field
+     * @return the value
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int getInt(int field) {
+        check(field);
+        return parseInt(starts[field], ends[field]);
+    }
+
+    /**
+     * Parse a field as a long.
+     *
+     * @param field the index of the field
+     * @return the value
+     * @throws NumberFormatException if the field is not a valid long
+     */
+    public long getLong(int field) {
+        check(field);
+        int start = starts[field];
+        int end = ends[field];
+        if (end - start > 0 && end - start < 19 && isDigits(start, end)) {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                value = value * 10 + (line.charAt(i) - '0');
+            }
+            return value;
+        }
+        return Long.parseLong(line.substring(start, end));
+    }
+
+    /**
+     * Parse a field holding a whitespace separated list of ints, such as the list of subscriptions in a DEL record.
+     * The list is split as <code>split("\\s+")</code> would split it.
+     *
+     * @param field the index of the field
+     * @return the values
+     * @throws NumberFormatException if any value is not a valid int
+     */
+    public int[] getIntList(int field) {
+        check(field);
+        int start = starts[field];
+        int end = ends[field];
+        if (start == end) {
+            return new int[]{parseInt(start, end)};     // throws, as for an empty string
+        }
+        // Trailing separators produce no values
+        while (end > start && isSpace(line.charAt(end - 1))) {
+            end--;
+        }
+        int values = (end > start) ? 1 : 0;
+        for (int i = start; i < end; i++) {
+            if (isSpace(line.charAt(i)) && (i == start || !isSpace(line.charAt(i - 1)))) {
+                values++;
+            }
+        }
+        int[] rv = new int[values];
+        if (values > 0 && isSpace(line.charAt(start))) {
+            parseInt(start, start);     // a leading separator gives an empty value, which throws
+        }
+        int pos = start;
+        for (int n = 0; n < values; n++) {
+            int tokEnd = pos;
+            while (tokEnd < end && !isSpace(line.charAt(tokEnd))) {
+                tokEnd++;
+            }
+            rv[n] = parseInt(pos, tokEnd);
+            pos = tokEnd;
+            while (pos < end && isSpace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Parse a field holding a timestamp, such as <code>2018-08-29T10:10:10.543Z</code>, as a time in UTC.  The field
+     * must contain seven numbers (year, month, day, hour, minute, second and millisecond), each followed by a single
+     * non-digit.  As with a lenient {@link java.util.GregorianCalendar}, values out of range roll over into the next
+     * field up.
+     *
+     * @param field the index of the field
+     * @return the time, in ms since the epoch
+     * @throws ParseException if the field is not a valid timestamp
+     */
+    public long getEpochMillis(int field) throws ParseException {
+        check(field);
+        int[] num = dateFields;
+        Arrays.fill(num, 0);
+        int place = 0;
+        for (int i = starts[field]; i < ends[field]; i++) {
+            char chr = line.charAt(i);
+            if (chr < '0' || chr > '9') {
+                place++;
+            } else {
+                if (place >= num.length) {
+                    throw new ParseException("parseDate()", 0);
+                }
+                num[place] = (num[place] * 10) + (chr - '0');
+            }
+        }
+        if (place != 7) {
+            throw new ParseException("parseDate()", 1);
+        }
+        long month = num[1] - 1L;
+        long year = num[0] + Math.floorDiv(month, 12);
+        long days = daysFromCivil(year, Math.floorMod(month, 12) + 1) + num[2] - 1;
+        return days * MS_PER_DAY + ((num[3] * 60L + num[4]) * 60L + num[5]) * 1000L + num[6];
+    }
+
+    /**
+     * The number of days from 1970-01-01 to the first day of a month in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(long year, int month) {
+        long yr = (month <= 2) ? year - 1 : year;
+        long era = Math.floorDiv(yr, 400);
+        long yoe = yr - era * 400;
+        long doy = (153L * (month + ((month > 2) ? -3 : 9)) + 2) / 5;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private int parseInt(int start, int end) {
+        if (end - start > 0 && end - start < 10 && isDigits(start, end)) {
+            int value = 0;
+            for (int i = start; i < end; i++) {
+                value = value * 10 + (line.charAt(i) - '0');
+            }
+            return value;
+        }
+        // Anything unusual (signs, overflow, non-ASCII digits, errors) is left to the JDK
+        return Integer.parseInt(line.substring(start, end));
+    }
+
+    private boolean isDigits(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char chr = line.charAt(i);
+            if (chr < '0' || chr > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(char chr) {
+        return chr == ' ' || chr == '\t' || chr == '\n' || chr == '\u000B' || chr == '\f' || chr == '\r';
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    private void check(int field) {
+        if (field < 0 || field >= count) {
+            throw new ArrayIndexOutOfBoundsException(field);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Manages LOG_RECORDS as a table range-partitioned by day on EVENT_TIME, so that old records can be removed by
+ * dropping whole partitions rather than by DELETEs, which lock the (MyISAM) table for a long time.  Partition
+ * <code>pYYYYMMDD</code> holds the records of that day (UTC), and <code>pmax</code> catches anything beyond the last
+ * day; partitions are created a number of days ahead of time, by splitting <code>pmax</code> while it is empty.
+ *
+ * <p>A table created by <code>sql_init_01.sql</code> is converted the first time {@link #maintain(Connection, long)}
+ * is called.  As MariaDB requires the partitioning column to be part of every unique key, the primary key becomes
+ * (RECORD_ID, EVENT_TIME); RECORD_ID keeps its own index, and its uniqueness is still ensured by the loader.
+ *
+ * <p>On databases without partitioning (such as the H2 database used by the unit tests) the same day-based retention
+ * is applied with DELETEs, so the callers need not know which is in use.
+ */
+public class LogRecordPartitions {
+
+    static final long MS_PER_DAY = 86400000L;
+
+    /**
+     * A converted table gets a partition for at most this many days of existing records; older records go into the
+     * first partition.
+     */
+    static final int MAX_INITIAL_DAYS = 1000;
+
+    private static final EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
+    private static final String MAX_PARTITION = "pmax";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String PARTITIONS_SQL = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS"
+        + " FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'LOG_RECORDS'";
+
+    private final boolean nativePartitions;
+    private final int daysAhead;
+
+    /**
+     * Create a LogRecordPartitions for the database behind a connection.
+     *
+     * @param conn a DB connection
+     * @param daysAhead the number of days after today to have partitions for
+     * @throws SQLException if the database cannot be identified
+     */
+    public LogRecordPartitions(Connection conn, int daysAhead) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+        this.nativePartitions = product.contains("mariadb") || product.contains("mysql");
+        this.daysAhead = daysAhead;
+    }
+
+    /**
+     * Is the table really partitioned, or is retention done with DELETEs?
+     *
+     * @return true if the table is partitioned
+     */
+    public boolean isNative() {
+        return nativePartitions;
+    }
+
+    /**
+     * Convert the table if it is not yet partitioned, and create any partitions needed up to <i>daysAhead</i> days
+     * after the current day.
+     *
+     * @param conn a DB connection
+     * @param now the current time, in ms
+     * @throws SQLException if the table cannot be altered
+     */
+    public void maintain(Connection conn, long now) throws SQLException {
+        if (!nativePartitions) {
+            return;
+        }
+        long lastDay = now / MS_PER_DAY + daysAhead;
+        SortedMap<Long, Long> days = getDays(conn);
+        try (Statement stmt = conn.createStatement()) {
+            if (days == null) {
+                long firstDay = lastDay - daysAhead;
+                try (ResultSet rs = stmt.executeQuery("SELECT MIN(EVENT_TIME) AS FIRST FROM LOG_RECORDS")) {
+                    if (rs.next() && rs.getObject("FIRST") != null) {
+                        firstDay = Math.min(firstDay, rs.getLong("FIRST") / MS_PER_DAY);
+                    }
+                }
+                firstDay = Math.max(firstDay, lastDay - MAX_INITIAL_DAYS);
+                intlogger.info("PROV8013 Partitioning LOG_RECORDS by day, from " + partitionName(firstDay));
+                stmt.execute("ALTER TABLE LOG_RECORDS DROP PRIMARY KEY, ADD PRIMARY KEY (RECORD_ID, EVENT_TIME)"
+                    + " PARTITION BY RANGE (EVENT_TIME) (" + partitionDefinitions(firstDay, lastDay) + ")");
+            } else {
+                long nextDay = days.isEmpty() ? (lastDay - daysAhead) : (days.lastKey() + 1);
+                if (nextDay <= lastDay) {
+                    intlogger.debug("Adding LOG_RECORDS partitions " + partitionName(nextDay) + " .. "
+                        + partitionName(lastDay));
+                    stmt.execute("ALTER TABLE LOG_RECORDS REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+                        + partitionDefinitions(nextDay, lastDay) + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of records held for each day.
+     *
+     * @param conn a DB connection
+     * @return a map from the day (days since the epoch) to the number of records
+     * @throws SQLException on a DB error
+     */
+    public SortedMap<Long, Long> getDayCounts(Connection conn) throws SQLException {
+        SortedMap<Long, Long> days = nativePartitions ? getDays(conn) : null;
+        if (days == null) {
+            days = new TreeMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT FLOOR(EVENT_TIME/86400000) AS DAY, COUNT(*) AS COUNT FROM LOG_RECORDS GROUP BY DAY");
+                ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    days.put(rs.getLong("DAY"), rs.getLong("COUNT"));
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Remove all the records from before a day boundary, by dropping the partitions which hold them.
+     *
+     * @param conn a DB connection
+     * @param cutoff the time, in ms, of the start of a day
+     * @return true if any records (or partitions) were removed
+     * @throws SQLException on a DB error
+     */
+    public boolean dropBefore(Connection conn, long cutoff) throws SQLException {
+        if (!nativePartitions) {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM LOG_RECORDS WHERE EVENT_TIME < ?")) {
+                ps.setLong(1, cutoff);
+                return ps.executeUpdate() > 0;
+            }
+        }
+        SortedMap<Long, Long> days = getDays(conn);
+        if (days == null) {
+            return false;
+        }
+        List<String> names = new ArrayList<>();
+        for (Long day : days.headMap(cutoff / MS_PER_DAY).keySet()) {
+            names.add(partitionName(day));
+        }
+        if (names.isEmpty()) {
+            return false;
+        }
+        intlogger.debug("Dropping LOG_RECORDS partitions " + names);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE LOG_RECORDS DROP PARTITION " + String.join(", ", names));
+        }
+        return true;
+    }
+
+    /**
+     * Get the day partitions of the table, with the number of rows in each.  The row counts come from the table
+     * statistics, which are exact for MyISAM tables.
+     *
+     * @return a map from the day to the number of rows, or null if the table is not partitioned
+     */
+    private SortedMap<Long, Long> getDays(Connection conn) throws SQLException {
+        SortedMap<Long, Long> days = new TreeMap<>();
+        boolean partitioned = false;
+        try (PreparedStatement ps = conn.prepareStatement(PARTITIONS_SQL);
+            ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String name = rs.getString("PARTITION_NAME");
+                if (name != null) {
+                    partitioned = true;
+                    if (!MAX_PARTITION.equals(name)) {
+                        long bound = Long.parseLong(rs.getString("PARTITION_DESCRIPTION").trim());
+                        days.put(bound / MS_PER_DAY - 1, rs.getLong("TABLE_ROWS"));
+                    }
+                }
+            }
+        }
+        return partitioned ? days : null;
+    }
+
+    /**
+     * Get the name of the partition for a day.
+     *
+     * @param day the day, in days since the epoch
+     * @return the partition name
+     */
+    static String partitionName(long day) {
+        return "p" + LocalDate.ofEpochDay(day).format(DAY_FORMAT);
+    }
+
+    /**
+     * Get the definitions of the partitions for a range of days, followed by <code>pmax</code>.
+     *
+     * @param firstDay the first day
+     * @param lastDay the last day
+     * @return the partition definitions
+     */
+    static String partitionDefinitions(long firstDay, long lastDay) {
+        StringBuilder sb = new StringBuilder();
+        for (long day = firstDay; day <= lastDay; day++) {
+            sb.append("PARTITION ").append(partitionName(day)).append(" VALUES LESS THAN (")
+                .append((day + 1) * MS_PER_DAY).append("), ");
+        }
+        return sb.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN MAXVALUE").toString();
+    }
+}
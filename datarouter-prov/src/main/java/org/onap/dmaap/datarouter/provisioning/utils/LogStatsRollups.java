@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.onap.dmaap.datarouter.provisioning.beans.BaseLogRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.DeliveryRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.PublishRecord;
+
+/**
+ * Keeps hourly statistics per feed and subscription in the LOG_STATS_HOURLY table, so that the Statistics API need
+ * not aggregate LOG_RECORDS.  For each hour (of EVENT_TIME) there is a row per feed, with SUBID 0, holding the files
+ * and bytes published, and a row per subscription holding the files and bytes delivered successfully and the sum and
+ * number of the delays between publication and delivery.  The rows are updated by the {@link LogfileLoader} after
+ * it inserts the records, in one transaction (the table is InnoDB), and removed along with the old records when it
+ * prunes LOG_RECORDS.
+ *
+ * <p>The delay of a successful delivery is counted once both it and its (successful) publication have been loaded,
+ * whichever is loaded first: the other is found in LOG_RECORDS by its PUBLISH_ID, which is indexed.  Records which
+ * have been inserted but not yet added here are left out of these lookups, so that no delay is counted twice.
+ *
+ * <p>A database without the table gets it the first time {@link #createTable(Connection)} is called, filled in with
+ * the counts (but not the delays) of the records already in LOG_RECORDS.
+ */
+public class LogStatsRollups {
+
+    static final long MS_PER_HOUR = 3600000L;
+
+    private static final EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
+    private static final int LOOKUP_STEP = 500;     // PUBLISH_IDs looked up per query
+    private static final String PUBS_SQL = "SELECT PUBLISH_ID, EVENT_TIME, RECORD_ID FROM LOG_RECORDS"
+        + " WHERE TYPE = 'pub' AND STATUS = 204 AND PUBLISH_ID IN ";
+    private static final String DELS_SQL = "SELECT PUBLISH_ID, EVENT_TIME, FEEDID, DELIVERY_SUBID, RECORD_ID"
+        + " FROM LOG_RECORDS WHERE TYPE = 'del' AND RESULT = 204 AND PUBLISH_ID IN ";
+    private static final String UPSERT_SQL = "INSERT INTO LOG_STATS_HOURLY (HOUR_START, FEEDID, SUBID,"
+        + " FILES_PUBLISHED, PUBLISH_LENGTH, FILES_DELIVERED, DELIVERED_LENGTH, DELAY_SUM, DELAY_COUNT,"
+        + " LAST_EVENT_TIME, SUBSCRIBER_URL) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE"
+        + " FILES_PUBLISHED = FILES_PUBLISHED + VALUES(FILES_PUBLISHED),"
+        + " PUBLISH_LENGTH = PUBLISH_LENGTH + VALUES(PUBLISH_LENGTH),"
+        + " FILES_DELIVERED = FILES_DELIVERED + VALUES(FILES_DELIVERED),"
+        + " DELIVERED_LENGTH = DELIVERED_LENGTH + VALUES(DELIVERED_LENGTH),"
+        + " DELAY_SUM = DELAY_SUM + VALUES(DELAY_SUM),"
+        + " DELAY_COUNT = DELAY_COUNT + VALUES(DELAY_COUNT),"
+        + " LAST_EVENT_TIME = GREATEST(LAST_EVENT_TIME, VALUES(LAST_EVENT_TIME))";
+
+    /**
+     * Create and fill in the LOG_STATS_HOURLY table, if it does not exist yet.
+     *
+     * @param conn a DB connection
+     * @return true if the table was created
+     * @throws SQLException if the table cannot be created
+     */
+    public static boolean createTable(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "LOG_STATS_HOURLY", null)) {
+            if (rs.next()) {
+                ProvDbUtils.useInnoDb(conn, "LOG_STATS_HOURLY");
+                return false;
+            }
+        }
+        intlogger.info("PROV8015 Creating LOG_STATS_HOURLY from LOG_RECORDS");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE LOG_STATS_HOURLY (HOUR_START BIGINT NOT NULL, FEEDID INT NOT NULL,"
+                + " SUBID INT NOT NULL, FILES_PUBLISHED BIGINT NOT NULL, PUBLISH_LENGTH BIGINT NOT NULL,"
+                + " FILES_DELIVERED BIGINT NOT NULL, DELIVERED_LENGTH BIGINT NOT NULL, DELAY_SUM BIGINT NOT NULL,"
+                + " DELAY_COUNT BIGINT NOT NULL, LAST_EVENT_TIME BIGINT NOT NULL, SUBSCRIBER_URL VARCHAR(256),"
+                + " PRIMARY KEY (FEEDID, SUBID, HOUR_START)) ENGINE = InnoDB");
+        }
+        Map<String, Rollup> rollups = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT FLOOR(EVENT_TIME/3600000) AS EVENT_HOUR, FEEDID,"
+                + " COUNT(*) AS FILES, SUM(CONTENT_LENGTH) AS BYTES, MAX(EVENT_TIME) AS LAST"
+                + " FROM LOG_RECORDS WHERE TYPE = 'pub' GROUP BY EVENT_HOUR, FEEDID")) {
+            while (rs.next()) {
+                Rollup rollup = getRollup(rollups, rs.getLong("EVENT_HOUR") * MS_PER_HOUR, rs.getInt("FEEDID"), 0);
+                rollup.filesPublished = rs.getLong("FILES");
+                rollup.publishLength = rs.getLong("BYTES");
+                rollup.lastEventTime = rs.getLong("LAST");
+            }
+        }
+        try (Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT FLOOR(EVENT_TIME/3600000) AS EVENT_HOUR, FEEDID,"
+                + " DELIVERY_SUBID, COUNT(*) AS FILES, SUM(CONTENT_LENGTH) AS BYTES, MAX(EVENT_TIME) AS LAST,"
+                + " MAX(REQURI) AS URI FROM LOG_RECORDS WHERE TYPE = 'del' AND RESULT = 204"
+                + " GROUP BY EVENT_HOUR, FEEDID, DELIVERY_SUBID")) {
+            while (rs.next()) {
+                Rollup rollup = getRollup(rollups, rs.getLong("EVENT_HOUR") * MS_PER_HOUR, rs.getInt("FEEDID"),
+                    rs.getInt("DELIVERY_SUBID"));
+                rollup.filesDelivered = rs.getLong("FILES");
+                rollup.deliveredLength = rs.getLong("BYTES");
+                rollup.lastEventTime = rs.getLong("LAST");
+                rollup.subscriberUrl = getSubscriberUrl(rs.getString("URI"));
+            }
+        }
+        save(conn, rollups);
+        return true;
+    }
+
+    /**
+     * Add records which have been inserted into LOG_RECORDS to the hourly statistics.  This does not commit; the
+     * caller does so, and then takes the records out of <code>unsummarized</code>, without letting any other call in
+     * between.
+     *
+     * @param conn a DB connection
+     * @param records the records
+     * @param unsummarized the RECORD_IDs of the records in LOG_RECORDS which have not been added yet, including these
+     * @throws SQLException on a DB error
+     */
+    public static void add(Connection conn, List<BaseLogRecord> records, Set<Long> unsummarized)
+        throws SQLException {
+        Map<String, Rollup> rollups = new HashMap<>();
+        Map<String, Long> published = new HashMap<>();
+        for (BaseLogRecord rec : records) {
+            if (rec instanceof PublishRecord) {
+                PublishRecord pub = (PublishRecord) rec;
+                Rollup rollup = getRollup(rollups, hourOf(pub.getEventTime()), pub.getFeedid(), 0);
+                rollup.filesPublished++;
+                rollup.publishLength += pub.getContentLength();
+                rollup.lastEventTime = Math.max(rollup.lastEventTime, pub.getEventTime());
+                if (pub.getStatus() == 204) {
+                    published.merge(pub.getPublishId(), pub.getEventTime(), Math::min);
+                }
+            }
+        }
+        // Deliveries already added whose publications are among these records
+        if (!published.isEmpty()) {
+            lookup(conn, DELS_SQL, published.keySet(), rs -> {
+                if (!unsummarized.contains(rs.getLong("RECORD_ID"))) {
+                    long time = rs.getLong("EVENT_TIME");
+                    Rollup rollup = getRollup(rollups, hourOf(time), rs.getInt("FEEDID"), rs.getInt("DELIVERY_SUBID"));
+                    rollup.delaySum += time - published.get(rs.getString("PUBLISH_ID"));
+                    rollup.delayCount++;
+                }
+            });
+        }
+        // Publications already added of the deliveries among these records
+        Set<String> missing = new HashSet<>();
+        for (BaseLogRecord rec : records) {
+            if (isDelivered(rec) && !published.containsKey(rec.getPublishId())) {
+                missing.add(rec.getPublishId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            lookup(conn, PUBS_SQL, missing, rs -> {
+                if (!unsummarized.contains(rs.getLong("RECORD_ID"))) {
+                    published.merge(rs.getString("PUBLISH_ID"), rs.getLong("EVENT_TIME"), Math::min);
+                }
+            });
+        }
+        for (BaseLogRecord rec : records) {
+            if (isDelivered(rec)) {
+                DeliveryRecord del = (DeliveryRecord) rec;
+                Rollup rollup = getRollup(rollups, hourOf(del.getEventTime()), del.getFeedid(), del.getSubid());
+                rollup.filesDelivered++;
+                rollup.deliveredLength += del.getContentLength();
+                rollup.lastEventTime = Math.max(rollup.lastEventTime, del.getEventTime());
+                if (rollup.subscriberUrl == null) {
+                    rollup.subscriberUrl = getSubscriberUrl(del.getRequestUri());
+                }
+                Long time = published.get(del.getPublishId());
+                if (time != null) {
+                    rollup.delaySum += del.getEventTime() - time;
+                    rollup.delayCount++;
+                }
+            }
+        }
+        save(conn, rollups);
+    }
+
+    private static boolean isDelivered(BaseLogRecord rec) {
+        return rec instanceof DeliveryRecord && ((DeliveryRecord) rec).getResult() == 204;
+    }
+
+    private static void lookup(Connection conn, String sql, Collection<String> publishIds, RowHandler handler)
+        throws SQLException {
+        List<String> ids = new ArrayList<>(publishIds);
+        for (int start = 0; start < ids.size(); start += LOOKUP_STEP) {
+            List<String> step = ids.subList(start, Math.min(start + LOOKUP_STEP, ids.size()));
+            StringBuilder in = new StringBuilder("(");
+            for (int i = 0; i < step.size(); i++) {
+                in.append((i == 0) ? "?" : ", ?");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql + in.append(')'))) {
+                for (int i = 0; i < step.size(); i++) {
+                    ps.setString(i + 1, step.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(rs);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the statistics of the hours before a time.
+     *
+     * @param conn a DB connection
+     * @param cutoff the time, in ms, of the start of an hour
+     * @throws SQLException on a DB error
+     */
+    public static void removeBefore(Connection conn, long cutoff) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM LOG_STATS_HOURLY WHERE HOUR_START < ?")) {
+            ps.setLong(1, cutoff);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Get the scheme and authority of a delivery URL, as shown for a subscription by the Statistics API.
+     *
+     * @param uri the URI of a delivery
+     * @return the URI up to (not including) the third '/'
+     */
+    static String getSubscriberUrl(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        int ix = uri.indexOf('/');
+        ix = (ix < 0) ? -1 : uri.indexOf('/', ix + 1);
+        ix = (ix < 0) ? -1 : uri.indexOf('/', ix + 1);
+        return (ix < 0) ? uri : uri.substring(0, ix);
+    }
+
+    private static long hourOf(long time) {
+        return Math.floorDiv(time, MS_PER_HOUR) * MS_PER_HOUR;
+    }
+
+    private static Rollup getRollup(Map<String, Rollup> rollups, long hour, int feedid, int subid) {
+        return rollups.computeIfAbsent(hour + ":" + feedid + ":" + subid, key -> new Rollup(hour, feedid, subid));
+    }
+
+    private static void save(Connection conn, Map<String, Rollup> rollups) throws SQLException {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            for (Rollup rollup : rollups.values()) {
+                ps.setLong(1, rollup.hour);
+                ps.setInt(2, rollup.feedid);
+                ps.setInt(3, rollup.subid);
+                ps.setLong(4, rollup.filesPublished);
+                ps.setLong(5, rollup.publishLength);
+                ps.setLong(6, rollup.filesDelivered);
+                ps.setLong(7, rollup.deliveredLength);
+                ps.setLong(8, rollup.delaySum);
+                ps.setLong(9, rollup.delayCount);
+                ps.setLong(10, rollup.lastEventTime);
+                ps.setString(11, rollup.subscriberUrl);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private interface RowHandler {
+
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * The statistics of one feed or subscription for one hour.
+     */
+    private static class Rollup {
+
+        private final long hour;
+        private final int feedid;
+        private final int subid;
+        private long filesPublished;
+        private long publishLength;
+        private long filesDelivered;
+        private long deliveredLength;
+        private long delaySum;
+        private long delayCount;
+        private long lastEventTime;
+        private String subscriberUrl;
+
+        Rollup(long hour, int feedid, int subid) {
+            this.hour = hour;
+            this.feedid = feedid;
+            this.subid = subid;
+        }
+    }
+}
@@ -26,28 +26,56 @@ package org.onap.dmaap.datarouter.provisioning.utils;
 
 import com.att.eelf.configuration.EELFLogger;
 import com.att.eelf.configuration.EELFManager;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import org.onap.dmaap.datarouter.provisioning.BaseServlet;
 import org.onap.dmaap.datarouter.provisioning.ProvRunner;
+import org.onap.dmaap.datarouter.provisioning.beans.BaseLogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.DeliveryExtraRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.DeliveryRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.ExpiryRecord;
@@ -65,6 +93,24 @@ import org.onap.dmaap.datarouter.provisioning.beans.PublishRecord;
  * <p>This method maintains an {@link RLEBitSet} which can be used to easily see what records are presently in the
  * database.
  * This bit set is used to synchronize between provisioning servers.</p>
+ * <p>Loading is pipelined: a pool of <i>logfile_parser_threads</i> threads (by default, one per CPU) reads and parses
+ * the logfiles, several at a time, and passes the records in chunks of <i>logfile_batch_size</i> over a bounded queue
+ * to <i>logfile_writer_threads</i> writer threads, which assign the RECORD_IDs and insert each chunk as one JDBC
+ * batch.  RECORD_IDs are assigned, and the bit set updated, under a single lock, so they stay unique and consistent
+ * however many threads are writing.</p>
+ * <p>New logfiles are picked up as soon as they are renamed to <code>IN.*</code>: a {@link WatchService} on the spool
+ * directory, and the code which spools the files (see {@link #fileSpooled(File)}), both add them to a queue of pending
+ * files.  The directory itself is only listed at startup, and every <i>logfile_rescan_interval</i> ms (default 60000)
+ * as a safety net.</p>
+ * <p>The bit set is kept up to date as records are loaded and pruned, rather than being rebuilt from the table.  It is
+ * written to a checkpoint file (<i>logfile_checkpoint</i>, by default <code>recordids.dat</code> in the spool
+ * directory; empty to disable) every <i>logfile_checkpoint_interval</i> ms (default 300000) in which it has changed,
+ * and read back at startup, so that only the records loaded since the checkpoint have to be read from the table.  A
+ * background scan of the table, at startup when a checkpoint was used and every <i>logfile_reconcile_interval</i> ms
+ * (default 86400000), corrects any drift between the two.</p>
+ * <p>If <i>logfile_partitioned</i> is true, LOG_RECORDS is partitioned by day (see {@link LogRecordPartitions}), with
+ * partitions created <i>logfile_partition_days_ahead</i> days (default 7) ahead, and old records are removed by
+ * dropping whole days.</p>
  *
  * @author Robert Eby
  * @version $Id: LogfileLoader.java,v 1.22 2014/03/12 19:45:41 eby Exp $
@@ -85,17 +131,79 @@ public class LogfileLoader extends Thread {
      */
     private static final long SET_SIZE = (1L << 56);
 
+    private static final String INSERT_SQL =
+        "insert into LOG_RECORDS values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SCAN_SQL =
+        "select RECORD_ID from LOG_RECORDS where RECORD_ID >= ? and RECORD_ID <= ? order by RECORD_ID limit ?";
+
+    private static final String SCAN_BEFORE_SQL = "select RECORD_ID from LOG_RECORDS"
+        + " where RECORD_ID >= ? and RECORD_ID <= ? and EVENT_TIME < ? order by RECORD_ID limit ?";
+
+    /**
+     * RECORD_IDs are read from the table this many at a time.
+     */
+    private static final int SCAN_STEP = 1000000;
+    /**
+     * At most this many records are kept waiting for their summaries to be updated.
+     */
+    private static final int MAX_UNSUMMARIZED = 100000;
+
+    private static final int CHECKPOINT_VERSION = 1;
+
     private final EELFLogger logger;
     private final String spooldir;
+    private final int batchSize;
+    private final int parserThreads;
+    private final int writerThreads;
+    private final BlockingQueue<Chunk> queue;
+    private final Object idLock = new Object();
     private final long setStart;
     private final long setEnd;
-    private RLEBitSet seqSet;
-    private long nextId;
-    private boolean idle;
+    private RLEBitSet seqSet;       // guarded by idLock
+    private long nextId;            // guarded by idLock
+    private boolean changed;        // guarded by idLock; seqSet has changed since the last checkpoint
+    private int prunes;             // guarded by idLock
+    private final File checkpoint;
+    private final long checkpointInterval;
+    private final long reconcileInterval;
+    private long nextCheckpoint;    // used by the loader thread only
+    private long nextReconcile;     // used by the loader thread only
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private final boolean partitioned;
+    private final int partitionDaysAhead;
+    private LogRecordPartitions partitions;     // null unless LOG_RECORDS is partitioned
+    private long nextPartitionCheck;            // used by the loader thread only
+    private volatile boolean dayCounts;         // LOG_DAY_COUNTS is kept up to date
+    private volatile boolean hourlyStats;       // LOG_STATS_HOURLY is kept up to date
+    private final Object summaryLock = new Object();
+    private final List<PendingRecord> unsummarized = new ArrayList<>();   // inserted, summaries not yet updated
+    private final Set<Long> unsummarizedIds = ConcurrentHashMap.newKeySet();    // being inserted, or unsummarized
+    private final Object pruneLock = new Object();
+    private long pruneCutoff = -1;              // a prune whose summaries are not yet updated, guarded by pruneLock
+    private boolean pruneAll;
+    private final long rescanInterval;
+    private final Object pendingLock = new Object();
+    private final Set<File> pendingFiles = new LinkedHashSet<>();  // guarded by pendingLock
+    private long nextRescan;                                        // guarded by pendingLock
+    private volatile boolean idle;
+    private ExecutorService parsers;
 
     private LogfileLoader() {
         this.logger = EELFManager.getInstance().getLogger("InternalLog");
         this.spooldir = ProvRunner.getProvProperties().getProperty("org.onap.dmaap.datarouter.provserver.spooldir");
+        this.batchSize = getIntProperty("logfile_batch_size", 1000);
+        this.parserThreads = getIntProperty("logfile_parser_threads", Runtime.getRuntime().availableProcessors());
+        this.writerThreads = getIntProperty("logfile_writer_threads", 2);
+        this.queue = new ArrayBlockingQueue<>(getIntProperty("logfile_queue_size", 16));
+        this.rescanInterval = getIntProperty("logfile_rescan_interval", 60000);
+        this.nextRescan = 0;
+        this.checkpoint = getCheckpointFile();
+        this.checkpointInterval = getIntProperty("logfile_checkpoint_interval", 300000);
+        this.reconcileInterval = getIntProperty("logfile_reconcile_interval", 86400000);
+        this.partitioned = Boolean.parseBoolean(ProvRunner.getProvProperties()
+            .getProperty("org.onap.dmaap.datarouter.provserver.logfile_partitioned", "false"));
+        this.partitionDaysAhead = getIntProperty("logfile_partition_days_ahead", 7);
         this.setStart = getIdRange();
         this.setEnd = setStart + SET_SIZE - 1;
         this.seqSet = new RLEBitSet();
@@ -120,6 +228,31 @@ public class LogfileLoader extends Thread {
         return logfileLoader;
     }
 
+    private int getIntProperty(String name, int dflt) {
+        String prop = "org.onap.dmaap.datarouter.provserver." + name;
+        String str = ProvRunner.getProvProperties().getProperty(prop);
+        if (str == null) {
+            return dflt;
+        }
+        try {
+            int value = Integer.parseInt(str.trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        logger.warn("PROV8008 Bad value for " + prop + ", using " + dflt);
+        return dflt;
+    }
+
+    private File getCheckpointFile() {
+        String dflt = (spooldir == null) ? "" : new File(spooldir, "recordids.dat").getPath();
+        String path = ProvRunner.getProvProperties()
+            .getProperty("org.onap.dmaap.datarouter.provserver.logfile_checkpoint", dflt).trim();
+        return path.isEmpty() ? null : new File(path);
+    }
+
     private long getIdRange() {
         long size;
         if (BaseServlet.isInitialActivePOD()) {
@@ -140,7 +273,9 @@ public class LogfileLoader extends Thread {
      * @return the bit set
      */
     public RLEBitSet getBitSet() {
-        return seqSet;
+        synchronized (idLock) {
+            return seqSet;
+        }
     }
 
     /**
@@ -153,14 +288,31 @@ public class LogfileLoader extends Thread {
     }
 
     /**
-     * Run continuously to look for new logfiles in the spool directory and import them into the DB.
-     * The spool is checked once per second.  If free space on the MariaDB filesystem falls below
-     * REQUIRED_FREE_PCT (normally 20%) then the oldest logfile entries are removed and the LOG_RECORDS
-     * table is compacted until free space rises above the threshold.
+     * Tell the loader that a logfile has been spooled (renamed to <code>IN.*</code>), so that it is loaded at once.
+     *
+     * @param file the spooled logfile
+     */
+    public void fileSpooled(File file) {
+        if (file.getName().startsWith("IN.")) {
+            synchronized (pendingLock) {
+                pendingFiles.add(file);
+                pendingLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Run continuously to wait for new logfiles in the spool directory and import them into the DB.
+     * Before each set of files is loaded, old records are removed if there are more than the
+     * retention threshold allows (see {@link #pruneRecords()}).  Between sets, the bit set is
+     * checkpointed and reconciled with the DB when these are due.
      */
     @Override
     public void run() {
+        maintainPartitions();
+        initializeSummaries();
         initializeNextid();
+        startWatcher();
         while (true) {
             try {
                 File dirfile = new File(spooldir);
@@ -174,48 +326,247 @@ public class LogfileLoader extends Thread {
     }
 
     private void runLogFileLoad(File filesDir) {
-        File[] inFiles = filesDir.listFiles((dir, name) -> name.startsWith("IN."));
-        if (inFiles != null) {
-            if (inFiles.length == 0) {
-                idle = true;
-                try {
-                    Thread.sleep(1000L);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+        File[] inFiles;
+        try {
+            inFiles = nextFiles(filesDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (inFiles.length > 0) {
+            // Remove old rows; their IDs are cleared from the bit map as they go
+            pruneRecords();
+            loadFiles(inFiles);
+        }
+        maintainBitSet();
+        maintainPartitions();
+    }
+
+    /**
+     * Partition LOG_RECORDS if that has been asked for and it is not done yet, and check hourly that the partitions
+     * for the coming days exist.  If the table cannot be partitioned, old records are removed with DELETEs as before.
+     */
+    private void maintainPartitions() {
+        long now = System.currentTimeMillis();
+        if (!partitioned || now < nextPartitionCheck) {
+            return;
+        }
+        nextPartitionCheck = now + 3600000L;
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            LogRecordPartitions lrp = (partitions != null) ? partitions
+                : new LogRecordPartitions(conn, partitionDaysAhead);
+            lrp.maintain(conn, now);
+            partitions = lrp;
+        } catch (SQLException e) {
+            logger.error("PROV8013 Cannot partition LOG_RECORDS: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Make sure the LOG_DAY_COUNTS and LOG_STATS_HOURLY tables exist.  If LOG_DAY_COUNTS cannot be created, retention
+     * falls back to counting the records in LOG_RECORDS; if LOG_STATS_HOURLY cannot, there are no statistics.
+     */
+    private void initializeSummaries() {
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            LogDayCounts.createTable(conn);
+            dayCounts = true;
+        } catch (SQLException e) {
+            logger.error("PROV8014 Cannot create LOG_DAY_COUNTS: " + e.getMessage(), e);
+        }
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            LogStatsRollups.createTable(conn);
+            hourlyStats = true;
+        } catch (SQLException e) {
+            logger.error("PROV8015 Cannot create LOG_STATS_HOURLY: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the number of records in the LOG_RECORDS table, from the per-day counts kept in LOG_DAY_COUNTS.
+     *
+     * @return the number of records, or -1 if it is not known
+     */
+    public long getRecordCount() {
+        Map<Long, Long> hist = dayCounts ? getDayCounts() : null;
+        return (hist != null) ? total(hist) : -1;
+    }
+
+    /**
+     * Write a checkpoint of the bit set, and start a reconciliation with the DB, when they are due.  This runs
+     * between rounds of loading, so the checkpoint never includes records which are still being written.
+     */
+    private void maintainBitSet() {
+        long now = System.currentTimeMillis();
+        if (checkpoint != null && now >= nextCheckpoint) {
+            nextCheckpoint = now + checkpointInterval;
+            RLEBitSet snapshot = null;
+            synchronized (idLock) {
+                if (changed) {
+                    changed = false;
+                    snapshot = (RLEBitSet) seqSet.clone();
                 }
-                idle = false;
-            } else {
-                // Remove old rows
-                if (pruneRecords()) {
-                    // Removed at least some entries, recompute the bit map
-                    initializeNextid();
+            }
+            if (snapshot != null) {
+                writeCheckpoint(checkpoint, snapshot);
+            }
+        }
+        if (now >= nextReconcile && reconciling.compareAndSet(false, true)) {
+            nextReconcile = now + reconcileInterval;
+            Thread thread = new Thread(() -> {
+                try {
+                    reconcile();
+                } finally {
+                    reconciling.set(false);
                 }
+            }, "LogfileReconciler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Wait until there are logfiles to load, or a rescan of the spool directory is due.
+     *
+     * @return the logfiles which are waiting to be loaded
+     */
+    private File[] nextFiles(File filesDir) throws InterruptedException {
+        boolean rescan;
+        synchronized (pendingLock) {
+            long now = System.currentTimeMillis();
+            while (pendingFiles.isEmpty() && now < nextRescan) {
+                idle = true;
+                pendingLock.wait(nextRescan - now);
+                now = System.currentTimeMillis();
+            }
+            idle = false;
+            rescan = now >= nextRescan;
+            if (rescan) {
+                nextRescan = now + rescanInterval;
+            }
+        }
+        if (rescan) {
+            File[] inFiles = filesDir.listFiles((dir, name) -> name.startsWith("IN."));
+            if (inFiles != null) {
                 for (File file : inFiles) {
-                    processFile(file);
+                    fileSpooled(file);
                 }
             }
         }
+        List<File> files = new ArrayList<>();
+        synchronized (pendingLock) {
+            for (File file : pendingFiles) {
+                // It may already have been loaded, if it was reported more than once
+                if (file.exists()) {
+                    files.add(file);
+                }
+            }
+            pendingFiles.clear();
+        }
+        return files.toArray(new File[0]);
     }
 
-    private void processFile(File infile) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("PROV8001 Starting " + infile + " ...");
+    /**
+     * Start a thread to watch the spool directory for logfiles being renamed into place.  If the watch cannot be set
+     * up, the loader still finds new files when they are reported, or on the next rescan.
+     */
+    private void startWatcher() {
+        WatchService watcher;
+        Path dir = new File(spooldir).toPath();
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("PROV8009 Cannot watch spool directory " + spooldir + ": " + e);
+            return;
+        }
+        Thread thread = new Thread(() -> runWatcher(watcher, dir), "LogfileWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runWatcher(WatchService watcher, Path dir) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost; list the directory instead
+                    synchronized (pendingLock) {
+                        nextRescan = 0;
+                        pendingLock.notifyAll();
+                    }
+                } else {
+                    fileSpooled(dir.resolve((Path) event.context()).toFile());
+                }
+            }
+            if (!key.reset()) {
+                logger.warn("PROV8009 Spool directory " + spooldir + " can no longer be watched");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Load a set of logfiles through the parser and writer threads, deleting each file once it has been loaded.
+     * Returns when all the files are done.
+     *
+     * @param files the logfiles
+     */
+    void loadFiles(File[] files) {
+        startPipeline();
+        CountDownLatch done = new CountDownLatch(files.length);
+        for (File file : files) {
+            FileLoad load = new FileLoad(file, done);
+            parsers.execute(() -> parseFile(load, queue::put));
         }
-        long time = System.currentTimeMillis();
-        int[] array = process(infile);
-        time = System.currentTimeMillis() - time;
-        logger.info(String.format("PROV8000 Processed %s in %d ms; %d of %d records.",
-            infile.toString(), time, array[0], array[1]));
         try {
-            Files.delete(infile.toPath());
-        } catch (IOException e) {
-            logger.info("PROV8001 failed to delete file " + infile.getName(), e);
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startPipeline() {
+        if (parsers != null) {
+            return;
+        }
+        AtomicInteger parserCount = new AtomicInteger();
+        parsers = Executors.newFixedThreadPool(parserThreads, runnable -> {
+            Thread thread = new Thread(runnable, "LogfileParser-" + parserCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 1; i <= writerThreads; i++) {
+            Thread writer = new Thread(this::runWriter, "LogfileWriter-" + i);
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            try {
+                writeChunk(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("PROV0020: Caught exception in LogfileLoader writer: " + e);
+            }
         }
     }
 
     boolean pruneRecords() {
         boolean did1 = false;
-        long count = countRecords();
+        retryPruneSummaries();
+        // histogram of records per day, from LOG_DAY_COUNTS or the partition statistics
+        Map<Long, Long> hist = (dayCounts || partitions != null) ? getDayCounts() : null;
+        long count = (hist != null) ? total(hist) : countRecords();
         Parameters defaultLogRetention = Parameters.getParameter(Parameters.DEFAULT_LOG_RETENTION);
         long threshold = (defaultLogRetention != null) ? Long.parseLong(defaultLogRetention.getValue()) : 1000000L;
         Parameters provLogRetention = Parameters.getParameter(Parameters.PROV_LOG_RETENTION);
@@ -234,8 +585,9 @@ public class LogfileLoader extends Thread {
         if (count > threshold) {
             // we need to remove this many records
             count -= threshold;
-            // histogram of records per day
-            Map<Long, Long> hist = getHistogram();
+            if (hist == null) {
+                hist = getHistogram();
+            }
             // Determine the cutoff point to remove the needed number of records
             long sum = 0;
             long cutoff = 0;
@@ -250,8 +602,15 @@ public class LogfileLoader extends Thread {
             // convert day to ms
             cutoff *= 86400000L;
             logger.debug("  Pruning records older than=" + (cutoff / 86400000L) + " (" + new Date(cutoff) + ")");
+            if (partitions != null) {
+                return dropPartitions(cutoff);
+            }
 
             try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                // Note the IDs of the rows the DELETE may remove, so they can be cleared from the bit map
+                RLEBitSet pruned = new RLEBitSet();
+                addRecordIds(conn, pruned, 0, Long.MAX_VALUE, cutoff);
+                boolean exhausted = false;
                 // Limit to a million at a time to avoid typing up the DB for too long.
                 try (PreparedStatement ps = conn.prepareStatement(
                     "DELETE from LOG_RECORDS where EVENT_TIME < ? limit 1000000")) {
@@ -259,6 +618,7 @@ public class LogfileLoader extends Thread {
                     while (count > 0) {
                         if (!ps.execute()) {
                             int dcount = ps.getUpdateCount();
+                            exhausted = dcount < 1000000;
                             count -= dcount;
                             logger.debug("  " + dcount + " rows deleted.");
                             did1 |= (dcount != 0);
@@ -270,6 +630,20 @@ public class LogfileLoader extends Thread {
                         }
                     }
                 }
+                if (did1) {
+                    updateSummaries(conn, cutoff, exhausted);
+                    if (!exhausted) {
+                        // The limit may have left some old rows behind; keep their IDs
+                        RLEBitSet kept = new RLEBitSet();
+                        addRecordIds(conn, kept, 0, Long.MAX_VALUE, cutoff);
+                        pruned.andNot(kept);
+                    }
+                    synchronized (idLock) {
+                        seqSet.andNot(pruned);
+                        changed = true;
+                        prunes++;
+                    }
+                }
                 try (Statement stmt = conn.createStatement()) {
                     stmt.execute("OPTIMIZE TABLE LOG_RECORDS");
                 }
@@ -280,6 +654,98 @@ public class LogfileLoader extends Thread {
         return did1;
     }
 
+    /**
+     * Remove the records from before a day boundary by dropping their partitions, and clear their IDs from the bit
+     * set.
+     */
+    private boolean dropPartitions(long cutoff) {
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            RLEBitSet pruned = new RLEBitSet();
+            addRecordIds(conn, pruned, 0, Long.MAX_VALUE, cutoff);
+            if (!partitions.dropBefore(conn, cutoff)) {
+                return false;
+            }
+            updateSummaries(conn, cutoff, true);
+            synchronized (idLock) {
+                seqSet.andNot(pruned);
+                changed = true;
+                prunes++;
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("LogfileLoader.dropPartitions: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Update the summaries after the records from before a day boundary have been removed.  If this fails, it is
+     * tried again at the next prune; the update does not depend on what was removed, so it can be repeated.
+     */
+    private void updateSummaries(Connection conn, long cutoff, boolean all) {
+        synchronized (pruneLock) {
+            updateSummariesLocked(conn, cutoff, all);
+        }
+    }
+
+    private void updateSummariesLocked(Connection conn, long cutoff, boolean all) {
+        try {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (dayCounts) {
+                    LogDayCounts.removeBefore(conn, cutoff, all);
+                }
+                if (hourlyStats && all) {
+                    LogStatsRollups.removeBefore(conn, cutoff);
+                }
+                conn.commit();
+                pruneCutoff = -1;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            logger.error("PROV8016 Cannot update the summaries of the pruned records: " + e.getMessage(), e);
+            if (cutoff > pruneCutoff) {
+                pruneCutoff = cutoff;
+                pruneAll = all;
+            }
+        }
+    }
+
+    private void retryPruneSummaries() {
+        synchronized (pruneLock) {
+            if (pruneCutoff < 0) {
+                return;
+            }
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                updateSummariesLocked(conn, pruneCutoff, pruneAll);
+            } catch (SQLException e) {
+                logger.error("PROV8016 Cannot update the summaries of the pruned records: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private Map<Long, Long> getDayCounts() {
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            return dayCounts ? LogDayCounts.getDayCounts(conn) : partitions.getDayCounts(conn);
+        } catch (SQLException e) {
+            logger.error("LogfileLoader.getDayCounts: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static long total(Map<Long, Long> hist) {
+        long sum = 0;
+        for (long count : hist.values()) {
+            sum += count;
+        }
+        return sum;
+    }
+
     private long countRecords() {
         long count = 0;
         try (Connection conn = ProvDbUtils.getInstance().getConnection();
@@ -314,90 +780,208 @@ public class LogfileLoader extends Thread {
     }
 
     private void initializeNextid() {
+        RLEBitSet nbs = (checkpoint == null) ? null : readCheckpoint(checkpoint);
         try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
-            RLEBitSet nbs = new RLEBitSet();
-            try (Statement stmt = conn.createStatement()) {
+            if (nbs == null) {
                 // Build a bitset of all records in the LOG_RECORDS table
-                // We need to run this SELECT in stages, because otherwise we run out of memory!
-                final long stepsize = 6000000L;
-                boolean goAgain = true;
-                for (long i = 0; goAgain; i += stepsize) {
-                    String sql = String.format("select RECORD_ID from LOG_RECORDS LIMIT %d,%d", i, stepsize);
-                    try (ResultSet rs = stmt.executeQuery(sql)) {
-                        goAgain = false;
-                        while (rs.next()) {
-                            long recordId = rs.getLong("RECORD_ID");
-                            nbs.set(recordId);
-                            goAgain = true;
-                        }
-                    }
+                nbs = new RLEBitSet();
+                addRecordIds(conn, nbs, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+                nextReconcile = System.currentTimeMillis() + reconcileInterval;
+            } else {
+                // IDs are assigned in order within each server's range, so the records loaded since the checkpoint
+                // was written are those above the highest ID in each range.  Anything else is left to reconcile().
+                for (long start = 0; start <= 2 * SET_SIZE; start += SET_SIZE) {
+                    long end = start + SET_SIZE - 1;
+                    addRecordIds(conn, nbs, Math.max(start, nbs.previousSetBit(end) + 1), end, Long.MAX_VALUE);
                 }
+                nextReconcile = 0;
             }
-            seqSet = nbs;
-            // Compare with the range for this server
             // Determine the next ID for this set of record IDs
-            RLEBitSet tbs = (RLEBitSet) nbs.clone();
-            RLEBitSet idset = new RLEBitSet();
-            idset.set(setStart, setStart + SET_SIZE);
-            tbs.and(idset);
-            long bitLength = tbs.length();
-            nextId = (bitLength == 0) ? setStart : (bitLength - 1);
-            if (nextId >= setStart + SET_SIZE) {
-                // Handle wraparound, when the IDs reach the end of our "range"
-                Long[] last = null;
-                Iterator<Long[]> li = tbs.getRangeIterator();
-                while (li.hasNext()) {
-                    last = li.next();
+            long next = highestId(nbs);
+            synchronized (idLock) {
+                seqSet = nbs;
+                nextId = next;
+                changed = true;
+            }
+            logger.debug(String.format("LogfileLoader.initializeNextid, next ID is %d (%x)", next, next));
+        } catch (SQLException e) {
+            logger.error("LogfileLoader.initializeNextid: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find the last ID this server has assigned, or the start of its range if it has assigned none.
+     */
+    private long highestId(RLEBitSet bs) {
+        long last = bs.previousSetBit(setEnd);
+        return (last < setStart) ? setStart : last;
+    }
+
+    /**
+     * Add the RECORD_IDs in a range to a bit set; if cutoff is not Long.MAX_VALUE, only those of records with an
+     * EVENT_TIME before the cutoff.  The table is read SCAN_STEP rows at a time, each step starting after the last ID
+     * read, so each row is read only once however large the table is.
+     */
+    private void addRecordIds(Connection conn, RLEBitSet bs, long from, long to, long cutoff) throws SQLException {
+        boolean all = (cutoff == Long.MAX_VALUE);
+        try (PreparedStatement ps = conn.prepareStatement(all ? SCAN_SQL : SCAN_BEFORE_SQL)) {
+            boolean goAgain = from <= to;
+            while (goAgain) {
+                int ix = 1;
+                ps.setLong(ix++, from);
+                ps.setLong(ix++, to);
+                if (!all) {
+                    ps.setLong(ix++, cutoff);
                 }
-                if (last != null) {
-                    tbs.clear(last[0], last[1] + 1);
-                    bitLength = tbs.length();
-                    nextId = (bitLength == 0) ? setStart : (bitLength - 1);
+                ps.setInt(ix, SCAN_STEP);
+                int rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long recordId = rs.getLong("RECORD_ID");
+                        bs.set(recordId);
+                        from = recordId + 1;
+                        rows++;
+                    }
+                }
+                goAgain = (rows == SCAN_STEP) && from <= to;
+            }
+        }
+    }
+
+    /**
+     * Bring the bit set into line with the LOG_RECORDS table, in case it has drifted; for example, because it was
+     * read from a checkpoint which was out of date.  The table is scanned without holding the lock.  Bits which seem
+     * to have no record are checked again before being cleared, in case their records were still being written when
+     * the scan passed them.
+     */
+    void reconcile() {
+        RLEBitSet stale;
+        int prunesBefore;
+        synchronized (idLock) {
+            stale = (RLEBitSet) seqSet.clone();
+            prunesBefore = prunes;
+        }
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            RLEBitSet found = new RLEBitSet();
+            addRecordIds(conn, found, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+            stale.andNot(found);
+            RLEBitSet late = new RLEBitSet();
+            Iterator<Long[]> iter = stale.getRangeIterator();
+            while (iter.hasNext()) {
+                Long[] range = iter.next();
+                addRecordIds(conn, late, range[0], range[1], Long.MAX_VALUE);
+            }
+            stale.andNot(late);
+            synchronized (idLock) {
+                // If records were pruned meanwhile, some of the rows found may be gone; leave them to the next time
+                RLEBitSet missing = (prunes == prunesBefore) ? (RLEBitSet) found.clone() : new RLEBitSet();
+                missing.andNot(seqSet);
+                seqSet.andNot(stale);
+                iter = missing.getRangeIterator();
+                while (iter.hasNext()) {
+                    Long[] range = iter.next();
+                    seqSet.set(range[0], range[1] + 1);
+                }
+                nextId = Math.max(nextId, highestId(seqSet));
+                if (!stale.isEmpty() || !missing.isEmpty()) {
+                    changed = true;
+                    logger.info("PROV8012 Reconciled RECORD_ID bit set with LOG_RECORDS: added " + missing
+                        + ", removed " + stale);
                 }
             }
-            logger.debug(String.format("LogfileLoader.initializeNextid, next ID is %d (%x)", nextId, nextId));
         } catch (SQLException e) {
-            logger.error("LogfileLoader.initializeNextid: " + e.getMessage(), e);
+            logger.error("LogfileLoader.reconcile: " + e.getMessage(), e);
         }
     }
 
-    @SuppressWarnings("resource")
+    /**
+     * Write a bit set to a checkpoint file.  The new file replaces the old one only once it is complete.
+     *
+     * @param file the checkpoint file
+     * @param bs the bit set
+     */
+    void writeCheckpoint(File file, RLEBitSet bs) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(CHECKPOINT_VERSION);
+                Iterator<Long[]> iter = bs.getRangeIterator();
+                while (iter.hasNext()) {
+                    Long[] range = iter.next();
+                    out.writeLong(range[0]);
+                    out.writeLong(range[1]);
+                }
+                out.writeLong(-1L);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("PROV8010 Cannot write RECORD_ID checkpoint " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Read a bit set from a checkpoint file.
+     *
+     * @param file the checkpoint file
+     * @return the bit set, or null if there is no usable checkpoint
+     */
+    RLEBitSet readCheckpoint(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_VERSION) {
+                throw new IOException("unknown version");
+            }
+            RLEBitSet bs = new RLEBitSet();
+            for (long first = in.readLong(); first >= 0; first = in.readLong()) {
+                bs.set(first, in.readLong() + 1);
+            }
+            logger.debug("LogfileLoader.readCheckpoint: read " + file);
+            return bs;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            logger.warn("PROV8011 Cannot read RECORD_ID checkpoint " + file + ", reading LOG_RECORDS instead: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Load the records in a logfile into the DB, in this thread.  The records are inserted in JDBC batches of
+     * <i>logfile_batch_size</i> (default 1000), and each batch is committed as one transaction.
+     *
+     * @param file the logfile
+     * @return the number of records loaded, and the number of lines read
+     */
     int[] process(File file) {
-        int ok = 0;
-        int total = 0;
-        try (Connection conn = ProvDbUtils.getInstance().getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                "insert into LOG_RECORDS values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+        FileLoad load = new FileLoad(file, null);
+        parseFile(load, this::writeChunk);
+        return new int[]{load.ok.get(), load.total};
+    }
+
+    /**
+     * Read and parse a logfile, passing the records on in chunks of up to <i>logfile_batch_size</i> records.
+     * Lines which cannot be parsed are reported and skipped.
+     */
+    @SuppressWarnings("resource")
+    private void parseFile(FileLoad load, ChunkConsumer out) {
+        File file = load.file;
+        if (logger.isDebugEnabled()) {
+            logger.debug("PROV8001 Starting " + file + " ...");
+        }
+        try {
             Reader reader = file.getPath().endsWith(".gz")
                 ? new InputStreamReader(new GZIPInputStream(new FileInputStream(file)))
                 : new FileReader(file);
             try (LineNumberReader in = new LineNumberReader(reader)) {
+                Chunk chunk = new Chunk(load, batchSize);
+                LogLineTokenizer tok = new LogLineTokenizer();
                 String line;
                 while ((line = in.readLine()) != null) {
                     try {
-                        for (Loadable rec : buildRecords(line)) {
-                            rec.load(ps);
-                            if (rec instanceof LogRecord) {
-                                LogRecord lr = ((LogRecord) rec);
-                                if (!seqSet.get(lr.getRecordId())) {
-                                    ps.executeUpdate();
-                                    seqSet.set(lr.getRecordId());
-                                } else {
-                                    logger.debug("Duplicate record ignored: " + lr.getRecordId());
-                                }
-                            } else {
-                                if (++nextId > setEnd) {
-                                    nextId = setStart;
-                                }
-                                ps.setLong(18, nextId);
-                                ps.executeUpdate();
-                                seqSet.set(nextId);
-                            }
-                            ps.clearParameters();
-                            ok++;
+                        for (Loadable rec : buildRecords(tok.reset(line))) {
+                            chunk.records.add(new PendingRecord(rec, line));
                         }
-                    } catch (SQLException e) {
-                        logger.warn("PROV8003 Invalid value in record: " + line, e);
                     } catch (NumberFormatException e) {
                         logger.warn("PROV8004 Invalid number in record: " + line, e);
                     } catch (ParseException e) {
@@ -405,60 +989,283 @@ public class LogfileLoader extends Thread {
                     } catch (Exception e) {
                         logger.warn("PROV8006 Invalid pattern in record: " + line, e);
                     }
-                    total++;
+                    load.total++;
+                    if (chunk.records.size() >= batchSize) {
+                        load.pending.incrementAndGet();
+                        out.accept(chunk);
+                        chunk = new Chunk(load, batchSize);
+                    }
+                }
+                if (!chunk.records.isEmpty()) {
+                    load.pending.incrementAndGet();
+                    out.accept(chunk);
                 }
             }
-        } catch (SQLException | IOException e) {
+        } catch (IOException e) {
             logger.warn("PROV8007 Exception reading " + file + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            load.release();
+        }
+    }
+
+    /**
+     * Assign RECORD_IDs to a chunk of records, skipping any duplicates of records already loaded, and insert them
+     * as one JDBC batch.
+     *
+     * @param chunk the records
+     */
+    private void writeChunk(Chunk chunk) {
+        int ok = 0;
+        try {
+            List<PendingRecord> batch = new ArrayList<>(chunk.records.size());
+            synchronized (idLock) {
+                for (PendingRecord pending : chunk.records) {
+                    if (pending.rec instanceof LogRecord) {
+                        pending.recordId = ((LogRecord) pending.rec).getRecordId();
+                        if (seqSet.get(pending.recordId)) {
+                            logger.debug("Duplicate record ignored: " + pending.recordId);
+                            ok++;
+                            continue;
+                        }
+                    } else {
+                        if (++nextId > setEnd) {
+                            nextId = setStart;
+                        }
+                        pending.recordId = nextId;
+                    }
+                    // Mark the ID as used now, so a duplicate later in the same file is skipped
+                    seqSet.set(pending.recordId);
+                    changed = true;
+                    unsummarizedIds.add(pending.recordId);
+                    batch.add(pending);
+                }
+            }
+            ok += insertBatch(chunk.load.file, batch);
+        } finally {
+            chunk.load.ok.addAndGet(ok);
+            chunk.load.release();
         }
-        return new int[]{ok, total};
     }
 
-    Loadable[] buildRecords(String line) throws ParseException {
-        String[] pp = line.split("\\|");
-        if (pp != null && pp.length >= 7) {
-            String rtype = pp[1].toUpperCase();
-            if ("PUB".equals(rtype) && pp.length == 11) {
+    /**
+     * Insert a batch of records.  LOG_RECORDS is a MyISAM table, so a failed batch cannot be rolled back: the rows the
+     * driver reports as written are kept, and the others are retried a record at a time.  A retried record which is
+     * already in the table (written by the batch before it failed) counts as inserted.  Only the records which really
+     * could not be inserted are reported, and have their IDs released.
+     *
+     * @return the number of records inserted
+     */
+    private int insertBatch(File file, List<PendingRecord> batch) {
+        List<PendingRecord> loaded = new ArrayList<>(batch.size());
+        List<PendingRecord> inserted = new ArrayList<>(batch.size());
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                for (PendingRecord pending : batch) {
+                    try {
+                        pending.load(ps);
+                        ps.addBatch();
+                        loaded.add(pending);
+                    } catch (SQLException e) {
+                        releaseId(pending.recordId);
+                        logger.warn("PROV8003 Invalid value in record: " + pending.line, e);
+                    } finally {
+                        ps.clearParameters();
+                    }
+                }
+                try {
+                    ps.executeBatch();
+                    for (PendingRecord pending : loaded) {
+                        pending.inserted = true;
+                    }
+                    inserted.addAll(loaded);
+                } catch (SQLException e) {
+                    logger.debug("PROV8003 Batch insert failed, retrying one record at a time: " + e.getMessage());
+                    int[] counts = (e instanceof BatchUpdateException)
+                        ? ((BatchUpdateException) e).getUpdateCounts() : null;
+                    ps.clearBatch();
+                    for (int i = 0; i < loaded.size(); i++) {
+                        PendingRecord pending = loaded.get(i);
+                        if ((counts != null && i < counts.length && counts[i] != Statement.EXECUTE_FAILED)
+                            || insertRecord(ps, pending)) {
+                            pending.inserted = true;
+                            inserted.add(pending);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("PROV8007 Exception loading records from " + file + ": " + e);
+            for (PendingRecord pending : loaded) {
+                if (!pending.inserted) {
+                    releaseId(pending.recordId);
+                }
+            }
+        }
+        if (!inserted.isEmpty()) {
+            summarize(file, inserted);
+        }
+        return inserted.size();
+    }
+
+    /**
+     * Update the summaries of some records which have been inserted, along with those of any records whose summaries
+     * could not be updated before.  If this fails, nothing is changed, and the records are kept to be tried again with
+     * the next batch; if too many build up, the oldest are dropped, and the summaries undercount them.  The writer
+     * threads do this one at a time, so that the delays in the hourly statistics are each counted once.
+     */
+    private void summarize(File file, List<PendingRecord> inserted) {
+        synchronized (summaryLock) {
+            summarizeLocked(file, inserted);
+        }
+    }
+
+    private void summarizeLocked(File file, List<PendingRecord> inserted) {
+        List<PendingRecord> records;
+        synchronized (unsummarized) {
+            records = new ArrayList<>(unsummarized);
+            unsummarized.clear();
+        }
+        records.addAll(inserted);
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            addSummaries(conn, records);
+            for (PendingRecord pending : records) {
+                unsummarizedIds.remove(pending.recordId);
+            }
+        } catch (SQLException e) {
+            logger.error("PROV8016 Cannot update the summaries of the records loaded from " + file + ": "
+                + e.getMessage(), e);
+            synchronized (unsummarized) {
+                unsummarized.addAll(0, records);
+                int excess = unsummarized.size() - MAX_UNSUMMARIZED;
+                if (excess > 0) {
+                    List<PendingRecord> dropped = unsummarized.subList(0, excess);
+                    for (PendingRecord pending : dropped) {
+                        unsummarizedIds.remove(pending.recordId);
+                    }
+                    dropped.clear();
+                    logger.error("PROV8016 Dropped the summaries of " + excess + " records; drop the LOG_DAY_COUNTS"
+                        + " and LOG_STATS_HOURLY tables to have them rebuilt");
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert one record which was in a failed batch.
+     *
+     * @return true if the record was inserted, or was already there
+     * @throws SQLException if the DB cannot be reached; errors in the record itself are logged
+     */
+    private boolean insertRecord(PreparedStatement ps, PendingRecord pending) throws SQLException {
+        try {
+            pending.load(ps);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) {
+                logger.debug("Record already inserted by the failed batch: " + pending.recordId);
+                return true;
+            }
+            if (e instanceof SQLNonTransientConnectionException || e instanceof SQLTransientConnectionException) {
+                throw e;
+            }
+            releaseId(pending.recordId);
+            logger.warn("PROV8003 Invalid value in record: " + pending.line, e);
+            return false;
+        } finally {
+            ps.clearParameters();
+        }
+    }
+
+    /**
+     * Tell whether an SQLException is a duplicate key error (MySQL/MariaDB error 1062, or SQLSTATE 23505).
+     */
+    static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
+    /**
+     * Count the records inserted for each day in LOG_DAY_COUNTS, and add them to the hourly statistics, in one
+     * transaction on those (InnoDB) tables, so that either all the summaries are updated or none are.
+     */
+    private void addSummaries(Connection conn, List<PendingRecord> inserted) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            if (dayCounts) {
+                Map<Long, Long> counts = new HashMap<>();
+                for (PendingRecord pending : inserted) {
+                    counts.merge(pending.getRecord().getEventTime() / 86400000L, 1L, Long::sum);
+                }
+                LogDayCounts.add(conn, counts);
+            }
+            if (hourlyStats) {
+                List<BaseLogRecord> records = new ArrayList<>(inserted.size());
+                for (PendingRecord pending : inserted) {
+                    records.add(pending.getRecord());
+                }
+                LogStatsRollups.add(conn, records, unsummarizedIds);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void releaseId(long recordId) {
+        synchronized (idLock) {
+            seqSet.clear(recordId);
+            changed = true;
+        }
+        unsummarizedIds.remove(recordId);
+    }
+
+    Loadable[] buildRecords(LogLineTokenizer tok) throws ParseException {
+        int fields = tok.size();
+        if (fields >= 7) {
+            if (tok.equalsIgnoreCase(1, "PUB") && fields == 11) {
                 // Fields are: date|PUB|pubid|feedid|requrl|method|ctype|clen|srcip|user|status
-                return new Loadable[]{new PublishRecord(pp)};
+                return new Loadable[]{new PublishRecord(tok)};
             }
-            if ("DEL".equals(rtype) && pp.length == 12) {
+            if (tok.equalsIgnoreCase(1, "DEL") && fields == 12) {
                 // Fields are: date|DEL|pubid|feedid|subid|requrl|method|ctype|clen|user|status|xpubid
-                String[] subs = pp[4].split("\\s+");
-                if (subs != null) {
-                    Loadable[] rv = new Loadable[subs.length];
-                    for (int i = 0; i < subs.length; i++) {
-                        // create a new record for each individual sub
-                        pp[4] = subs[i];
-                        rv[i] = new DeliveryRecord(pp);
-                    }
-                    return rv;
+                int[] subs = tok.getIntList(4);
+                Loadable[] rv = new Loadable[subs.length];
+                for (int i = 0; i < subs.length; i++) {
+                    // create a new record for each individual sub
+                    rv[i] = new DeliveryRecord(tok, subs[i]);
                 }
+                return rv;
             }
-            if ("EXP".equals(rtype) && pp.length == 11) {
+            if (tok.equalsIgnoreCase(1, "EXP") && fields == 11) {
                 // Fields are: date|EXP|pubid|feedid|subid|requrl|method|ctype|clen|reason|attempts
-                ExpiryRecord expiryRecord = new ExpiryRecord(pp);
+                ExpiryRecord expiryRecord = new ExpiryRecord(tok);
                 if ("other".equals(expiryRecord.getReason())) {
-                    logger.info("Invalid reason '" + pp[9] + "' changed to 'other' for record: "
+                    logger.info("Invalid reason '" + tok.get(9) + "' changed to 'other' for record: "
                         + expiryRecord.getPublishId());
                 }
                 return new Loadable[]{expiryRecord};
             }
-            if ("PBF".equals(rtype) && pp.length == 12) {
+            if (tok.equalsIgnoreCase(1, "PBF") && fields == 12) {
                 // Fields are: date|PBF|pubid|feedid|requrl|method|ctype|clen-expected|clen-received|srcip|user|error
-                return new Loadable[]{new PubFailRecord(pp)};
+                return new Loadable[]{new PubFailRecord(tok)};
             }
-            if ("DLX".equals(rtype) && pp.length == 7) {
+            if (tok.equalsIgnoreCase(1, "DLX") && fields == 7) {
                 // Fields are: date|DLX|pubid|feedid|subid|clen-tosend|clen-sent
-                return new Loadable[]{new DeliveryExtraRecord(pp)};
+                return new Loadable[]{new DeliveryExtraRecord(tok)};
             }
-            if ("LOG".equals(rtype) && (pp.length == 19 || pp.length == 20)) {
+            if (tok.equalsIgnoreCase(1, "LOG") && (fields == 19 || fields == 20)) {
                 // Fields are: date|LOG|pubid|feedid|requrl|method|ctype|clen|type|
                 // feedFileid|remoteAddr|user|status|subid|fileid|result|attempts|reason|record_id
-                return new Loadable[]{new LogRecord(pp)};
+                return new Loadable[]{new LogRecord(tok)};
             }
         }
-        logger.warn("PROV8002 bad record: " + line);
+        logger.warn("PROV8002 bad record: " + tok.getLine());
         return new Loadable[0];
     }
 
@@ -471,4 +1278,88 @@ public class LogfileLoader extends Thread {
         LogfileLoader.getLoader();
         Thread.sleep(200000L);
     }
+
+    /**
+     * Receives chunks of parsed records, either to write them directly or to queue them for a writer thread.
+     */
+    private interface ChunkConsumer {
+        void accept(Chunk chunk) throws InterruptedException;
+    }
+
+    /**
+     * The progress of one logfile through the pipeline.  The file is finished when it has been parsed and every
+     * chunk of it written; the PROV8000 statistics are then logged and, for a spooled file, the file is deleted.
+     */
+    private class FileLoad {
+
+        private final File file;
+        private final CountDownLatch done;
+        private final long start = System.currentTimeMillis();
+        private final AtomicInteger ok = new AtomicInteger();
+        // one for the parser, plus one for each chunk not yet written
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private int total;
+
+        FileLoad(File file, CountDownLatch done) {
+            this.file = file;
+            this.done = done;
+        }
+
+        void release() {
+            if (pending.decrementAndGet() == 0) {
+                long time = System.currentTimeMillis() - start;
+                logger.info(String.format("PROV8000 Processed %s in %d ms; %d of %d records.",
+                    file.toString(), time, ok.get(), total));
+                if (done != null) {
+                    try {
+                        Files.delete(file.toPath());
+                    } catch (IOException e) {
+                        logger.info("PROV8001 failed to delete file " + file.getName(), e);
+                    }
+                    done.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * A chunk of parsed records from one logfile.
+     */
+    private static class Chunk {
+
+        private final FileLoad load;
+        private final List<PendingRecord> records;
+
+        Chunk(FileLoad load, int size) {
+            this.load = load;
+            this.records = new ArrayList<>(size);
+        }
+    }
+
+    /**
+     * A parsed record, with the line it came from for error reporting.
+     */
+    private static class PendingRecord {
+
+        private final Loadable rec;
+        private final String line;
+        private long recordId;
+        private boolean inserted;
+
+        PendingRecord(Loadable rec, String line) {
+            this.rec = rec;
+            this.line = line;
+        }
+
+        BaseLogRecord getRecord() {
+            return (BaseLogRecord) rec;
+        }
+
+        void load(PreparedStatement ps) throws SQLException {
+            rec.load(ps);
+            if (!(rec instanceof LogRecord)) {
+                ps.setLong(18, recordId);
+            }
+        }
+    }
 }
@@ -31,30 +31,31 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.TreeSet;
-import org.json.JSONException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 
 import org.onap.dmaap.datarouter.provisioning.ProvRunner;
-import org.onap.dmaap.datarouter.provisioning.beans.EgressRoute;
+import org.onap.dmaap.datarouter.provisioning.BaseServlet;
+import org.onap.dmaap.datarouter.provisioning.beans.EntityCache;
 import org.onap.dmaap.datarouter.provisioning.beans.Feed;
 import org.onap.dmaap.datarouter.provisioning.beans.Group;
-import org.onap.dmaap.datarouter.provisioning.beans.IngressRoute;
-import org.onap.dmaap.datarouter.provisioning.beans.NetworkRoute;
-import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
 import org.onap.dmaap.datarouter.provisioning.beans.Subscription;
-import org.onap.dmaap.datarouter.provisioning.BaseServlet;
 
 /**
  * This class handles the two timers (described in R1 Design Notes), and takes care of issuing the GET to each node of
- * the URL to "poke".
+ * the URL to "poke".  Nodes are poked in parallel on a small, bounded pool of threads, with connect and read timeouts,
+ * so that one unreachable node does not hold up the others.  A failed poke is retried with an exponential backoff.
  *
  * @author Robert Eby
  * @version $Id: Poker.java,v 1.11 2014/01/08 16:13:47 eby Exp $
@@ -68,7 +69,7 @@ public class Poker extends TimerTask {
     private static final String POKE_URL_TEMPLATE = "http://%s/internal/fetchProv";
 
     private static final Object lock = new Object();
-    private static final String CARRIAGE_RETURN = "\n],\n";
+    private static final String PROPERTY_PREFIX = "org.onap.dmaap.datarouter.provserver.";
 
     /**
      * This is a singleton -- there is only one Poker object in the server.
@@ -76,9 +77,25 @@ public class Poker extends TimerTask {
     private static Poker poker;
     private long timer1;
     private long timer2;
+    private long reloadInterval;
+    private long nextReload;       // used by the timer thread only
     private String thisPod;        // DNS name of this machine
     private EELFLogger logger;
-    private String provString;
+    private final ProvisioningDocument document;
+    private volatile ProvisioningGeneration generation;
+    private volatile RoutingSnapshot routingSnapshot = RoutingSnapshot.empty();
+    private ScheduledExecutorService pokeExecutor;
+    private int connectTimeout;
+    private int readTimeout;
+    private int maxRetries;
+    private long retryBackoff;
+    /**
+     * The nodes with a poke queued which has not started yet.  A node in this set is not poked again, since the queued
+     * poke will cause it to fetch the latest provisioning data anyway.  A node is taken out of the set as its poke
+     * starts, so a change made while the GET is in progress gets a poke of its own.
+     */
+    private final Set<String> pendingPokes = ConcurrentHashMap.newKeySet();
+    private final Map<String, PokeStats> pokeStats = new ConcurrentHashMap<>();
 
 
     private Poker() {
@@ -90,7 +107,12 @@ public class Poker extends TimerTask {
             thisPod = "*UNKNOWN_POD*"; // not a major problem
             logger.info("UnknownHostException: Setting thisPod to \"*UNKNOWN_POD*\"", e);
         }
-        provString = buildProvisioningString();
+        document = new ProvisioningDocument(
+            getIntProperty(ProvRunner.getProvProperties(), "prov_history_size", 100));
+        reloadInterval = getIntProperty(ProvRunner.getProvProperties(), "prov_reload_interval", 3600000);
+        nextReload = System.currentTimeMillis() + reloadInterval;
+        rebuildProvisioningString();
+        setupPokeExecutor();
         Timer rolex = new Timer();
         rolex.scheduleAtFixedRate(this, 0L, 1000L);    // Run once a second to check the timers
     }
@@ -107,6 +129,32 @@ public class Poker extends TimerTask {
         return poker;
     }
 
+    private void setupPokeExecutor() {
+        Properties props = ProvRunner.getProvProperties();
+        int threads = getIntProperty(props, "poke_threads", 10);
+        connectTimeout = getIntProperty(props, "poke_connect_timeout", 5000);
+        readTimeout = getIntProperty(props, "poke_read_timeout", 10000);
+        maxRetries = getIntProperty(props, "poke_retries", 3);
+        retryBackoff = getIntProperty(props, "poke_retry_backoff", 1000);
+        AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Poker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        pokeExecutor = executor;
+    }
+
+    private int getIntProperty(Properties props, String name, int dflt) {
+        try {
+            return Integer.parseInt(props.getProperty(PROPERTY_PREFIX + name, Integer.toString(dflt)).trim());
+        } catch (NumberFormatException e) {
+            logger.warn("PROV0017 Bad value for " + PROPERTY_PREFIX + name + ", using " + dflt);
+            return dflt;
+        }
+    }
+
     /**
      * This method sets the two timers described in the design notes.
      *
@@ -133,22 +181,87 @@ public class Poker extends TimerTask {
     /**
      * Return the last provisioning string built.
      *
-     * @return the last provisioning string built.
+     * @return the last provisioning string built, or null if none could be built yet.
      */
     public String getProvisioningString() {
-        return provString;
+        ProvisioningGeneration current = generation;
+        return (current == null) ? null : current.getDocument();
+    }
+
+    /**
+     * Return the version of the last provisioning string built.  Each rebuild which changes the provisioning data
+     * produces a new version.
+     *
+     * @return the version of the last provisioning string built, or null if none could be built yet.
+     */
+    public String getProvisioningVersion() {
+        ProvisioningGeneration current = generation;
+        return (current == null) ? null : current.getVersion();
+    }
+
+    /**
+     * Return the last provisioning string built, together with its version and its encoded forms.
+     *
+     * @return the current generation of the provisioning data
+     */
+    public ProvisioningGeneration getProvisioningGeneration() {
+        return generation;
+    }
+
+    /**
+     * Return the changes to the provisioning data since an earlier version.
+     *
+     * @param since the version the caller already has
+     * @return the changes as a JSON string, or null if the version is unknown or too old to build a delta from
+     * @see ProvisioningDocument#getDelta(String)
+     */
+    public String getProvisioningDelta(String since) {
+        return document.getDelta(since);
+    }
+
+    /**
+     * Record that a provisioning entity has been inserted, updated or deleted, so that it is re-read the next time
+     * the provisioning string is built.  This should be called for every successful change to the DB.
+     *
+     * @param bean the bean which was changed
+     */
+    public void entityChanged(Object bean) {
+        document.entityChanged(bean);
+    }
+
+    /**
+     * Return the routing snapshot built from the last provisioning string.
+     *
+     * @return the pre-parsed feed IDs and Ingress Route Table
+     */
+    public RoutingSnapshot getRoutingSnapshot() {
+        return routingSnapshot;
+    }
+
+    /**
+     * Return the poke statistics for each node (and POD) that has been poked since this server started.
+     *
+     * @return an unmodifiable map of node name to statistics
+     */
+    public Map<String, PokeStats> getPokeStats() {
+        return Collections.unmodifiableMap(pokeStats);
     }
 
     /**
      * The method to run at the predefined interval (once per second).  This method checks to see if either of the two
      * timers has expired, and if so, will rebuild the provisioning string, and poke all the nodes and other PODs.  The
-     * timers are then reset to 0.
+     * timers are then reset to 0.  Every <i>prov_reload_interval</i> ms, the whole provisioning string is reloaded from
+     * the DB, in case it has missed a change.
      */
     @Override
     public void run() {
         try {
+            long now = System.currentTimeMillis();
+            if (reloadInterval > 0 && now >= nextReload) {
+                nextReload = now + reloadInterval;
+                reloadProvisioningString();
+            }
             if (timer1 > 0) {
-                long now = System.currentTimeMillis();
                 boolean fire = false;
                 synchronized (lock) {
                     if (now > timer1 || now > timer2) {
@@ -165,15 +278,27 @@ public class Poker extends TimerTask {
         }
     }
 
+    private void reloadProvisioningString() {
+        String version = document.getVersion();
+        document.invalidateAll();
+        rebuildProvisioningString();
+        if (!version.equals(document.getVersion())) {
+            logger.info("PROV0022 Reloaded provisioning data differs from the model; poking nodes");
+            pokeNodes();
+        }
+    }
+
     private void pokeNodes() {
-        // Rebuild the prov string
-        provString = buildProvisioningString();
+        // Rebuild the prov string, and tell any nodes watching for changes
+        Set<String> watching = rebuildProvisioningString();
         // Only the active POD should poke nodes, etc.
         boolean active = SynchronizerTask.getSynchronizer().isActive();
         if (active) {
-            // Poke all the DR nodes
+            // Poke all the DR nodes, except those which have been told via /internal/prov/watch
             for (String n : BaseServlet.getNodes()) {
-                pokeNode(n);
+                if (!watching.contains(n)) {
+                    pokeNode(n);
+                }
             }
             // Poke the pod that is not us
             for (String n : BaseServlet.getPods()) {
@@ -185,146 +310,180 @@ public class Poker extends TimerTask {
     }
 
     private void pokeNode(final String nodename) {
+        if (!pendingPokes.add(nodename)) {
+            logger.debug("PROV0012 Poke of node " + nodename + " already pending");
+            return;
+        }
         logger.debug("PROV0012 Poking node " + nodename + " ...");
-        String nodeUrl = String.format(POKE_URL_TEMPLATE, nodename + ":" + ProvRunner.getProvProperties().get(
-            "org.onap.dmaap.datarouter.provserver.http.port"), "8080");
-        Runnable runn = () -> {
-            try {
-                URL url = new URL(nodeUrl);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setConnectTimeout(60000);    //Fixes for Itrack DATARTR-3, poke timeout
-                conn.connect();
-                conn.getContentLength();    // Force the GET through
-                conn.disconnect();
-            } catch (MalformedURLException e) {
-                logger.warn(
-                        "PROV0013 MalformedURLException Error poking node at " + nodeUrl + " : " + e
-                                .getMessage(), e);
-            } catch (IOException e) {
-                logger.warn("PROV0013 IOException Error poking node at " + nodeUrl + " : " + e
-                        .getMessage(), e);
+        String nodeUrl = String.format(POKE_URL_TEMPLATE, nodename + ":" + ProvRunner.getProvProperties().getProperty(
+            "org.onap.dmaap.datarouter.provserver.http.port", "8080"));
+        boolean queued = false;
+        try {
+            pokeExecutor.execute(() -> pokeNode(nodename, nodeUrl, 0));
+            queued = true;
+        } finally {
+            if (!queued) {
+                pendingPokes.remove(nodename);
             }
-        };
-        runn.run();
+        }
     }
 
-    private String buildProvisioningString() {
-        StringBuilder sb = new StringBuilder("{\n");
+    private void pokeNode(String nodename, String nodeUrl, int attempt) {
+        pendingPokes.remove(nodename);
+        PokeStats stats = pokeStats.computeIfAbsent(nodename, k -> new PokeStats());
+        long start = System.currentTimeMillis();
+        try {
+            URL url = new URL(nodeUrl);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            conn.connect();
+            conn.getContentLength();    // Force the GET through
+            conn.disconnect();
+            long latency = System.currentTimeMillis() - start;
+            stats.success(latency);
+            logger.debug("PROV0012 Poked node " + nodename + " in " + latency + " ms");
+        } catch (MalformedURLException e) {
+            stats.failure();
+            logger.warn("PROV0013 MalformedURLException Error poking node at " + nodeUrl + " : " + e.getMessage(), e);
+        } catch (IOException e) {
+            stats.failure();
+            if (attempt < maxRetries) {
+                long delay = retryBackoff << attempt;
+                logger.info("PROV0013 IOException Error poking node at " + nodeUrl + " : " + e.getMessage()
+                    + "; retrying in " + delay + " ms");
+                scheduleRetry(nodename, nodeUrl, attempt + 1, delay);
+            } else {
+                logger.warn("PROV0013 IOException Error poking node at " + nodeUrl + " : " + e.getMessage(), e);
+            }
+        } catch (RuntimeException e) {
+            stats.failure();
+            logger.warn("PROV0013 Error poking node at " + nodeUrl + " : " + e.getMessage(), e);
+        }
+    }
 
-        // Append Feeds to the string
-        String pfx = "\n";
-        sb.append("\"feeds\": [");
-        for (Feed f : Feed.getAllFeeds()) {
-            sb.append(pfx);
-            sb.append(f.asJSONObject().toString());
-            pfx = ",\n";
+    /**
+     * Queue a retry of a failed poke, unless a newer poke of the node is already queued.
+     */
+    private void scheduleRetry(String nodename, String nodeUrl, int attempt, long delay) {
+        if (!pendingPokes.add(nodename)) {
+            return;
         }
-        sb.append(CARRIAGE_RETURN);
-
-        //Append groups to the string - Rally:US708115  - 1610
-        pfx = "\n";
-        sb.append("\"groups\": [");
-        for (Group s : Group.getAllgroups()) {
-            sb.append(pfx);
-            sb.append(s.asJSONObject().toString());
-            pfx = ",\n";
+        boolean scheduled = false;
+        try {
+            pokeExecutor.schedule(() -> pokeNode(nodename, nodeUrl, attempt), delay, TimeUnit.MILLISECONDS);
+            scheduled = true;
+        } finally {
+            if (!scheduled) {
+                pendingPokes.remove(nodename);
+            }
         }
-        sb.append(CARRIAGE_RETURN);
-
-        // Append Subscriptions to the string
-        pfx = "\n";
-        sb.append("\"subscriptions\": [");
-        for (Subscription s : Subscription.getAllSubscriptions()) {
-            sb.append(pfx);
-            if (s != null) {
-                sb.append(s.asJSONObject().toString());
+    }
+
+    /**
+     * Bring the provisioning string up to date.  Only the entities reported via {@link #entityChanged(Object)} since
+     * the last rebuild are re-read from the DB.  The {@link RoutingSnapshot} is taken from the same model, so the
+     * string no longer needs to be parsed after it is built.  The string is only re-encoded if it has changed; if it
+     * cannot be encoded, the previous generation is kept, and encoding is tried again on the next rebuild.
+     *
+     * @return the names of the nodes watching for changes which have been told of (or already have) this version
+     */
+    private Set<String> rebuildProvisioningString() {
+        String str = document.build();
+        String version = document.getVersion();
+        routingSnapshot = document.getRoutingSnapshot();
+        ProvisioningGeneration current = generation;
+        if (current == null || !current.getVersion().equals(version)) {
+            try {
+                generation = new ProvisioningGeneration(version, str);
+            } catch (IOException e) {
+                logger.warn("PROV0016: Could not encode prov string: " + e);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("PROV0019 Entity cache hits/misses: feeds " + cacheStats(Feed.getCache())
+                    + ", subscriptions " + cacheStats(Subscription.getCache())
+                    + ", groups " + cacheStats(Group.getCache()));
             }
-            pfx = ",\n";
         }
-        sb.append(CARRIAGE_RETURN);
-
-        // Append Parameters to the string
-        pfx = "\n";
-        sb.append("\"parameters\": {");
-        Map<String, String> props = Parameters.getParameters();
-        Set<String> ivals = new HashSet<>();
-        String intv = props.get("_INT_VALUES");
-        if (intv != null) {
-            ivals.addAll(Arrays.asList(intv.split("\\|")));
+        ProvisioningGeneration latest = generation;
+        if (latest == null) {
+            return Collections.emptySet();
         }
-        for (String key : new TreeSet<String>(props.keySet())) {
-            String val = props.get(key);
-            sb.append(pfx);
-            sb.append("  \"").append(key).append("\": ");
-            if (ivals.contains(key)) {
-                // integer value
-                sb.append(val);
-            } else if (key.endsWith("S")) {
-                // Split and append array of strings
-                String[] pp = val.split("\\|");
-                String p2 = "";
-                sb.append("[");
-                for (String t : pp) {
-                    sb.append(p2).append("\"").append(quote(t)).append("\"");
-                    p2 = ",";
-                }
-                sb.append("]");
-            } else {
-                sb.append("\"").append(quote(val)).append("\"");
-            }
-            pfx = ",\n";
+        return ProvisioningWatchers.getInstance().provisioningChanged(latest.getVersion());
+    }
+
+    private static String cacheStats(EntityCache<?> cache) {
+        return cache.getHits() + "/" + cache.getMisses();
+    }
+
+    /**
+     * Counters kept for each node that is poked.
+     */
+    public static class PokeStats {
+
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private volatile long lastLatency = -1;
+        private volatile long lastSuccess = 0;
+
+        void success(long latency) {
+            successes.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            lastLatency = latency;
+            lastSuccess = System.currentTimeMillis();
         }
-        sb.append("\n},\n");
-
-        // Append Routes to the string
-        pfx = "\n";
-        sb.append("\"ingress\": [");
-        for (IngressRoute in : IngressRoute.getAllIngressRoutes()) {
-            sb.append(pfx);
-            sb.append(in.asJSONObject().toString());
-            pfx = ",\n";
+
+        void failure() {
+            failures.incrementAndGet();
         }
-        sb.append(CARRIAGE_RETURN);
-
-        pfx = "\n";
-        sb.append("\"egress\": {");
-        for (EgressRoute eg : EgressRoute.getAllEgressRoutes()) {
-            sb.append(pfx);
-            String str = eg.asJSONObject().toString();
-            str = str.substring(1, str.length() - 1);
-            sb.append(str);
-            pfx = ",\n";
+
+        public long getSuccesses() {
+            return successes.get();
         }
-        sb.append("\n},\n");
-
-        pfx = "\n";
-        sb.append("\"routing\": [");
-        for (NetworkRoute ne : NetworkRoute.getAllNetworkRoutes()) {
-            sb.append(pfx);
-            sb.append(ne.asJSONObject().toString());
-            pfx = ",\n";
+
+        public long getFailures() {
+            return failures.get();
         }
-        sb.append("\n]");
-        sb.append("\n}");
 
-        // Convert to string and verify it is valid JSON
-        String tempProvString = sb.toString();
-        try {
-            new JSONObject(new JSONTokener(tempProvString));
-        } catch (JSONException e) {
-            logger.warn("PROV0016: Possible invalid prov string: " + e);
+        /**
+         * Get the average latency of successful pokes.
+         *
+         * @return the average latency in milliseconds, or -1 if there has been no successful poke
+         */
+        public long getAverageLatency() {
+            long count = successes.get();
+            return (count == 0) ? -1 : totalLatency.get() / count;
         }
-        return tempProvString;
-    }
 
-    private String quote(String str) {
-        StringBuilder sb = new StringBuilder();
-        for (char ch : str.toCharArray()) {
-            if (ch == '\\' || ch == '"') {
-                sb.append('\\');
-            }
-            sb.append(ch);
+        public long getLastLatency() {
+            return lastLatency;
+        }
+
+        public long getLastSuccess() {
+            return lastSuccess;
+        }
+
+        /**
+         * Get the counters as a JSON object, for /internal/pokes.
+         *
+         * @return the counters
+         */
+        public JSONObject asJSONObject() {
+            JSONObject jo = new JSONObject();
+            jo.put("successes", getSuccesses());
+            jo.put("failures", getFailures());
+            jo.put("averageLatency", getAverageLatency());
+            jo.put("lastLatency", getLastLatency());
+            jo.put("lastSuccess", getLastSuccess());
+            return jo;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("successes=%d, failures=%d, avgLatency=%d, lastLatency=%d", getSuccesses(),
+                getFailures(), getAverageLatency(), getLastLatency());
         }
-        return sb.toString();
     }
+
 }
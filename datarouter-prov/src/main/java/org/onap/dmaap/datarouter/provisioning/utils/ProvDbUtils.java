@@ -29,6 +29,7 @@ import java.io.FileReader;
 import java.io.LineNumberReader;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -86,6 +87,58 @@ public class ProvDbUtils {
         return dataSource.getConnection();
     }
 
+    /**
+     * Make sure a table uses the InnoDB storage engine, so that updates to it can be rolled back.  A table created
+     * with another engine (by an older sql_init_01.sql, say) is converted.  This does nothing on a DB other than
+     * MySQL or MariaDB.
+     *
+     * @param conn a DB connection
+     * @param table the name of the table
+     * @throws SQLException on a DB error
+     */
+    public static void useInnoDb(Connection conn, String table) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+        if (!product.contains("mariadb") && !product.contains("mysql")) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT ENGINE FROM information_schema.TABLES"
+            + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || "InnoDB".equalsIgnoreCase(rs.getString("ENGINE"))) {
+                    return;
+                }
+            }
+        }
+        intLogger.info("PROV9011: Converting " + table + " to InnoDB");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ENGINE = InnoDB");
+        }
+    }
+
+    /**
+     * Make sure a table has an index, creating it if a DB initialized by an older sql_init_01.sql lacks it.
+     *
+     * @param conn a DB connection
+     * @param table the name of the table
+     * @param name the name of the index
+     * @param columns the indexed columns, separated by commas
+     * @throws SQLException on a DB error
+     */
+    public static void createIndex(Connection conn, String table, String name, String columns) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(null, null, table, false, true)) {
+            while (rs.next()) {
+                if (name.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+        }
+        intLogger.info("PROV9012: Creating index " + name + " on " + table + " (" + columns + ")");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+        }
+    }
+
     public boolean initProvDB() {
         final String[] expectedTables = {
             "FEEDS", "FEED_ENDPOINT_ADDRS", "FEED_ENDPOINT_IDS", "PARAMETERS",
@@ -102,6 +155,7 @@ public class ProvDbUtils {
                 intLogger.info("PROV9001: First time startup; The database is being initialized.");
                 runInitScript(connection, 1);
             }
+            createLogRecordIndexes(connection);
         } catch (SQLException e) {
             intLogger.error("PROV9000: The database credentials are not working: " + e.getMessage(), e);
             return false;
@@ -109,6 +163,22 @@ public class ProvDbUtils {
         return true;
     }
 
+    /**
+     * Add the LOG_RECORDS indexes which a DB initialized by an older sql_init_01.sql lacks.  The logging API reads a
+     * page of records for a feed or subscription in (EVENT_TIME, RECORD_ID) order, and the {@link LogfileLoader}
+     * looks up records by PUBLISH_ID.  A failure is logged, but does not stop the server; the queries still work, only
+     * more slowly.
+     */
+    private void createLogRecordIndexes(Connection connection) {
+        try {
+            createIndex(connection, "LOG_RECORDS", "LOG_RECORDS_FEED_TIME", "FEEDID, EVENT_TIME, RECORD_ID");
+            createIndex(connection, "LOG_RECORDS", "LOG_RECORDS_SUB_TIME", "DELIVERY_SUBID, EVENT_TIME, RECORD_ID");
+            createIndex(connection, "LOG_RECORDS", "LOG_RECORDS_PUBLISH_ID", "PUBLISH_ID");
+        } catch (SQLException e) {
+            intLogger.error("PROV9012: Cannot create the LOG_RECORDS indexes: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Get a set of all table names in the DB.
      *
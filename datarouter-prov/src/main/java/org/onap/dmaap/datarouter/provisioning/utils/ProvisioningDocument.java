@@ -0,0 +1,599 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.json.JSONArray;
+import org.onap.dmaap.datarouter.provisioning.beans.EgressRoute;
+import org.onap.dmaap.datarouter.provisioning.beans.Feed;
+import org.onap.dmaap.datarouter.provisioning.beans.Group;
+import org.onap.dmaap.datarouter.provisioning.beans.IngressRoute;
+import org.onap.dmaap.datarouter.provisioning.beans.NetworkRoute;
+import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
+import org.onap.dmaap.datarouter.provisioning.beans.Subscription;
+
+/**
+ * An in-memory model of the provisioning document served to the nodes.  Rather than re-reading every table each time
+ * the document is needed, the model is told which entities have changed (see {@link #entityChanged(Object)}), and on
+ * the next {@link #build()} only those rows are re-read from the DB, and only the sections that contain them are
+ * re-serialized.  The JSON text for each feed, group and subscription is kept, so a one-row change costs one lookup
+ * plus a string concatenation.  The beans read on a full reload are also loaded into the feed, group and
+ * subscription caches, so the servlets can answer lookups by ID from the same snapshot.
+ *
+ * <p>Each build which changes the document starts a new generation, identified by a version string of the form
+ * <i>epoch</i>.<i>sequence</i>, where the epoch is the time this model was created.  A bounded history of the entities
+ * changed in each generation is kept, so that {@link #getDelta(String)} can tell a node which has the document for an
+ * older version exactly what to add, replace and remove.  The epoch ensures a version handed out by another POD, or by
+ * an earlier run of this server, is never mistaken for one of ours.
+ *
+ * <p>An entity is only removed from the model once the DB confirms that its row is gone, and a section is only
+ * replaced by a full reload which read at least as many rows as the table holds.  If the DB cannot be read, the model
+ * keeps what it had, and the change is retried on the next build.  Changes made to the DB without being reported here
+ * are picked up by {@link #invalidateAll()}, which the {@link Poker} calls periodically.
+ *
+ * <p>Changes are recorded from any thread; {@link #build()} is called by the {@link Poker} alone.  Each build which
+ * changes the document publishes it, with its version, routing snapshot and history, as one immutable object, so
+ * {@link #getVersion()}, {@link #getDelta(String)} and {@link #getRoutingSnapshot()} never wait for a build to read the
+ * DB.
+ */
+public class ProvisioningDocument {
+
+    private enum Section { FEEDS, GROUPS, SUBSCRIPTIONS, PARAMETERS, INGRESS, EGRESS, ROUTING }
+
+    private static final String SEPARATOR = ",\n";
+    private static final Set<Section> ENTITY_SECTIONS = EnumSet.of(Section.FEEDS, Section.GROUPS, Section.SUBSCRIPTIONS);
+
+    private static final EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
+
+    private final Object lock = new Object();
+    // Changes not yet applied to the model; guarded by lock
+    private Set<Section> staleSections = EnumSet.allOf(Section.class);
+    private Set<Integer> staleFeeds = new HashSet<>();
+    private Set<Integer> staleGroups = new HashSet<>();
+    private Set<Integer> staleSubs = new HashSet<>();
+
+    // The model itself; only touched from build()
+    private final SortedMap<Integer, String> feeds = new TreeMap<>();
+    private final SortedMap<Integer, String> groups = new TreeMap<>();
+    private final SortedMap<Integer, String> subs = new TreeMap<>();
+    private final Map<Section, String> sectionText = new EnumMap<>(Section.class);
+    private List<IngressRoute> ingressRoutes = new ArrayList<>();
+    private final Deque<Generation> history = new ArrayDeque<>();
+    private final int historySize;
+    private long sequence;
+
+    // What the readers see; replaced as a whole by build()
+    private final String epoch = Long.toString(System.currentTimeMillis());
+    private volatile Published published = new Published(0, null, RoutingSnapshot.empty(), new ArrayList<>(),
+        new EnumMap<>(Section.class));
+
+    /**
+     * Create an empty model.  The whole document is loaded from the DB by the first call to {@link #build()}.
+     *
+     * @param historySize the number of generations to remember for {@link #getDelta(String)}
+     */
+    public ProvisioningDocument(int historySize) {
+        this.historySize = historySize;
+    }
+
+    /**
+     * Record that a provisioning entity has been inserted, updated or deleted.  The change is applied to the model on
+     * the next call to {@link #build()}.  An object of an unknown type causes the whole document to be reloaded.
+     *
+     * @param bean the bean which was changed
+     */
+    public void entityChanged(Object bean) {
+        synchronized (lock) {
+            if (bean instanceof Feed) {
+                staleFeeds.add(((Feed) bean).getFeedid());
+            } else if (bean instanceof Group) {
+                staleGroups.add(((Group) bean).getGroupid());
+            } else if (bean instanceof Subscription) {
+                staleSubs.add(((Subscription) bean).getSubid());
+            } else if (bean instanceof Parameters) {
+                staleSections.add(Section.PARAMETERS);
+            } else if (bean instanceof IngressRoute) {
+                staleSections.add(Section.INGRESS);
+            } else if (bean instanceof EgressRoute) {
+                staleSections.add(Section.EGRESS);
+            } else if (bean instanceof NetworkRoute) {
+                staleSections.add(Section.ROUTING);
+            } else {
+                staleSections.addAll(EnumSet.allOf(Section.class));
+            }
+        }
+    }
+
+    /**
+     * Force the whole document to be reloaded from the DB on the next call to {@link #build()}.
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            staleSections.addAll(EnumSet.allOf(Section.class));
+        }
+    }
+
+    /**
+     * Apply all outstanding changes to the model, and return the resulting provisioning document.
+     *
+     * @return the provisioning document, as JSON text
+     */
+    public synchronized String build() {
+        Set<Section> sections;
+        Set<Integer> changedFeeds;
+        Set<Integer> changedGroups;
+        Set<Integer> changedSubs;
+        synchronized (lock) {
+            sections = staleSections;
+            changedFeeds = staleFeeds;
+            changedGroups = staleGroups;
+            changedSubs = staleSubs;
+            staleSections = EnumSet.noneOf(Section.class);
+            staleFeeds = new HashSet<>();
+            staleGroups = new HashSet<>();
+            staleSubs = new HashSet<>();
+        }
+        Set<Section> reloaded = EnumSet.copyOf(ENTITY_SECTIONS);
+        reloaded.retainAll(sections);
+        Set<Section> retrySections = EnumSet.noneOf(Section.class);
+        Set<Integer> retryFeeds = new HashSet<>();
+        Set<Integer> retryGroups = new HashSet<>();
+        Set<Integer> retrySubs = new HashSet<>();
+        if (sections.contains(Section.FEEDS)) {
+            long gen = Feed.getCache().getGeneration();
+            int expected = countRows("FEEDS");
+            Collection<Feed> all = Feed.getAllFeeds();
+            if (expected >= 0 && all.size() >= expected) {
+                feeds.clear();
+                Map<Integer, Feed> loaded = new HashMap<>();
+                for (Feed f : all) {
+                    feeds.put(f.getFeedid(), f.asJSONObject().toString());
+                    loaded.put(f.getFeedid(), f);
+                }
+                Feed.getCache().load(loaded, gen);
+            } else {
+                retrySections.add(Section.FEEDS);
+            }
+        } else if (!changedFeeds.isEmpty()) {
+            for (int id : changedFeeds) {
+                Feed f = Feed.getCachedFeedById(id);
+                update(feeds, id, (f == null) ? null : f.asJSONObject().toString(), "FEEDS", "FEEDID", retryFeeds);
+            }
+            sections.add(Section.FEEDS);
+        }
+        if (sections.contains(Section.GROUPS)) {
+            long gen = Group.getCache().getGeneration();
+            int expected = countRows("GROUPS");
+            Collection<Group> all = Group.getAllgroups();
+            if (expected >= 0 && all.size() >= expected) {
+                groups.clear();
+                Map<Integer, Group> loaded = new HashMap<>();
+                for (Group g : all) {
+                    groups.put(g.getGroupid(), g.asJSONObject().toString());
+                    loaded.put(g.getGroupid(), g);
+                }
+                Group.getCache().load(loaded, gen);
+            } else {
+                retrySections.add(Section.GROUPS);
+            }
+        } else if (!changedGroups.isEmpty()) {
+            for (int id : changedGroups) {
+                Group g = Group.getCachedGroupById(id);
+                update(groups, id, (g == null) ? null : g.asJSONObject().toString(), "GROUPS", "GROUPID",
+                    retryGroups);
+            }
+            sections.add(Section.GROUPS);
+        }
+        if (sections.contains(Section.SUBSCRIPTIONS)) {
+            long gen = Subscription.getCache().getGeneration();
+            int expected = countRows("SUBSCRIPTIONS");
+            Collection<Subscription> all = Subscription.getAllSubscriptions();
+            if (expected >= 0 && all.size() >= expected) {
+                subs.clear();
+                Map<Integer, Subscription> loaded = new HashMap<>();
+                for (Subscription s : all) {
+                    if (s != null) {
+                        subs.put(s.getSubid(), s.asJSONObject().toString());
+                        loaded.put(s.getSubid(), s);
+                    }
+                }
+                Subscription.getCache().load(loaded, gen);
+            } else {
+                retrySections.add(Section.SUBSCRIPTIONS);
+            }
+        } else if (!changedSubs.isEmpty()) {
+            for (int id : changedSubs) {
+                Subscription s = Subscription.getCachedSubscriptionById(id);
+                update(subs, id, (s == null) ? null : s.asJSONObject().toString(), "SUBSCRIPTIONS", "SUBID",
+                    retrySubs);
+            }
+            sections.add(Section.SUBSCRIPTIONS);
+        }
+        // A section which could not be reloaded keeps its old text, if it has any yet
+        sections.removeIf(section -> retrySections.contains(section) && sectionText.containsKey(section));
+        changedFeeds.removeAll(retryFeeds);
+        changedGroups.removeAll(retryGroups);
+        changedSubs.removeAll(retrySubs);
+        if (!retrySections.isEmpty() || !retryFeeds.isEmpty() || !retryGroups.isEmpty() || !retrySubs.isEmpty()) {
+            intlogger.warn("PROV0021 Could not read all the provisioning changes from the DB; will retry "
+                + retrySections + ", feeds " + retryFeeds + ", groups " + retryGroups + ", subscriptions " + retrySubs);
+            synchronized (lock) {
+                staleSections.addAll(retrySections);
+                staleFeeds.addAll(retryFeeds);
+                staleGroups.addAll(retryGroups);
+                staleSubs.addAll(retrySubs);
+            }
+        }
+        for (Iterator<Section> it = sections.iterator(); it.hasNext(); ) {
+            Section section = it.next();
+            String text = serialize(section);
+            if (text.equals(sectionText.put(section, text))) {
+                it.remove();    // unchanged, as after a periodic reload
+            }
+        }
+        reloaded.retainAll(sections);
+        boolean reload = !reloaded.isEmpty();
+        if (!sections.isEmpty()) {
+            RoutingSnapshot routingSnapshot = published.routingSnapshot;
+            if (sections.contains(Section.FEEDS) || sections.contains(Section.INGRESS)) {
+                routingSnapshot = RoutingSnapshot.build(feedIds(), ingressRoutes);
+            }
+            StringBuilder sb = new StringBuilder("{\n");
+            String pfx = "";
+            for (Section section : Section.values()) {
+                sb.append(pfx).append(sectionText.get(section));
+                pfx = SEPARATOR;
+            }
+            sb.append("\n}");
+            sequence++;
+            history.addLast(new Generation(sequence, sections, entities(feeds, changedFeeds),
+                entities(groups, changedGroups), entities(subs, changedSubs), reload));
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+            published = new Published(sequence, sb.toString(), routingSnapshot, new ArrayList<>(history),
+                new EnumMap<>(sectionText));
+        }
+        return published.document;
+    }
+
+    /**
+     * Get the version of the document returned by the last call to {@link #build()}.
+     *
+     * @return the version string
+     */
+    public String getVersion() {
+        return epoch + "." + published.sequence;
+    }
+
+    /**
+     * Get the changes made to the document since an earlier version.  The result is a JSON object containing the
+     * current "version" and the "since" version, plus only those sections which have changed.  For feeds, groups and
+     * subscriptions, the section holds a "changed" array with the current copy of each entity which was added or
+     * updated, and a "removed" array with the IDs of the entities which were deleted.  The parameters and the route
+     * tables are small, so each of these is sent whole if anything in it has changed.
+     *
+     * @param since the version the caller already has
+     * @return the delta as JSON text, or null if the version is unknown or too old, in which case the caller should
+     *     fetch the full document instead
+     */
+    public String getDelta(String since) {
+        Published current = published;
+        long base = parseVersion(since);
+        if (base < 0 || base > current.sequence || (base < current.sequence
+            && (current.history.isEmpty() || current.history.get(0).sequence > base + 1))) {
+            return null;
+        }
+        Set<Section> sections = EnumSet.noneOf(Section.class);
+        SortedMap<Integer, String> changedFeeds = new TreeMap<>();
+        SortedMap<Integer, String> changedGroups = new TreeMap<>();
+        SortedMap<Integer, String> changedSubs = new TreeMap<>();
+        for (Generation gen : current.history) {
+            if (gen.sequence > base) {
+                if (gen.reload) {
+                    return null;
+                }
+                sections.addAll(gen.sections);
+                changedFeeds.putAll(gen.feeds);
+                changedGroups.putAll(gen.groups);
+                changedSubs.putAll(gen.subs);
+            }
+        }
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("\"version\": \"").append(epoch).append(".").append(current.sequence).append("\"")
+            .append(SEPARATOR);
+        sb.append("\"since\": \"").append(since).append("\"");
+        for (Section section : sections) {
+            sb.append(SEPARATOR);
+            switch (section) {
+                case FEEDS:
+                    sb.append(delta("feeds", changedFeeds));
+                    break;
+                case GROUPS:
+                    sb.append(delta("groups", changedGroups));
+                    break;
+                case SUBSCRIPTIONS:
+                    sb.append(delta("subscriptions", changedSubs));
+                    break;
+                default:
+                    sb.append(current.sectionText.get(section));
+                    break;
+            }
+        }
+        return sb.append("\n}").toString();
+    }
+
+    /**
+     * Get the routing snapshot matching the document returned by the last call to {@link #build()}.
+     *
+     * @return the routing snapshot
+     */
+    public RoutingSnapshot getRoutingSnapshot() {
+        return published.routingSnapshot;
+    }
+
+    private long parseVersion(String version) {
+        if (version == null || !version.startsWith(epoch + ".")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(version.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String delta(String name, SortedMap<Integer, String> changes) {
+        List<String> changed = new ArrayList<>();
+        JSONArray removed = new JSONArray();
+        for (Map.Entry<Integer, String> entry : changes.entrySet()) {
+            if (entry.getValue() == null) {
+                removed.put(entry.getKey());
+            } else {
+                changed.add(entry.getValue());
+            }
+        }
+        return "\"" + name + "\": {" + array("changed", changed) + ", \"removed\": " + removed + "}";
+    }
+
+    /**
+     * Copy the JSON text of some entities; an entity which has been removed maps to null.
+     */
+    private static Map<Integer, String> entities(SortedMap<Integer, String> map, Set<Integer> ids) {
+        Map<Integer, String> copy = new HashMap<>();
+        for (int id : ids) {
+            copy.put(id, map.get(id));
+        }
+        return copy;
+    }
+
+    /**
+     * Apply a change to one entity.  An entity which could not be read is only removed if its row is gone; otherwise
+     * the DB could not be read, so the old copy is kept, and the ID is added to <code>retry</code>.
+     */
+    private void update(SortedMap<Integer, String> map, int id, String json, String table, String column,
+        Set<Integer> retry) {
+        if (json != null) {
+            map.put(id, json);
+        } else if (isDeleted(table, column, id)) {
+            map.remove(id);
+        } else {
+            retry.add(id);
+        }
+    }
+
+    private boolean isDeleted(String table, String column, int id) {
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("select 1 from " + table + " where " + column + " = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return !rs.next();
+            }
+        } catch (SQLException e) {
+            intlogger.warn("PROV0021 Cannot check for " + column + " " + id + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Count the rows in a table.
+     *
+     * @return the number of rows, or -1 if they cannot be counted
+     */
+    private int countRows(String table) {
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("select count(*) from " + table);
+            ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : -1;
+        } catch (SQLException e) {
+            intlogger.warn("PROV0021 Cannot count the rows in " + table + ": " + e.getMessage(), e);
+            return -1;
+        }
+    }
+
+    private int[] feedIds() {
+        int[] ids = new int[feeds.size()];
+        int ix = 0;
+        for (int id : feeds.keySet()) {
+            ids[ix++] = id;
+        }
+        return ids;
+    }
+
+    private String serialize(Section section) {
+        switch (section) {
+            case FEEDS:
+                return array("feeds", feeds.values());
+            case GROUPS:
+                return array("groups", groups.values());
+            case SUBSCRIPTIONS:
+                return array("subscriptions", subs.values());
+            case PARAMETERS:
+                return serializeParameters();
+            case INGRESS:
+                ingressRoutes = new ArrayList<>(IngressRoute.getAllIngressRoutes());
+                List<String> in = new ArrayList<>(ingressRoutes.size());
+                for (IngressRoute route : ingressRoutes) {
+                    in.add(route.asJSONObject().toString());
+                }
+                return array("ingress", in);
+            case EGRESS:
+                StringBuilder sb = new StringBuilder("\"egress\": {");
+                String pfx = "\n";
+                for (EgressRoute eg : EgressRoute.getAllEgressRoutes()) {
+                    sb.append(pfx);
+                    String str = eg.asJSONObject().toString();
+                    sb.append(str, 1, str.length() - 1);
+                    pfx = ",\n";
+                }
+                return sb.append("\n}").toString();
+            default:
+                List<String> ne = new ArrayList<>();
+                for (NetworkRoute route : NetworkRoute.getAllNetworkRoutes()) {
+                    ne.add(route.asJSONObject().toString());
+                }
+                return array("routing", ne);
+        }
+    }
+
+    private String array(String name, Collection<String> entries) {
+        StringBuilder sb = new StringBuilder("\"").append(name).append("\": [");
+        String pfx = "\n";
+        for (String entry : entries) {
+            sb.append(pfx).append(entry);
+            pfx = SEPARATOR;
+        }
+        return sb.append("\n]").toString();
+    }
+
+    private String serializeParameters() {
+        StringBuilder sb = new StringBuilder("\"parameters\": {");
+        String pfx = "\n";
+        Map<String, String> props = Parameters.getParameters();
+        Set<String> ivals = new HashSet<>();
+        String intv = props.get("_INT_VALUES");
+        if (intv != null) {
+            ivals.addAll(Arrays.asList(intv.split("\\|")));
+        }
+        for (String key : new TreeSet<String>(props.keySet())) {
+            String val = props.get(key);
+            sb.append(pfx);
+            sb.append("  \"").append(key).append("\": ");
+            if (ivals.contains(key)) {
+                // integer value
+                sb.append(val);
+            } else if (key.endsWith("S")) {
+                // Split and append array of strings
+                String[] pp = val.split("\\|");
+                String p2 = "";
+                sb.append("[");
+                for (String t : pp) {
+                    sb.append(p2).append("\"").append(quote(t)).append("\"");
+                    p2 = ",";
+                }
+                sb.append("]");
+            } else {
+                sb.append("\"").append(quote(val)).append("\"");
+            }
+            pfx = ",\n";
+        }
+        return sb.append("\n}").toString();
+    }
+
+    private String quote(String str) {
+        StringBuilder sb = new StringBuilder();
+        for (char ch : str.toCharArray()) {
+            if (ch == '\\' || ch == '"') {
+                sb.append('\\');
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The document, and everything needed to answer a delta request, as of one build.  Never modified once published.
+     */
+    private static class Published {
+
+        private final long sequence;
+        private final String document;
+        private final RoutingSnapshot routingSnapshot;
+        private final List<Generation> history;
+        private final Map<Section, String> sectionText;
+
+        Published(long sequence, String document, RoutingSnapshot routingSnapshot, List<Generation> history,
+            Map<Section, String> sectionText) {
+            this.sequence = sequence;
+            this.document = document;
+            this.routingSnapshot = routingSnapshot;
+            this.history = history;
+            this.sectionText = sectionText;
+        }
+    }
+
+    /**
+     * The entities and sections changed by one build, with the JSON text of each changed entity (null if removed).
+     */
+    private static class Generation {
+
+        private final long sequence;
+        private final Set<Section> sections;
+        private final Map<Integer, String> feeds;
+        private final Map<Integer, String> groups;
+        private final Map<Integer, String> subs;
+        private final boolean reload;    // true if a whole entity section was reloaded
+
+        Generation(long sequence, Set<Section> sections, Map<Integer, String> feeds, Map<Integer, String> groups,
+            Map<Integer, String> subs, boolean reload) {
+            this.sequence = sequence;
+            this.sections = sections;
+            this.feeds = feeds;
+            this.groups = groups;
+            this.subs = subs;
+            this.reload = reload;
+        }
+    }
+}
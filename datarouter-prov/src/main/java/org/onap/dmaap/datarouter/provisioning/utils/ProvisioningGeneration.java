@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One generation of the provisioning document, ready to be sent to a node.  The UTF-8 and gzip encodings of the
+ * document are computed once, when {@link Poker} rebuilds it, so serving /internal/prov to every node is only a copy
+ * of bytes.  Instances are immutable.
+ */
+public class ProvisioningGeneration {
+
+    private final String version;
+    private final String etag;
+    private final String gzipEtag;
+    private final String document;
+    private final byte[] bytes;
+    private final byte[] gzipped;
+
+    /**
+     * Encode a generation of the provisioning document.
+     *
+     * @param version the version of the document
+     * @param document the document
+     * @throws IOException if the document cannot be compressed
+     */
+    public ProvisioningGeneration(String version, String document) throws IOException {
+        this.version = version;
+        this.etag = "\"" + version + "\"";
+        this.gzipEtag = "\"" + version + "-gz\"";
+        this.document = document;
+        this.bytes = document.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+            gos.write(bytes);
+        }
+        this.gzipped = bos.toByteArray();
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the strong entity tag for this generation, including the surrounding quotes.
+     *
+     * @return the ETag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Get the strong entity tag for the gzip encoding of this generation.  It differs from {@link #getEtag()}, since a
+     * strong validator must not be shared by two representations.
+     *
+     * @return the ETag
+     */
+    public String getGzipEtag() {
+        return gzipEtag;
+    }
+
+    public String getDocument() {
+        return document;
+    }
+
+    /**
+     * Get the document encoded as UTF-8.  The array is shared and must not be modified.
+     *
+     * @return the encoded document
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the UTF-8 document compressed with gzip.  The array is shared and must not be modified.
+     *
+     * @return the compressed document
+     */
+    public byte[] getGzipped() {
+        return gzipped;
+    }
+
+    /**
+     * Does the value of an If-None-Match header match this generation?  Either encoding's tag matches, since both
+     * hold the same document.
+     *
+     * @param ifNoneMatch the header value, which may be null, "*" or a list of entity tags
+     * @return true if the client's copy is current
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag) || etag.equals(tag) || gzipEtag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
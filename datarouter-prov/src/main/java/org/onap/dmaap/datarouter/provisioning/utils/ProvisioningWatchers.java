@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+import org.onap.dmaap.datarouter.provisioning.BaseServlet;
+
+/**
+ * Keeps track of the nodes holding a long poll open on /internal/prov/watch.  Each watch is completed as soon as the
+ * provisioning data moves on from the version the node has, or a subscription reset is issued, so the node learns of
+ * the change without the provisioning server having to connect to it.  A node with a watch pending is not poked; every
+ * other node is still poked as before, so no event is lost between one watch completing and the next being opened.
+ *
+ * <p>The response to a watch is a small JSON object: <code>{"event": "prov", "version": "..."}</code> when the
+ * provisioning data has changed, or <code>{"event": "resetSubscription", "subid": N}</code> for a subscription reset.
+ * A watch which times out gets a 204 response, and the node should simply watch again.
+ */
+public class ProvisioningWatchers {
+
+    private static final EELFLogger intlogger = EELFManager.getInstance().getLogger("InternalLog");
+    private static ProvisioningWatchers instance;
+
+    private final Map<AsyncContext, Watch> watches = new ConcurrentHashMap<>();
+    private volatile String currentVersion;
+
+    /**
+     * Get the singleton ProvisioningWatchers object.
+     *
+     * @return the ProvisioningWatchers
+     */
+    public static synchronized ProvisioningWatchers getInstance() {
+        if (instance == null) {
+            instance = new ProvisioningWatchers();
+        }
+        return instance;
+    }
+
+    /**
+     * Start watching for changes on behalf of a node.  If the node's version is already out of date, the watch
+     * completes at once.
+     *
+     * @param node the name of the node, as it appears in the NODES parameter; may be null for an anonymous watcher
+     * @param version the version of the provisioning data the node has; may be null if it has none
+     * @param ctx the async context of the watch request
+     * @param timeout how long to hold the watch open, in ms
+     */
+    public void watch(String node, String version, AsyncContext ctx, long timeout) {
+        ctx.setTimeout(timeout);
+        ctx.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                watches.remove(ctx);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (watches.remove(ctx) != null) {
+                    ((HttpServletResponse) ctx.getResponse()).setStatus(HttpServletResponse.SC_NO_CONTENT);
+                    ctx.complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                watches.remove(ctx);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // not used
+            }
+        });
+        watches.put(ctx, new Watch((node == null) ? "" : node, version));
+        // Re-check after registering, in case the version changed while we were doing so
+        String current = currentVersion;
+        if (current != null && !current.equals(version)) {
+            complete(ctx, new JSONObject().put("event", "prov").put("version", current));
+        }
+    }
+
+    /**
+     * Tell the watchers that a new version of the provisioning data is available.  Watchers that already have this
+     * version are left waiting.
+     *
+     * @param version the new version
+     * @return the names of the nodes that have been told of the version, or already have it
+     */
+    public Set<String> provisioningChanged(String version) {
+        currentVersion = version;
+        JSONObject event = new JSONObject().put("event", "prov").put("version", version);
+        Set<String> nodes = new HashSet<>();
+        for (Map.Entry<AsyncContext, Watch> watch : watches.entrySet()) {
+            String node = watch.getValue().node;
+            if (version.equals(watch.getValue().version) || complete(watch.getKey(), event)) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Tell all the watchers to reset a subscription.
+     *
+     * @param subid the subscription ID
+     * @return the names of the nodes that have been told
+     */
+    public Set<String> subscriptionReset(int subid) {
+        JSONObject event = new JSONObject().put("event", "resetSubscription").put("subid", subid);
+        Set<String> nodes = new HashSet<>();
+        for (Map.Entry<AsyncContext, Watch> watch : watches.entrySet()) {
+            if (complete(watch.getKey(), event)) {
+                nodes.add(watch.getValue().node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Get the number of watches currently held open.
+     *
+     * @return the count
+     */
+    public int getWatchCount() {
+        return watches.size();
+    }
+
+    private boolean complete(AsyncContext ctx, JSONObject event) {
+        Watch watch = watches.remove(ctx);
+        if (watch == null) {
+            return false;   // already completed or timed out
+        }
+        try {
+            HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+            byte[] body = event.toString().getBytes(StandardCharsets.UTF_8);
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentType(BaseServlet.WATCH_CONTENT_TYPE);
+            resp.setContentLength(body.length);
+            resp.getOutputStream().write(body);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            intlogger.info("PROV0018 Could not complete watch for node " + watch.node + ": " + e.getMessage());
+            return false;
+        } finally {
+            ctx.complete();
+        }
+    }
+
+    private static class Watch {
+
+        private final String node;
+        private final String version;
+
+        Watch(String node, String version) {
+            this.node = node;
+            this.version = version;
+        }
+    }
+}
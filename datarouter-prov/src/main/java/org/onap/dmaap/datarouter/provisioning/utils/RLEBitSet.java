@@ -24,11 +24,12 @@
 
 package org.onap.dmaap.datarouter.provisioning.utils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class provides operations similar to the standard Java {@link java.util.BitSet} class.
@@ -36,124 +37,37 @@ import java.util.TreeSet;
  * for sparsely populated bits sets.  In addition, this class uses <code>long</code>s rather
  * than <code>int</code>s to represent the indices of the bits.
  *
+ * <p>The runs of 1s are kept as two sorted arrays of <code>long</code>s, holding the first bit and
+ * the bit after the last bit of each run, so a set with millions of runs costs 16 bytes per run.
+ * Finding a bit is a binary search.  The arrays are a gap buffer: the free space is kept at the
+ * position of the last change, so setting bits in order (as record IDs are assigned), or filling
+ * the holes in one part of the set, moves only a few entries.  Readers share a read lock, and
+ * changes take the write lock.
+ *
  * @author Robert Eby
  * @version $Id$
  */
 public class RLEBitSet {
-    /**
-     * Used to represent a continues set of <i>nbits</i> 1 bits starting at <i>start</i>.
-     */
-    private class RLE implements Comparable<RLE> {
-        private final long start;
-        private long nbits;
-
-        public RLE(long from, long nbits) {
-            this.start = from;
-            this.nbits = (nbits > 0) ? nbits : 0;
-        }
-
-        /**
-         * Returns the index of the first set bit in this RLE.
-         *
-         * @return the index
-         */
-        public long firstBit() {
-            return start;
-        }
-
-        /**
-         * Returns the index of the last set bit in this RLE.
-         *
-         * @return the index
-         */
-        public long lastBit() {
-            return start + nbits - 1;
-        }
-
-
-        public boolean intersects(RLE b2) {
-            if (b2.lastBit() < this.firstBit()) {
-                return false;
-            }
-            if (b2.firstBit() > this.lastBit()) {
-                return false;
-            }
-            return true;
-        }
-
-        public boolean isSubset(RLE b2) {
-            if (firstBit() < b2.firstBit()) {
-                return false;
-            }
-            if (firstBit() > b2.lastBit()) {
-                return false;
-            }
-            if (lastBit() < b2.firstBit()) {
-                return false;
-            }
-            if (lastBit() > b2.lastBit()) {
-                return false;
-            }
-            return true;
-        }
 
-        public RLE union(RLE b2) {
-            RLE b1 = this;
-            if (b1.firstBit() > b2.firstBit()) {
-                b1 = b2;
-                b2 = this;
-            }
-            long end = b1.lastBit();
-            if (b2.lastBit() > b1.lastBit()) {
-                end = b2.lastBit();
-            }
-            return new RLE(b1.firstBit(), end - b1.firstBit() + 1);
-        }
+    private static final int INITIAL_CAPACITY = 16;
 
-        /**
-         * Returns the number of bits set to {@code true} in this {@code RLE}.
-         *
-         * @return the number of bits set to {@code true} in this {@code RLE}.
-         */
-        public int cardinality() {
-            return (int) nbits;
-        }
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
 
-        @Override
-        public int compareTo(RLE rle) {
-            if (this.equals(rle)) {
-                return 0;
-            }
-            return (start < rle.start) ? -1 : 1;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof RLE) {
-                RLE rle = (RLE) obj;
-                return (start == rle.start) && (nbits == rle.nbits);
-            }
-            return false;
-        }
-
-        @Override
-        public int hashCode() {
-            return Long.valueOf(start ^ nbits).hashCode();
-        }
-
-        @Override
-        public String toString() {
-            return "[" + firstBit() + ".." + lastBit() + "]";
-        }
-    }
-
-    private SortedSet<RLE> bitsets;
+    // Runs are [starts[i], ends[i]), ordered, disjoint and not abutting.  Physical slots
+    // gap .. gap + (capacity - size) - 1 are unused.
+    private long[] starts;
+    private long[] ends;
+    private int size;
+    private int gap;
 
     /**
      * Creates a new bit set. All bits are initially <code>false</code>.
      */
     public RLEBitSet() {
-        bitsets = new TreeSet<>();
+        starts = new long[INITIAL_CAPACITY];
+        ends = new long[INITIAL_CAPACITY];
     }
 
     /**
@@ -162,7 +76,7 @@ public class RLEBitSet {
      * @param str the initialization String
      */
     public RLEBitSet(String str) {
-        bitsets = new TreeSet<>();
+        this();
         set(str);
     }
 
@@ -173,10 +87,12 @@ public class RLEBitSet {
      * @return the logical size of this {@code RLEBitSet}
      */
     public long length() {
-        if (isEmpty()) {
-            return 0;
+        readLock.lock();
+        try {
+            return (size == 0) ? 0 : end(size - 1);
+        } finally {
+            readLock.unlock();
         }
-        return bitsets.last().lastBit() + 1;
     }
 
     /**
@@ -187,14 +103,33 @@ public class RLEBitSet {
      * @return the value of the bit with the specified index
      */
     public boolean get(long bit) {
-        synchronized (bitsets) {
-            for (RLE bs : bitsets) {
-                if (bit >= bs.firstBit() && bit <= bs.lastBit()) {
-                    return true;
-                }
+        readLock.lock();
+        try {
+            int ix = indexOfEndAfter(bit);
+            return ix < size && start(ix) <= bit;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the index of the nearest bit that is set to {@code true} that occurs on or before
+     * the specified starting index.  If no such bit exists then {@code -1} is returned.
+     *
+     * @param bit the index to start checking from (inclusive)
+     * @return the index of the previous set bit, or {@code -1} if there is no such bit
+     */
+    public long previousSetBit(long bit) {
+        readLock.lock();
+        try {
+            int ix = indexOfEndAfter(bit);
+            if (ix < size && start(ix) <= bit) {
+                return bit;
             }
+            return (ix > 0) ? end(ix - 1) - 1 : -1;
+        } finally {
+            readLock.unlock();
         }
-        return false;
     }
 
     /**
@@ -244,29 +179,37 @@ public class RLEBitSet {
      */
     public void set(long from, long to) {
         checkRange(from, to);
-        RLE newbits = new RLE(from, to - from);
-        synchronized (bitsets) {
-            for (RLE bs : bitsets) {
-                if (bs.intersects(newbits)) {
-                    if (!newbits.isSubset(bs)) {
-                        bitsets.remove(bs);
-                        bitsets.add(newbits.union(bs));
-                        coalesce();
-                    }
-                    return;
-                }
+        if (from == to) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            // Runs i .. j-1 overlap or abut the new bits, and are merged with them
+            int ix = indexOfEndAfter(from - 1);
+            int jx = indexOfStartAfter(to);
+            if (ix < jx) {
+                from = Math.min(from, start(ix));
+                to = Math.max(to, end(jx - 1));
             }
-            bitsets.add(newbits);
+            splice(ix, jx, 1);
+            put(ix, from, to);
+        } finally {
+            writeLock.unlock();
         }
-        coalesce();
     }
 
     /**
      * Sets all of the bits in this BitSet to {@code false}.
      */
     public void clear() {
-        synchronized (bitsets) {
-            bitsets.clear();
+        writeLock.lock();
+        try {
+            starts = new long[INITIAL_CAPACITY];
+            ends = new long[INITIAL_CAPACITY];
+            size = 0;
+            gap = 0;
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -291,50 +234,30 @@ public class RLEBitSet {
      */
     public void clear(long from, long to) {
         checkRange(from, to);
-        RLE newbits = new RLE(from, to - from);
-        List<RLE> newranges = new ArrayList<>();
-        synchronized (bitsets) {
-            for (RLE bs : bitsets) {
-                if (bs.intersects(newbits)) {
-                    // preserve the bits that are not being cleared
-                    long len = newbits.firstBit() - bs.firstBit();
-                    if (len > 0) {
-                        newranges.add(new RLE(bs.firstBit(), len));
-                    }
-                    len = bs.lastBit() - newbits.lastBit();
-                    if (len > 0) {
-                        newranges.add(new RLE(newbits.lastBit() + 1, len));
-                    }
-                    bs.nbits = 0;
-                }
+        if (from == to) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            // Runs i .. j-1 overlap the cleared bits
+            int ix = indexOfEndAfter(from);
+            int jx = indexOfStartAfter(to - 1);
+            if (ix == jx) {
+                return;
             }
-            if (!newranges.isEmpty()) {
-                for (RLE bs : newranges) {
-                    bitsets.add(bs);
-                }
+            // preserve the bits that are not being cleared
+            long headStart = start(ix);
+            long tailEnd = end(jx - 1);
+            int keep = ((headStart < from) ? 1 : 0) + ((tailEnd > to) ? 1 : 0);
+            splice(ix, jx, keep);
+            if (headStart < from) {
+                put(ix++, headStart, from);
             }
-        }
-        coalesce();
-    }
-
-    /**
-     * Combine abutting RLEBitSets, and remove 0 length RLEBitSets.
-     */
-    private void coalesce() {
-        RLE last = null;
-        synchronized (bitsets) {
-            Iterator<RLE> iter = bitsets.iterator();
-            while (iter.hasNext()) {
-                RLE bs = iter.next();
-                if (last != null && (last.lastBit() + 1 == bs.firstBit())) {
-                    last.nbits += bs.nbits;
-                    iter.remove();
-                } else if (bs.nbits == 0) {
-                    iter.remove();
-                } else {
-                    last = bs;
-                }
+            if (tailEnd > to) {
+                put(ix, to, tailEnd);
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -362,14 +285,29 @@ public class RLEBitSet {
      * @param set a {@code RLEBitSet}
      */
     public void and(RLEBitSet set) {
-        long last = 0;
-        synchronized (set.bitsets) {
-            for (RLE bs : set.bitsets) {
-                clear(last, bs.start);
-                last = bs.start + bs.nbits;
+        long[] other = set.toArray();
+        writeLock.lock();
+        try {
+            long[] rv = new long[2 * Math.min(size, other.length / 2) + 2];
+            int count = 0;
+            int ix = 0;
+            int ox = 0;
+            while (ix < size && ox < other.length) {
+                long from = Math.max(start(ix), other[ox]);
+                long to = Math.min(end(ix), other[ox + 1]);
+                if (from < to) {
+                    rv = append(rv, count++, from, to);
+                }
+                if (end(ix) < other[ox + 1]) {
+                    ix++;
+                } else {
+                    ox += 2;
+                }
             }
+            replaceAll(rv, count);
+        } finally {
+            writeLock.unlock();
         }
-        clear(last, Long.MAX_VALUE);
     }
 
     /**
@@ -379,10 +317,32 @@ public class RLEBitSet {
      * @param set the {@code RLEBitSet} with which to mask this {@code RLEBitSet}
      */
     public void andNot(RLEBitSet set) {
-        synchronized (set.bitsets) {
-            for (RLE bs : set.bitsets) {
-                clear(bs.start, bs.start + bs.nbits);
+        long[] other = set.toArray();
+        writeLock.lock();
+        try {
+            long[] rv = new long[2 * size + 2];
+            int count = 0;
+            int ox = 0;
+            for (int ix = 0; ix < size; ix++) {
+                long from = start(ix);
+                long to = end(ix);
+                while (ox < other.length && other[ox + 1] <= from) {
+                    ox += 2;
+                }
+                // Cut out every masking run that overlaps this run
+                for (int mx = ox; mx < other.length && other[mx] < to; mx += 2) {
+                    if (other[mx] > from) {
+                        rv = append(rv, count++, from, other[mx]);
+                    }
+                    from = Math.max(from, other[mx + 1]);
+                }
+                if (from < to) {
+                    rv = append(rv, count++, from, to);
+                }
             }
+            replaceAll(rv, count);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -393,7 +353,12 @@ public class RLEBitSet {
      * @return boolean indicating whether this {@code BitSet} is empty
      */
     public boolean isEmpty() {
-        return bitsets.isEmpty();
+        readLock.lock();
+        try {
+            return size == 0;
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -403,10 +368,13 @@ public class RLEBitSet {
      */
     public int cardinality() {
         int trueCount = 0;
-        synchronized (bitsets) {
-            for (RLE bs : bitsets) {
-                trueCount += bs.cardinality();
+        readLock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                trueCount += (int) (end(i) - start(i));
             }
+        } finally {
+            readLock.unlock();
         }
         return trueCount;
     }
@@ -419,11 +387,8 @@ public class RLEBitSet {
      */
     public Object clone() {
         RLEBitSet rv = new RLEBitSet();
-        synchronized (bitsets) {
-            for (RLE bs : bitsets) {
-                rv.bitsets.add(new RLE(bs.start, bs.nbits));
-            }
-        }
+        long[] runs = toArray();
+        rv.replaceAll(runs, runs.length / 2);
         return rv;
     }
 
@@ -440,40 +405,54 @@ public class RLEBitSet {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         String prefix = "";
-        synchronized (bitsets) {
-            for (RLE bs : bitsets) {
+        readLock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
                 sb.append(prefix);
                 prefix = ",";
-                long bit1 = bs.firstBit();
-                long bit2 = bs.lastBit();
+                long bit1 = start(i);
+                long bit2 = end(i) - 1;
                 sb.append(bit1);
                 if (bit1 != bit2) {
                     sb.append('-').append(bit2);
                 }
             }
+        } finally {
+            readLock.unlock();
         }
         return sb.toString();
     }
 
     /**
      * Return an Iterator which provides pairs of {@code Long}s representing the beginning and
-     * ending index of a range of set bits in this {@code RLEBitSet}.
+     * ending index of a range of set bits in this {@code RLEBitSet}.  The iterator does not hold
+     * the lock between calls; it finds each range after the previous one as it goes, so changes
+     * made while iterating do not cause an exception.
      *
      * @return the Iterator
      */
     public Iterator<Long[]> getRangeIterator() {
         return new Iterator<Long[]>() {
-            private Iterator<RLE> iterator = bitsets.iterator();
+            private long nextBit = 0;
+            private Long[] peek;
 
             @Override
             public boolean hasNext() {
-                return iterator.hasNext();
+                if (peek == null) {
+                    peek = rangeFrom(nextBit);
+                }
+                return peek != null;
             }
 
             @Override
             public Long[] next() {
-                RLE bs = iterator.next();
-                return new Long[]{bs.firstBit(), bs.lastBit()};
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Long[] rv = peek;
+                peek = null;
+                nextBit = rv[1] + 1;
+                return rv;
             }
 
             @Override
@@ -482,4 +461,150 @@ public class RLEBitSet {
             }
         };
     }
+
+    /**
+     * Find the first range of set bits at or after a bit.
+     */
+    private Long[] rangeFrom(long bit) {
+        readLock.lock();
+        try {
+            int ix = indexOfEndAfter(bit);
+            return (ix < size) ? new Long[]{Math.max(start(ix), bit), end(ix) - 1} : null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Copy the runs into one array of (first bit, bit after the last bit) pairs.
+     */
+    private long[] toArray() {
+        readLock.lock();
+        try {
+            long[] rv = new long[2 * size];
+            for (int i = 0; i < size; i++) {
+                rv[2 * i] = start(i);
+                rv[2 * i + 1] = end(i);
+            }
+            return rv;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static long[] append(long[] runs, int count, long from, long to) {
+        if (2 * count + 2 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[2 * count] = from;
+        runs[2 * count + 1] = to;
+        return runs;
+    }
+
+    /**
+     * Replace all the runs with the first count pairs in an array built by {@link #toArray()} or
+     * {@link #append}.  The caller holds the write lock, or owns this set.
+     */
+    private void replaceAll(long[] runs, int count) {
+        int capacity = Math.max(INITIAL_CAPACITY, count + count / 8);
+        starts = new long[capacity];
+        ends = new long[capacity];
+        for (int i = 0; i < count; i++) {
+            starts[i] = runs[2 * i];
+            ends[i] = runs[2 * i + 1];
+        }
+        size = count;
+        gap = count;
+    }
+
+    private int physical(int ix) {
+        return (ix < gap) ? ix : ix + starts.length - size;
+    }
+
+    private long start(int ix) {
+        return starts[physical(ix)];
+    }
+
+    private long end(int ix) {
+        return ends[physical(ix)];
+    }
+
+    private void put(int ix, long from, long to) {
+        int px = physical(ix);
+        starts[px] = from;
+        ends[px] = to;
+    }
+
+    /**
+     * Find the first run which ends after a bit, i.e. the first run containing the bit or starting
+     * after it.  Returns size if there is none.
+     */
+    private int indexOfEndAfter(long bit) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (end(mid) > bit) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Find the first run which starts after a bit.  Returns size if there is none.
+     */
+    private int indexOfStartAfter(long bit) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start(mid) > bit) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Replace runs from .. to-1 with count unset runs, to be filled in with {@link #put}.  The gap is
+     * moved here first, so a run of changes in one part of the set only moves the runs between them.
+     */
+    private void splice(int from, int to, int count) {
+        if (to - from == count) {
+            return;
+        }
+        moveGap(to);
+        gap = from;
+        size -= to - from;
+        int free = starts.length - size;
+        if (free < count) {
+            int capacity = Math.max(starts.length * 2, size + count);
+            int tail = size - gap;
+            long[] ns = Arrays.copyOf(starts, capacity);
+            long[] ne = Arrays.copyOf(ends, capacity);
+            System.arraycopy(starts, starts.length - tail, ns, capacity - tail, tail);
+            System.arraycopy(ends, ends.length - tail, ne, capacity - tail, tail);
+            starts = ns;
+            ends = ne;
+        }
+        gap += count;
+        size += count;
+    }
+
+    private void moveGap(int to) {
+        int free = starts.length - size;
+        if (to < gap) {
+            System.arraycopy(starts, to, starts, to + free, gap - to);
+            System.arraycopy(ends, to, ends, to + free, gap - to);
+        } else if (to > gap) {
+            System.arraycopy(starts, gap + free, starts, gap, to - gap);
+            System.arraycopy(ends, gap + free, ends, gap, to - gap);
+        }
+        gap = to;
+    }
 }
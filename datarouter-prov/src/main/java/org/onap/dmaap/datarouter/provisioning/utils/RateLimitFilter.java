@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import com.att.eelf.configuration.EELFLogger;
+import com.att.eelf.configuration.EELFManager;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.onap.dmaap.datarouter.provisioning.BaseServlet;
+import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
+
+/**
+ * This filter limits the rate of requests to the provisioning REST API, per identity (the
+ * <i>X-DMAAP-DR-ON-BEHALF-OF</i> header, or the remote address if there is none) and per class of endpoint,
+ * so that one client cannot use up the server's threads and DB connections.
+ * The endpoint classes are:
+ * <table>
+ * <tr><td>log</td><td>/feedlog and /sublog</td></tr>
+ * <tr><td>stats</td><td>/statistics</td></tr>
+ * <tr><td>prov</td><td>everything else, except /publish (see {@link ThrottleFilter}) and /internal</td></tr>
+ * </table>
+ *
+ * <p>It is configured via the provisioning parameter API_RATE_LIMITS, which can have these values:
+ * <table>
+ * <tr><td>(no value)</td><td>filter disabled</td></tr>
+ * <tr><td>off</td><td>filter disabled</td></tr>
+ * <tr><td>on</td><td>the default limits: <code>prov=20/40|log=2/10|stats=1/5</code></td></tr>
+ * <tr><td>limit[|limit...]</td><td>each limit is <code>[identity:]class=R[/B]</code>, allowing R requests per second
+ * with bursts of up to B requests (B defaults to R, and is at least 1).  A limit with an identity applies only to that
+ * identity, and overrides the limit for its class.  An R of 0 means no limit.  Classes with no limit given keep the
+ * default.</td></tr>
+ * </table>
+ * Each (class, identity) has a token bucket.  As the identity header is chosen by the client, a request which has one
+ * also takes a token from the bucket of its (class, remote address), which by default allows ten times the class
+ * limit; a limit given for an address as the identity (<code>10.1.2.3:prov=R/B</code>) applies to it instead.  A
+ * request which finds a bucket empty gets a 429 response, with a Retry-After header giving the seconds until a token
+ * is available.  At most {@value #MAX_BUCKETS} buckets are kept; once there are that many, the requests of any new
+ * identity or address share one overflow bucket per class, which has the default limit for the class, until idle
+ * buckets are swept.  Requests from one newcomer can then use up the tokens of all the others, which is the price of
+ * bounding the memory used.  An identity or address with a limit of its own always gets a bucket of its own, as there
+ * can only be as many of those as are configured.
+ */
+public class RateLimitFilter extends TimerTask implements Filter {
+
+    public static final String LOG_CLASS = "log";
+    public static final String STATS_CLASS = "stats";
+    public static final String PROV_CLASS = "prov";
+    static final String DEFAULT_LIMITS = "prov=20/40|log=2/10|stats=1/5";
+    static final int MAX_BUCKETS = 10000;
+    private static final int ADDRESS_FACTOR = 10;
+    private static final String ADDRESS_KEY = "@";
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static EELFLogger logger = EELFManager.getInstance().getLogger("InternalLog");
+    private static volatile Map<String, Limit> limits = Collections.emptyMap();   // empty when disabled
+    private static final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicLong> rejections = new ConcurrentHashMap<>();
+    private static final AtomicLong lastSweep = new AtomicLong();
+    private static boolean configured;          // guarded by the class
+    private static String configuredValue;      // guarded by the class
+    private static final Timer rolex = new Timer(true);
+
+    @Override
+    public void init(FilterConfig arg0) throws ServletException {
+        configure();
+        rolex.scheduleAtFixedRate(this, 5 * 60000L, 5 * 60000L);    // Run once every 5 minutes to clean buckets
+    }
+
+    /**
+     * Configure the rate limits.  This should be called from BaseServlet.provisioningParametersChanged(),
+     * to make sure they stay up to date.  Nothing is done unless the value of API_RATE_LIMITS has changed, so the
+     * buckets survive changes to other parameters.
+     */
+    public static synchronized void configure() {
+        Parameters param = Parameters.getParameter(Parameters.API_RATE_LIMITS);
+        String val = (param != null) ? param.getValue() : null;
+        if (configured && Objects.equals(val, configuredValue)) {
+            return;
+        }
+        configured = true;
+        configuredValue = val;
+        Map<String, Limit> map = new HashMap<>();
+        if (val != null && !"off".equals(val.trim()) && !val.trim().isEmpty()) {
+            parseLimits(DEFAULT_LIMITS, map);
+            if (!"on".equals(val.trim())) {
+                parseLimits(val, map);
+            }
+            for (String cls : new String[]{LOG_CLASS, STATS_CLASS, PROV_CLASS}) {
+                Limit limit = map.get(cls);
+                map.put(ADDRESS_KEY + cls, new Limit(limit.rate * ADDRESS_FACTOR, limit.burst * ADDRESS_FACTOR));
+            }
+        }
+        buckets.clear();
+        limits = map;
+        if (map.isEmpty()) {
+            logger.info("RateLimitFilter is DISABLED for API requests.");
+        } else {
+            logger.info("RateLimitFilter is ENABLED for API requests; limits=" + map);
+        }
+    }
+
+    private static void parseLimits(String val, Map<String, Limit> map) {
+        for (String entry : val.split("\\|")) {
+            String[] pp = entry.trim().split("=");
+            int ix = pp[0].lastIndexOf(':');
+            String cls = pp[0].substring(ix + 1).trim();
+            if (pp.length != 2 || !(LOG_CLASS.equals(cls) || STATS_CLASS.equals(cls) || PROV_CLASS.equals(cls))) {
+                logger.warn("RateLimitFilter: ignoring bad limit " + entry);
+                continue;
+            }
+            String key = (ix < 0) ? cls : pp[0].substring(0, ix).trim() + ":" + cls;
+            try {
+                String[] rb = pp[1].split("/");
+                double rate = Double.parseDouble(rb[0].trim());
+                double burst = (rb.length > 1) ? Double.parseDouble(rb[1].trim()) : rate;
+                map.put(key, new Limit(rate, Math.max(burst, 1.0)));
+            } catch (NumberFormatException e) {
+                logger.warn("RateLimitFilter: ignoring bad limit " + entry);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        rolex.cancel();
+        buckets.clear();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        Map<String, Limit> map = limits;
+        if (!map.isEmpty()) {
+            HttpServletRequest req = (HttpServletRequest) request;
+            String cls = getEndpointClass(req);
+            if (cls != null) {
+                String addr = req.getRemoteAddr();
+                String id = req.getHeader(BaseServlet.BEHALF_HEADER);
+                if (id == null) {
+                    id = addr;
+                }
+                long now = System.currentTimeMillis();
+                long wait = take(cls + "/" + id, cls + "/*", map.get(id + ":" + cls), map.get(cls), now);
+                if (wait == 0 && !id.equals(addr)) {
+                    // The identity is chosen by the client, so its address is limited too
+                    wait = take(cls + ADDRESS_KEY + addr, cls + ADDRESS_KEY + "*", map.get(addr + ":" + cls),
+                        map.get(ADDRESS_KEY + cls), now);
+                }
+                if (wait > 0) {
+                    reject(cls, id, wait, (HttpServletResponse) response);
+                    return;
+                }
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Take a token from a bucket, creating the bucket if need be.  If there are too many buckets already, and the
+     * bucket has no limit of its own, the overflow bucket is used instead.
+     *
+     * @param override the limit for this identity, or null if it has none
+     * @param dflt the default limit, which the overflow bucket always has
+     * @return 0 if a token was taken (or there is no limit), otherwise the ms until one is available
+     */
+    private static long take(String key, String overflowKey, Limit override, Limit dflt, long now) {
+        Limit limit = (override != null) ? override : dflt;
+        if (limit == null || limit.rate <= 0) {
+            return 0;
+        }
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (override == null && buckets.size() >= MAX_BUCKETS) {
+                long last = lastSweep.get();
+                if (now - last >= 1000 && lastSweep.compareAndSet(last, now)) {
+                    sweep(now);
+                }
+            }
+            String actual = (override != null || buckets.size() < MAX_BUCKETS) ? key : overflowKey;
+            bucket = buckets.computeIfAbsent(actual, k -> new Bucket(limit));
+        }
+        return bucket.take(now);
+    }
+
+    /**
+     * Forget the buckets which have filled up again.
+     */
+    private static void sweep(long now) {
+        for (String s : buckets.keySet()) {
+            buckets.computeIfPresent(s, (key, bucket) -> bucket.isFull(now) ? null : bucket);
+        }
+    }
+
+    private void reject(String cls, String id, long wait, HttpServletResponse resp) throws IOException {
+        rejections.computeIfAbsent(cls, key -> new AtomicLong()).incrementAndGet();
+        logger.debug("RateLimitFilter: rejecting " + cls + " request from " + id);
+        resp.setHeader("Retry-After", Long.toString(Math.max((wait + 999) / 1000, 1)));
+        resp.sendError(SC_TOO_MANY_REQUESTS, "Too many requests; try again later.");
+    }
+
+    /**
+     * Get the class of endpoint of a request.
+     *
+     * @param req the request
+     * @return the endpoint class, or null if requests to the endpoint are not limited
+     */
+    static String getEndpointClass(HttpServletRequest req) {
+        String path = req.getRequestURI();
+        if (path == null || path.startsWith("/publish") || path.startsWith("/internal")) {
+            return null;
+        }
+        if (path.startsWith("/feedlog") || path.startsWith("/sublog")) {
+            return LOG_CLASS;
+        }
+        if (path.startsWith("/statistics")) {
+            return STATS_CLASS;
+        }
+        return PROV_CLASS;
+    }
+
+    /**
+     * Get the number of requests to a class of endpoints which have been rejected.
+     *
+     * @param cls the endpoint class
+     * @return the number of requests
+     */
+    public static long getRejectedCount(String cls) {
+        AtomicLong count = rejections.get(cls);
+        return (count != null) ? count.get() : 0;
+    }
+
+    @Override
+    public void run() {
+        // Once every 5 minutes, forget the buckets which have filled up again
+        sweep(System.currentTimeMillis());
+        if (!rejections.isEmpty()) {
+            logger.info("RateLimitFilter: rejected " + rejections);
+        }
+    }
+
+    private static class Limit {
+
+        private final double rate;      // tokens per second
+        private final double burst;     // size of the bucket
+
+        Limit(double rate, double burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+
+        @Override
+        public String toString() {
+            return rate + "/" + burst;
+        }
+    }
+
+    /**
+     * A token bucket.  Each is locked on its own, so requests from different identities do not contend.
+     */
+    private static class Bucket {
+
+        private final Limit limit;
+        private double tokens;
+        private long last;
+
+        Bucket(Limit limit) {
+            this.limit = limit;
+            this.tokens = limit.burst;
+            this.last = System.currentTimeMillis();
+        }
+
+        private void refill(long now) {
+            if (now > last) {
+                tokens = Math.min(limit.burst, tokens + (now - last) * limit.rate / 1000.0);
+                last = now;
+            }
+        }
+
+        /**
+         * Take a token from the bucket.
+         *
+         * @return 0 if a token was taken, otherwise the ms until one is available
+         */
+        synchronized long take(long now) {
+            refill(now);
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return 0;
+            }
+            return Math.max((long) Math.ceil((1.0 - tokens) * 1000.0 / limit.rate), 1);
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= limit.burst;
+        }
+    }
+}
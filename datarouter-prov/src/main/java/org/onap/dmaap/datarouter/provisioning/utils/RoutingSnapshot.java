@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.onap.dmaap.datarouter.provisioning.beans.IngressRoute;
+
+/**
+ * An immutable, pre-parsed view of the parts of the provisioning data needed to redirect publish requests: the set of
+ * valid feed IDs and the Ingress Route Table.  A new snapshot is built by {@link Poker} each time the provisioning
+ * string is regenerated, and swapped in as a whole, so the /publish path never has to parse JSON.
+ *
+ * <p>The IRT is also compiled into per-feed route arrays, indexed in parallel with the sorted feed IDs, so a lookup
+ * only examines the routes for the requested feed.
+ */
+public class RoutingSnapshot {
+
+    private static final RoutingSnapshot EMPTY =
+        new RoutingSnapshot(new int[0], new IngressRoute[0][], Collections.emptyList());
+
+    private final int[] feedIds;
+    private final IngressRoute[][] routesByFeed;
+    private final List<IngressRoute> ingressRoutes;
+
+    private RoutingSnapshot(int[] feedIds, IngressRoute[][] routesByFeed, List<IngressRoute> ingressRoutes) {
+        this.feedIds = feedIds;
+        this.routesByFeed = routesByFeed;
+        this.ingressRoutes = ingressRoutes;
+    }
+
+    /**
+     * Get a snapshot containing no feeds and no routes.
+     *
+     * @return the empty snapshot
+     */
+    public static RoutingSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build a snapshot from a parsed provisioning document, as served by /internal/prov.
+     *
+     * @param jo the provisioning document
+     * @return the snapshot
+     */
+    public static RoutingSnapshot fromJSON(JSONObject jo) {
+        JSONArray feeds = jo.getJSONArray("feeds");
+        int[] ids = new int[feeds.length()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = feeds.getJSONObject(i).getInt("feedid");
+        }
+        JSONArray ja = jo.getJSONArray("ingress");
+        List<IngressRoute> routes = new ArrayList<>(ja.length());
+        for (int i = 0; i < ja.length(); i++) {
+            routes.add(new IngressRoute(ja.getJSONObject(i)));
+        }
+        return build(ids, routes);
+    }
+
+    /**
+     * Build a snapshot from a set of feed IDs and the Ingress Route Table.
+     *
+     * @param feedIds the IDs of all feeds in the provisioning data, in any order
+     * @param ingressRoutes the IRT, in order
+     * @return the snapshot
+     */
+    public static RoutingSnapshot build(int[] feedIds, List<IngressRoute> ingressRoutes) {
+        int[] ids = feedIds.clone();
+        Arrays.sort(ids);
+        List<IngressRoute> routes = new ArrayList<>(ingressRoutes);
+        List<List<IngressRoute>> grouped = new ArrayList<>(Collections.nCopies(ids.length, null));
+        for (IngressRoute route : routes) {
+            // Routes for feeds that no longer exist can never be used, since checkPath rejects those feeds
+            int ix = Arrays.binarySearch(ids, route.getFeedid());
+            if (ix >= 0) {
+                if (grouped.get(ix) == null) {
+                    grouped.set(ix, new ArrayList<>());
+                }
+                grouped.get(ix).add(route);
+            }
+        }
+        IngressRoute[][] byFeed = new IngressRoute[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            List<IngressRoute> list = grouped.get(i);
+            if (list != null) {
+                byFeed[i] = list.toArray(new IngressRoute[0]);
+            }
+        }
+        return new RoutingSnapshot(ids, byFeed, Collections.unmodifiableList(routes));
+    }
+
+    /**
+     * Is there a feed with this ID in the provisioning data?
+     *
+     * @param feedid the feed ID
+     * @return true if the feed exists
+     */
+    public boolean isValidFeed(int feedid) {
+        return Arrays.binarySearch(feedIds, feedid) >= 0;
+    }
+
+    /**
+     * Find the first route in the IRT which matches a publish request.  The user and requester's address are extracted
+     * from the request at most once, no matter how many routes the feed has.
+     *
+     * @param feedid the feed ID from the request path
+     * @param req the request
+     * @return the matching route, or null if no route matches
+     */
+    public IngressRoute getIngressRoute(int feedid, HttpServletRequest req) {
+        int ix = Arrays.binarySearch(feedIds, feedid);
+        IngressRoute[] routes = (ix < 0) ? null : routesByFeed[ix];
+        if (routes == null) {
+            return null;
+        }
+        String user = IngressRoute.getUser(req);
+        byte[] addr = IngressRoute.getRemoteAddress(req);
+        for (IngressRoute route : routes) {
+            if (route.matches(user, addr)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the Ingress Route Table, in the order the routes appear in the provisioning data.
+     *
+     * @return an unmodifiable list of routes
+     */
+    public List<IngressRoute> getIngressRoutes() {
+        return ingressRoutes;
+    }
+}
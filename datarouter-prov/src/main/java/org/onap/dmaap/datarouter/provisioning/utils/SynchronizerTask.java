@@ -506,6 +506,9 @@ public class SynchronizerTask extends TimerTask {
         }
         boolean changes = newobj.doUpdate(conn);
         checkChangeOwner(newobj, oldobj);
+        if (changes) {
+            Poker.getPoker().entityChanged(newobj);
+        }
 
         return changes;
     }
@@ -514,14 +517,22 @@ public class SynchronizerTask extends TimerTask {
         if (logger.isDebugEnabled()) {
             logger.debug("  Deleting record: " + oldobj);
         }
-        return oldobj.doDelete(conn);
+        boolean changes = oldobj.doDelete(conn);
+        if (changes) {
+            Poker.getPoker().entityChanged(oldobj);
+        }
+        return changes;
     }
 
     private boolean insertRecord(Connection conn, Syncable newobj) {
         if (logger.isDebugEnabled()) {
             logger.debug("  Inserting record: " + newobj);
         }
-        return newobj.doInsert(conn);
+        boolean changes = newobj.doInsert(conn);
+        if (changes) {
+            Poker.getPoker().entityChanged(newobj);
+        }
+        return changes;
     }
 
     private Map<String, Syncable> getMap(Collection<? extends Syncable> coll) {
@@ -545,7 +556,9 @@ public class SynchronizerTask extends TimerTask {
                 logger.info("PROV5013 -  Previous publisher: "
                                     + oldfeed.getPublisher() + ": New publisher-" + newfeed.getPublisher());
                 oldfeed.setPublisher(newfeed.getPublisher());
-                oldfeed.changeOwnerShip();
+                if (oldfeed.changeOwnerShip()) {
+                    Poker.getPoker().entityChanged(oldfeed);
+                }
             }
         } else if (newobj instanceof Subscription) {
             Subscription oldsub = (Subscription) oldobj;
@@ -555,7 +568,9 @@ public class SynchronizerTask extends TimerTask {
                 logger.info("PROV5013 -  Previous subscriber: "
                                     + oldsub.getSubscriber() + ": New subscriber-" + newsub.getSubscriber());
                 oldsub.setSubscriber(newsub.getSubscriber());
-                oldsub.changeOwnerShip();
+                if (oldsub.changeOwnerShip()) {
+                    Poker.getPoker().entityChanged(oldsub);
+                }
             }
         }
 
@@ -673,6 +688,7 @@ public class SynchronizerTask extends TimerTask {
             Path donepath = Paths.get(spooldir, "IN." + spoolname);
             Files.copy(entity.getContent(), Paths.get(spooldir, spoolname), StandardCopyOption.REPLACE_EXISTING);
             Files.move(tmppath, donepath, StandardCopyOption.REPLACE_EXISTING);
+            LogfileLoader.getLoader().fileSpooled(donepath.toFile());
             logger.info("Approximately " + bs.cardinality() + " records replicated.");
         } catch (Exception e) {
             logger.warn("PROV5012: replicateDataRouterLogs failed, exception: " + e);
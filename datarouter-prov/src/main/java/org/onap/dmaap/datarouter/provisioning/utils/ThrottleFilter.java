@@ -27,13 +27,17 @@ package org.onap.dmaap.datarouter.provisioning.utils;
 import com.att.eelf.configuration.EELFLogger;
 import com.att.eelf.configuration.EELFManager;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -42,8 +46,6 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.eclipse.jetty.continuation.Continuation;
-import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.server.HttpConnection;
 import org.eclipse.jetty.server.Request;
 import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
@@ -55,10 +57,14 @@ import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
  * <table>
  * <tr><td>(no value)</td><td>filter disabled</td></tr>
  * <tr><td>off</td><td>filter disabled</td></tr>
- * <tr><td>N[,M[,action]]</td><td>set N, M, and action (used in the algorithm below).
+ * <tr><td>N[,M[,action[,R[,Q[,T]]]]]</td><td>set N, M, and action (used in the algorithm below).
  * Action is <i>drop</i> or <i>throttle</i>.
  * If M is missing, it defaults to 5 minutes.
  * If the action is missing, it defaults to <i>drop</i>.
+ * R, Q and T are only used by <i>throttle</i>: R requests per second are released for each connection,
+ * at most Q requests may be waiting for each connection, and a request waits at most T seconds.
+ * They default to 1, 100 and 60.  Q is capped at R&times;T, since a request queued any deeper could not be
+ * released before it timed out.
  * </td></tr>
  * </table>
  *
@@ -76,10 +82,10 @@ import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
  * The action that can be performed (if triggered) are:
  * <ol>
  * <li><i>drop</i> - the connection is dropped immediately.</li>
- * <li><i>throttle</i> - [not supported] the connection is put into a low priority queue
- * with all other throttled connections.
- * These are then processed at a slower rate.  Note: this option does not work correctly, and is disabled.
- * The only action that is supported is <i>drop</i>.
+ * <li><i>throttle</i> - the request is suspended (using Servlet 3 async) and put into a FIFO queue for its
+ * connection, and the queued requests of each connection are released at R per second.
+ * A request that finds its queue full, or that is still queued after T seconds,
+ * gets a 503 response with a Retry-After header, rather than having its connection dropped.
  * </li>
  * </ol>
  *
@@ -95,17 +101,31 @@ public class ThrottleFilter extends TimerTask implements Filter {
     private static final long ONE_MINUTE = 60000L;
     private static final int ACTION_DROP = 0;
     private static final int ACTION_THROTTLE = 1;
+    private static final int DEFAULT_RATE = 1;
+    private static final int DEFAULT_QUEUE = 100;
+    private static final int DEFAULT_TIMEOUT = 60;
 
     // Configuration
     private static boolean enabled = false;        // enabled or not
     private static int numRequests = 0;            // number of requests in M minutes
     private static int samplingPeriod = 0;            // sampling period
     private static int action = ACTION_DROP;    // action to take (throttle or drop)
+    private static int releaseRate = DEFAULT_RATE;      // throttled requests released per second, per connection
+    private static int queueLimit = DEFAULT_QUEUE;      // throttled requests queued per connection
+    private static int queueTimeout = DEFAULT_TIMEOUT;  // seconds a throttled request may wait
 
     private static EELFLogger logger = EELFManager.getInstance().getLogger("InternalLog");
-    private static Map<String, Counter> map = new HashMap<>();
-    private Map<String, List<Continuation>> suspendedRequests = new HashMap<>();
+    private static ConcurrentMap<String, Counter> map = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, BlockingQueue<AsyncContext>> parked = new ConcurrentHashMap<>();
     private static final Timer rolex = new Timer();
+    private static TimerTask releaser;
+    private static long releasePeriod;
+
+    // Metrics
+    private static final AtomicLong throttled = new AtomicLong();
+    private static final AtomicLong released = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong timedOut = new AtomicLong();
 
     @Override
     public void init(FilterConfig arg0) throws ServletException {
@@ -126,19 +146,29 @@ public class ThrottleFilter extends TimerTask implements Filter {
                 if (val != null && !"off".equals(val)) {
                     String[] pp = val.split(",");
                     if (pp != null) {
+                        int oldRequests = numRequests;
                         numRequests = (pp.length > 0) ? getInt(pp[0], DEFAULT_N) : DEFAULT_N;
+                        if (numRequests != oldRequests) {
+                            map.clear();    // the counters are sized for the old N
+                        }
                         samplingPeriod = (pp.length > 1) ? getInt(pp[1], DEFAULT_M) : DEFAULT_M;
                         action = (pp.length > 2 && pp[2] != null
                                           && "throttle".equalsIgnoreCase(pp[2])) ? ACTION_THROTTLE : ACTION_DROP;
+                        releaseRate = Math.max((pp.length > 3) ? getInt(pp[3], DEFAULT_RATE) : DEFAULT_RATE, 1);
+                        queueLimit = Math.max((pp.length > 4) ? getInt(pp[4], DEFAULT_QUEUE) : DEFAULT_QUEUE, 1);
+                        queueTimeout = Math.max((pp.length > 5) ? getInt(pp[5], DEFAULT_TIMEOUT) : DEFAULT_TIMEOUT, 1);
+                        // a queue deeper than R x T cannot drain before the requests at its tail time out
+                        queueLimit = (int) Math.min(queueLimit, (long) releaseRate * queueTimeout);
                         enabled = true;
-                        // ACTION_THROTTLE is not currently working, so is not supported
                         if (action == ACTION_THROTTLE) {
-                            action = ACTION_DROP;
-                            logger.info("Throttling is not currently supported; action changed to DROP");
+                            scheduleReleaser(Math.max(1000L / releaseRate, 1L));
+                        } else {
+                            scheduleReleaser(0);
                         }
                         logger.info("ThrottleFilter is ENABLED for /publish requests; N="
                                             + numRequests + ", M=" + samplingPeriod
-                            + ", Action=" + action);
+                            + ", Action=" + action + ", R=" + releaseRate + ", Q=" + queueLimit
+                            + ", T=" + queueTimeout);
                         return;
                     }
                 }
@@ -149,6 +179,39 @@ public class ThrottleFilter extends TimerTask implements Filter {
         logger.info("ThrottleFilter is DISABLED for /publish requests.");
         enabled = false;
         map.clear();
+        scheduleReleaser(0);
+    }
+
+    /**
+     * (Re)start the task which releases throttled requests, if its period has changed.  A period of 0 stops the task,
+     * and releases any requests which are still queued.
+     */
+    private static synchronized void scheduleReleaser(long period) {
+        if (period == releasePeriod && (period == 0 || releaser != null)) {
+            return;
+        }
+        if (releaser != null) {
+            releaser.cancel();
+            releaser = null;
+        }
+        releasePeriod = period;
+        if (period == 0) {
+            while (!parked.isEmpty()) {
+                releaseParked();
+            }
+            return;
+        }
+        releaser = new TimerTask() {
+            @Override
+            public void run() {
+                releaseParked();
+            }
+        };
+        try {
+            rolex.scheduleAtFixedRate(releaser, period, period);
+        } catch (IllegalStateException e) {
+            logger.warn("ThrottleFilter: cannot schedule the release of throttled requests: " + e.getMessage(), e);
+        }
     }
 
     private static int getInt(String str, int deflt) {
@@ -163,6 +226,9 @@ public class ThrottleFilter extends TimerTask implements Filter {
     public void destroy() {
         rolex.cancel();
         map.clear();
+        while (!parked.isEmpty()) {
+            releaseParked();
+        }
     }
 
     @Override
@@ -189,70 +255,172 @@ public class ThrottleFilter extends TimerTask implements Filter {
             throws IOException, ServletException {
         int rate = getRequestRate(request);
         if (rate >= numRequests) {
-            // drop request - only works under Jetty
-            String str = String.format("Dropping connection: %s %d bad connections in %d minutes",
-                    getConnectionId(request), rate,
-                samplingPeriod);
-            logger.info(str);
-            Request baseRequest = (request instanceof Request)
-                    ? (Request) request
-                    : HttpConnection.getCurrentConnection().getHttpChannel().getRequest();
-            baseRequest.getHttpChannel().getEndPoint().close();
+            dropConnection(request, rate);
         } else {
             chain.doFilter(request, response);
         }
     }
 
+    private void dropConnection(HttpServletRequest request, int rate) {
+        // drop request - only works under Jetty
+        String str = String.format("Dropping connection: %s %d bad connections in %d minutes",
+                getConnectionId(request), rate,
+            samplingPeriod);
+        logger.info(str);
+        Request baseRequest = (request instanceof Request)
+                ? (Request) request
+                : HttpConnection.getCurrentConnection().getHttpChannel().getRequest();
+        baseRequest.getHttpChannel().getEndPoint().close();
+    }
+
     private void throttleFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws IOException, ServletException {
-        // throttle request
-        String id = getConnectionId(request);
+        if (request.getAttribute(THROTTLE_MARKER) != null) {
+            // a throttled request which has been released
+            chain.doFilter(request, response);
+            return;
+        }
         int rate = getRequestRate(request);
-        Object results = request.getAttribute(THROTTLE_MARKER);
-        if (rate >= numRequests && results == null) {
+        if (rate < numRequests) {
+            chain.doFilter(request, response);
+        } else if (!request.isAsyncSupported()) {
+            dropConnection(request, rate);
+        } else {
+            // throttle request
+            String id = getConnectionId(request);
             String str = String.format("Throttling connection: %s %d bad connections in %d minutes",
-                getConnectionId(request), rate, samplingPeriod);
+                id, rate, samplingPeriod);
             logger.info(str);
-            Continuation continuation = ContinuationSupport.getContinuation(request);
-            continuation.suspend();
-            register(id, continuation);
-            continuation.undispatch();
-        } else {
-            chain.doFilter(request, response);
-            @SuppressWarnings("resource")
-            InputStream is = request.getInputStream();
-            byte[] bite = new byte[4096];
-            int num = is.read(bite);
-            while (num > 0) {
-                num = is.read(bite);
-            }
-            resume(id);
+            park(id, request.startAsync());
         }
     }
 
-    private void register(String id, Continuation continuation) {
-        synchronized (suspendedRequests) {
-            List<Continuation> list = suspendedRequests.get(id);
-            if (list == null) {
-                list = new ArrayList<>();
-                suspendedRequests.put(id, list);
+    /**
+     * Put a suspended request at the end of the queue for its connection.  If the queue is full, the request gets a
+     * 503 response at once.
+     */
+    private static void park(String id, AsyncContext ctx) {
+        ctx.setTimeout(queueTimeout * 1000L);
+        ctx.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                // not used
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                BlockingQueue<AsyncContext> queue = parked.get(id);
+                if (queue != null && queue.remove(ctx)) {
+                    timedOut.incrementAndGet();
+                    logger.info("Throttled request timed out: " + id);
+                    reject(ctx);
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                BlockingQueue<AsyncContext> queue = parked.get(id);
+                if (queue != null) {
+                    queue.remove(ctx);
+                }
             }
-            list.add(continuation);
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // not used
+            }
+        });
+        boolean[] queued = new boolean[1];
+        parked.compute(id, (key, queue) -> {
+            BlockingQueue<AsyncContext> q = (queue != null) ? queue : new LinkedBlockingQueue<>(queueLimit);
+            queued[0] = q.offer(ctx);
+            return q;
+        });
+        if (queued[0]) {
+            throttled.incrementAndGet();
+        } else {
+            rejected.incrementAndGet();
+            logger.info("Throttle queue is full: " + id);
+            reject(ctx);
         }
     }
 
-    private void resume(String id) {
-        synchronized (suspendedRequests) {
-            List<Continuation> list = suspendedRequests.get(id);
-            if (list != null) {
-                // when the waited for event happens
-                Continuation continuation = list.remove(0);
-                continuation.setAttribute(ThrottleFilter.THROTTLE_MARKER, new Object());
-                continuation.resume();
+    private static void reject(AsyncContext ctx) {
+        try {
+            HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+            resp.setHeader("Retry-After", Integer.toString(queueTimeout));
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many requests; try again later.");
+        } catch (IOException | IllegalStateException e) {
+            logger.info("Could not reject throttled request: " + e.getMessage());
+        } finally {
+            ctx.complete();
+        }
+    }
+
+    /**
+     * Release the request at the head of each connection's queue, and forget the queues which are empty.
+     */
+    static void releaseParked() {
+        for (Map.Entry<String, BlockingQueue<AsyncContext>> entry : parked.entrySet()) {
+            AsyncContext ctx = entry.getValue().poll();
+            if (ctx == null) {
+                parked.computeIfPresent(entry.getKey(), (key, queue) -> queue.isEmpty() ? null : queue);
+                continue;
+            }
+            try {
+                ctx.getRequest().setAttribute(THROTTLE_MARKER, Boolean.TRUE);
+                ctx.dispatch();
+                released.incrementAndGet();
+            } catch (IllegalStateException e) {
+                logger.info("Could not release throttled request: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Get the number of requests which are waiting in the throttle queues.
+     * @return the number of requests
+     */
+    public static int getParkedCount() {
+        int count = 0;
+        for (BlockingQueue<AsyncContext> queue : parked.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of requests which have been throttled.
+     * @return the number of requests
+     */
+    public static long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Get the number of throttled requests which have been released.
+     * @return the number of requests
+     */
+    public static long getReleasedCount() {
+        return released.get();
+    }
+
+    /**
+     * Get the number of requests which were rejected because their throttle queue was full.
+     * @return the number of requests
+     */
+    public static long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Get the number of throttled requests which timed out before they were released.
+     * @return the number of requests
+     */
+    public static long getTimedOutCount() {
+        return timedOut.get();
+    }
+
     /**
      * Return a count of number of requests in the last M minutes, iff this is a "bad" request.
      * If the request has been resumed (if it contains the THROTTLE_MARKER) it is considered good.
@@ -267,40 +435,56 @@ public class ThrottleFilter extends TimerTask implements Filter {
         }
 
         String key = getConnectionId(request);
-        synchronized (map) {
-            Counter cnt = map.get(key);
-            if (cnt == null) {
-                cnt = new Counter();
-                map.put(key, cnt);
-            }
-            return cnt.getRequestRate();
-        }
+        int[] rate = new int[1];
+        // record inside compute() so that run() cannot remove the counter between the lookup and the update
+        map.compute(key, (k, counter) -> {
+            Counter c = (counter != null) ? counter : new Counter(numRequests);
+            rate[0] = c.getRequestRate();
+            return c;
+        });
+        return rate[0];
     }
 
-    public class Counter {
-        private List<Long> times = new ArrayList<>();    // a record of request times
+    /**
+     * The times of the most recent requests for one connection ID, in a ring buffer.  Only the last N times are
+     * needed to tell whether N requests came in M minutes, so the buffer never holds more than N; the rate it
+     * returns is capped at N.  Each Counter is locked on its own, so requests for different IDs do not contend.
+     */
+    public static class Counter {
+        private final long[] times;     // a record of request times, oldest at head
+        private int head = 0;
+        private int size = 0;
+
+        public Counter(int capacity) {
+            times = new long[Math.max(capacity, 1)];
+        }
 
         /**
          * Method to prune request rate.
-         * @return times
+         * @return number of requests in the last M minutes (at most N)
          */
-        public int prune() {
-            try {
-                long num = System.currentTimeMillis() - (samplingPeriod * ONE_MINUTE);
-                long time = times.get(0);
-                while (time < num) {
-                    times.remove(0);
-                    time = times.get(0);
-                }
-            } catch (IndexOutOfBoundsException e) {
-                logger.trace("Exception: " + e.getMessage(), e);
+        public synchronized int prune() {
+            long num = System.currentTimeMillis() - (samplingPeriod * ONE_MINUTE);
+            while (size > 0 && times[head] < num) {
+                head = (head + 1) % times.length;
+                size--;
             }
-            return times.size();
+            return size;
         }
 
-        public int getRequestRate() {
-            times.add(System.currentTimeMillis());
-            return prune();
+        /**
+         * Record a request, and return the number of requests in the last M minutes (at most N).
+         * @return number of requests
+         */
+        public synchronized int getRequestRate() {
+            prune();
+            if (size == times.length) {
+                head = (head + 1) % times.length;
+                size--;
+            }
+            times[(head + size) % times.length] = System.currentTimeMillis();
+            size++;
+            return size;
         }
     }
 
@@ -331,13 +515,12 @@ public class ThrottleFilter extends TimerTask implements Filter {
     @Override
     public void run() {
         // Once every 5 minutes, go through the map, and remove empty entrys
-        for (Object s : map.keySet().toArray()) {
-            synchronized (map) {
-                Counter counter = map.get(s);
-                if (counter.prune() <= 0) {
-                    map.remove(s);
-                }
-            }
+        for (String s : map.keySet()) {
+            map.computeIfPresent(s, (key, counter) -> (counter.prune() <= 0) ? null : counter);
+        }
+        if (enabled && action == ACTION_THROTTLE) {
+            logger.info(String.format("ThrottleFilter: %d parked, %d throttled, %d released, %d rejected,"
+                + " %d timed out", getParkedCount(), throttled.get(), released.get(), rejected.get(), timedOut.get()));
         }
     }
 }
@@ -84,9 +84,32 @@ CREATE TABLE LOG_RECORDS (
 
     INDEX (FEEDID) USING BTREE,
     INDEX (DELIVERY_SUBID) USING BTREE,
-    INDEX (RECORD_ID) USING BTREE
+    INDEX (RECORD_ID) USING BTREE,
+    INDEX LOG_RECORDS_PUBLISH_ID (PUBLISH_ID) USING BTREE,
+    INDEX LOG_RECORDS_FEED_TIME (FEEDID, EVENT_TIME, RECORD_ID) USING BTREE,
+    INDEX LOG_RECORDS_SUB_TIME (DELIVERY_SUBID, EVENT_TIME, RECORD_ID) USING BTREE
 ) ENGINE = MyISAM;
 
+CREATE TABLE LOG_DAY_COUNTS (
+    EVENT_DAY      INT NOT NULL PRIMARY KEY,  /* day of EVENT_TIME, in days since the epoch */
+    RECORDS        BIGINT NOT NULL            /* number of LOG_RECORDS rows for that day */
+) ENGINE = InnoDB;
+
+CREATE TABLE LOG_STATS_HOURLY (
+    HOUR_START       BIGINT NOT NULL,         /* start of the hour, in ms since the epoch */
+    FEEDID           INT NOT NULL,
+    SUBID            INT NOT NULL,            /* 0 for the publish statistics of the feed */
+    FILES_PUBLISHED  BIGINT NOT NULL,
+    PUBLISH_LENGTH   BIGINT NOT NULL,
+    FILES_DELIVERED  BIGINT NOT NULL,
+    DELIVERED_LENGTH BIGINT NOT NULL,
+    DELAY_SUM        BIGINT NOT NULL,         /* sum of publish to delivery delays, in ms */
+    DELAY_COUNT      BIGINT NOT NULL,         /* number of deliveries in DELAY_SUM */
+    LAST_EVENT_TIME  BIGINT NOT NULL,
+    SUBSCRIBER_URL   VARCHAR(256),
+    PRIMARY KEY (FEEDID, SUBID, HOUR_START)
+) ENGINE = InnoDB;
+
 CREATE TABLE INGRESS_ROUTES (
     SEQUENCE  INT UNSIGNED NOT NULL,
     FEEDID    INT UNSIGNED NOT NULL,
@@ -20,6 +20,8 @@
 
 package org.onap.dmaap.datarouter.authz.impl;
 
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import javax.persistence.EntityManager;
@@ -130,4 +132,33 @@ public class ProvAuthTest {
         Assert.assertNull(authResp.getObligations());
     }
 
+    @Test
+    public void Validate_Prov_Auth_Caches_Feed_Owner_Until_Invalidated() {
+        when(statisticsServlet.getFeedOwner("7")).thenReturn("dr-admin");
+        when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn("dr-admin");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("http://the-request-uri:443/feed/7");
+        Assert.assertTrue(provAuthorizer.decide(request).isAuthorized());
+        Assert.assertTrue(provAuthorizer.decide(request).isAuthorized());
+        verify(statisticsServlet, times(1)).getFeedOwner("7");
+
+        when(statisticsServlet.getFeedOwner("7")).thenReturn("someone-else");
+        ProvAuthorizer.invalidateCache();
+        Assert.assertFalse(provAuthorizer.decide(request).isAuthorized());
+        verify(statisticsServlet, times(2)).getFeedOwner("7");
+    }
+
+    @Test
+    public void Validate_Prov_Auth_Caches_Per_Subject() {
+        when(statisticsServlet.getSubscriptionOwner("8")).thenReturn("dr-admin");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("http://the-request-uri:443/subs/8");
+        when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn("dr-admin");
+        Assert.assertTrue(provAuthorizer.decide(request).isAuthorized());
+        when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn("intruder");
+        Assert.assertFalse(provAuthorizer.decide(request).isAuthorized());
+        Assert.assertFalse(provAuthorizer.decide(request).isAuthorized());
+        verify(statisticsServlet, times(2)).getSubscriptionOwner("8");
+    }
+
 }
@@ -50,6 +50,7 @@ import org.onap.dmaap.datarouter.provisioning.beans.Feed;
 import org.onap.dmaap.datarouter.provisioning.beans.FeedAuthorization;
 import org.onap.dmaap.datarouter.provisioning.beans.Group;
 import org.onap.dmaap.datarouter.provisioning.beans.Subscription;
+import org.onap.dmaap.datarouter.provisioning.utils.AddressAcl;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -96,7 +97,8 @@ public class BaseServletTest extends DrServletTestBase {
         when(request.isSecure()).thenReturn(true);
         Set<String> authAddressesAndNetworks = new HashSet<>();
         authAddressesAndNetworks.add(("127.0.0.1"));
-        FieldUtils.writeDeclaredStaticField(BaseServlet.class, "authorizedAddressesAndNetworks", authAddressesAndNetworks, true);
+        FieldUtils.writeDeclaredStaticField(BaseServlet.class, "authorizedAddresses",
+            AddressAcl.compile(authAddressesAndNetworks), true);
         FieldUtils.writeDeclaredStaticField(BaseServlet.class, "requireCert", true, true);
         assertNull(baseServlet.isAuthorizedForProvisioning(request));
     }
@@ -105,7 +107,7 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetFeedOwner_And_Feed_Exists() {
         PowerMockito.mockStatic(Feed.class);
         Feed feed = mock(Feed.class);
-        PowerMockito.when(Feed.getFeedById(anyInt())).thenReturn(feed);
+        PowerMockito.when(Feed.getCachedFeedById(anyInt())).thenReturn(feed);
         when(feed.getPublisher()).thenReturn("stub_publisher");
         assertThat(baseServlet.getFeedOwner("3"), is("stub_publisher"));
     }
@@ -113,7 +115,7 @@ public class BaseServletTest extends DrServletTestBase {
     @Test
     public void Given_Request_Is_GetFeedOwner_And_Feed_Does_Not_Exist(){
         PowerMockito.mockStatic(Feed.class);
-        PowerMockito.when(Feed.getFeedById(anyInt())).thenReturn(null);
+        PowerMockito.when(Feed.getCachedFeedById(anyInt())).thenReturn(null);
         assertThat(baseServlet.getFeedOwner("3"), is(nullValue()));
     }
 
@@ -121,7 +123,7 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetFeedClassification_And_Feed_Exists(){
         PowerMockito.mockStatic(Feed.class);
         Feed feed = mock(Feed.class);
-        PowerMockito.when(Feed.getFeedById(anyInt())).thenReturn(feed);
+        PowerMockito.when(Feed.getCachedFeedById(anyInt())).thenReturn(feed);
         FeedAuthorization fAuth = mock(FeedAuthorization.class);
         when(feed.getAuthorization()).thenReturn(fAuth);
         when(fAuth.getClassification()).thenReturn("stub_classification");
@@ -131,7 +133,7 @@ public class BaseServletTest extends DrServletTestBase {
     @Test
     public void Given_Request_Is_GetFeedClassification_And_Feed_Does_Not_Exist() {
         PowerMockito.mockStatic(Feed.class);
-        PowerMockito.when(Feed.getFeedById(anyInt())).thenReturn(null);
+        PowerMockito.when(Feed.getCachedFeedById(anyInt())).thenReturn(null);
         assertThat(baseServlet.getFeedClassification("3"), is(nullValue()));
     }
 
@@ -139,7 +141,7 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetSubscriptionOwner_And_Subscription_Exists() {
         PowerMockito.mockStatic(Subscription.class);
         Subscription subscription = mock(Subscription.class);
-        PowerMockito.when(Subscription.getSubscriptionById(anyInt())).thenReturn(subscription);
+        PowerMockito.when(Subscription.getCachedSubscriptionById(anyInt())).thenReturn(subscription);
         when(subscription.getSubscriber()).thenReturn("stub_subscriber");
         assertThat(baseServlet.getSubscriptionOwner("3"), is("stub_subscriber"));
     }
@@ -147,7 +149,7 @@ public class BaseServletTest extends DrServletTestBase {
     @Test
     public void Given_Request_Is_GetSubscriptionOwner_And_Subscription_Does_Not_Exist() {
         PowerMockito.mockStatic(Subscription.class);
-        PowerMockito.when(Subscription.getSubscriptionById(anyInt())).thenReturn(null);
+        PowerMockito.when(Subscription.getCachedSubscriptionById(anyInt())).thenReturn(null);
         assertThat(baseServlet.getSubscriptionOwner("3"), is(nullValue()));
     }
 
@@ -155,12 +157,12 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetGroupByFeedGroupId_And_User_Is_A_Member_Of_Group() {
         PowerMockito.mockStatic(Feed.class);
         Feed feed = mock(Feed.class);
-        PowerMockito.when(Feed.getFeedById(anyInt())).thenReturn(feed);
+        PowerMockito.when(Feed.getCachedFeedById(anyInt())).thenReturn(feed);
         when(feed.getGroupid()).thenReturn(3);
         PowerMockito.mockStatic(Group.class);
         Group group = mock(Group.class);
         when(group.getMembers()).thenReturn("{id: stub_user}");
-        PowerMockito.when(Group.getGroupById(anyInt())).thenReturn(group);
+        PowerMockito.when(Group.getCachedGroupById(anyInt())).thenReturn(group);
         when(group.getAuthid()).thenReturn("stub_authID");
         assertThat(baseServlet.getGroupByFeedGroupId("stub_user", "3"), is("stub_authID"));
     }
@@ -169,12 +171,12 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetGroupByFeedGroupId_And_User_Is_Not_A_Member_Of_Group() {
         PowerMockito.mockStatic(Feed.class);
         Feed feed = mock(Feed.class);
-        PowerMockito.when(Feed.getFeedById(anyInt())).thenReturn(feed);
+        PowerMockito.when(Feed.getCachedFeedById(anyInt())).thenReturn(feed);
         when(feed.getGroupid()).thenReturn(3);
         PowerMockito.mockStatic(Group.class);
         Group group = mock(Group.class);
         when(group.getMembers()).thenReturn("{id: stub_otherUser}");
-        PowerMockito.when(Group.getGroupById(anyInt())).thenReturn(group);
+        PowerMockito.when(Group.getCachedGroupById(anyInt())).thenReturn(group);
         when(group.getAuthid()).thenReturn("stub_authID");
         assertThat(baseServlet.getGroupByFeedGroupId("stub_user", "3"), is(nullValue()));
     }
@@ -183,12 +185,12 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetGroupBySubGroupId_And_User_Is_A_Member_Of_Group() {
         PowerMockito.mockStatic(Subscription.class);
         Subscription subscription = mock(Subscription.class);
-        PowerMockito.when(Subscription.getSubscriptionById(anyInt())).thenReturn(subscription);
+        PowerMockito.when(Subscription.getCachedSubscriptionById(anyInt())).thenReturn(subscription);
         when(subscription.getGroupid()).thenReturn(3);
         PowerMockito.mockStatic(Group.class);
         Group group = mock(Group.class);
         when(group.getMembers()).thenReturn("{id: stub_user}");
-        PowerMockito.when(Group.getGroupById(anyInt())).thenReturn(group);
+        PowerMockito.when(Group.getCachedGroupById(anyInt())).thenReturn(group);
         when(group.getAuthid()).thenReturn("stub_authID");
         assertThat(baseServlet.getGroupBySubGroupId("stub_user", "3"), is("stub_authID"));
     }
@@ -197,12 +199,12 @@ public class BaseServletTest extends DrServletTestBase {
     public void Given_Request_Is_GetGroupBySubGroupId_And_User_Is_Not_A_Member_Of_Group() {
         PowerMockito.mockStatic(Subscription.class);
         Subscription subscription = mock(Subscription.class);
-        PowerMockito.when(Subscription.getSubscriptionById(anyInt())).thenReturn(subscription);
+        PowerMockito.when(Subscription.getCachedSubscriptionById(anyInt())).thenReturn(subscription);
         when(subscription.getGroupid()).thenReturn(3);
         PowerMockito.mockStatic(Group.class);
         Group group = mock(Group.class);
         when(group.getMembers()).thenReturn("{id: stub_otherUser}");
-        PowerMockito.when(Group.getGroupById(anyInt())).thenReturn(group);
+        PowerMockito.when(Group.getCachedGroupById(anyInt())).thenReturn(group);
         when(group.getAuthid()).thenReturn("stub_authID");
         assertThat(baseServlet.getGroupBySubGroupId("stub_user", "3"), is(nullValue()));
     }
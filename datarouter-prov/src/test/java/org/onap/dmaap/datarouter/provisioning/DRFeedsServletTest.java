@@ -53,6 +53,7 @@ import org.mockito.Mock;
 import org.onap.dmaap.datarouter.authz.AuthorizationResponse;
 import org.onap.dmaap.datarouter.authz.Authorizer;
 import org.onap.dmaap.datarouter.provisioning.beans.Insertable;
+import org.onap.dmaap.datarouter.provisioning.utils.AddressAcl;
 import org.onap.dmaap.datarouter.provisioning.utils.Poker;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -428,9 +429,8 @@ public class DRFeedsServletTest extends DrServletTestBase {
         when(request.isSecure()).thenReturn(true);
         Set<String> authAddressesAndNetworks = new HashSet<>();
         authAddressesAndNetworks.add(("127.0.0.1"));
-        FieldUtils
-            .writeDeclaredStaticField(BaseServlet.class, "authorizedAddressesAndNetworks", authAddressesAndNetworks,
-                true);
+        FieldUtils.writeDeclaredStaticField(BaseServlet.class, "authorizedAddresses",
+            AddressAcl.compile(authAddressesAndNetworks), true);
         FieldUtils.writeDeclaredStaticField(BaseServlet.class, "requireCert", false, true);
         FieldUtils.writeDeclaredStaticField(BaseServlet.class, "maxFeeds", 100, true);
     }
@@ -23,8 +23,10 @@
 package org.onap.dmaap.datarouter.provisioning;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.onap.dmaap.datarouter.provisioning.BaseServlet.BEHALF_HEADER;
@@ -33,9 +35,12 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import java.io.File;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -54,6 +59,7 @@ import org.onap.dmaap.datarouter.provisioning.beans.LogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
 import org.onap.dmaap.datarouter.provisioning.beans.Updateable;
 import org.onap.dmaap.datarouter.provisioning.utils.Poker;
+import org.onap.dmaap.datarouter.provisioning.utils.ProvisioningGeneration;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -141,11 +147,118 @@ public class InternalServletTest extends DrServletTestBase {
   public void Given_Request_Is_HTTP_GET_With_Prov_In_Endpoint_Then_Request_Succeeds() throws Exception {
     when(request.getPathInfo()).thenReturn("/prov");
     when(request.getQueryString()).thenReturn(null);
+    Poker poker = mock(Poker.class);
+    when(poker.getProvisioningGeneration()).thenReturn(new ProvisioningGeneration("1.1", "{}"));
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
+    ServletOutputStream outStream = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(outStream);
+    internalServlet.doGet(request, response);
+    verify(response).setStatus(eq(HttpServletResponse.SC_OK));
+    verify(response).setHeader("ETag", "\"1.1\"");
+    verify(outStream).write("{}".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Pokes_In_Endpoint_Then_Poke_Stats_Are_Returned() throws Exception {
+    when(request.getPathInfo()).thenReturn("/pokes");
+    Poker poker = mock(Poker.class);
+    when(poker.getPokeStats()).thenReturn(Collections.singletonMap("node1", new Poker.PokeStats()));
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
+    ServletOutputStream outStream = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(outStream);
+    internalServlet.doGet(request, response);
+    verify(response).setStatus(eq(HttpServletResponse.SC_OK));
+    verify(outStream).print(contains("\"node1\":{"));
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Prov_Watch_Then_Request_Is_Held_Open() throws Exception {
+    when(request.getPathInfo()).thenReturn("/prov/watch");
+    when(request.getParameter("version")).thenReturn("1.1");
+    when(request.isAsyncSupported()).thenReturn(true);
+    AsyncContext asyncContext = mock(AsyncContext.class);
+    when(request.startAsync()).thenReturn(asyncContext);
     setPokerToNotCreateTimers();
+    internalServlet.doGet(request, response);
+    verify(asyncContext).setTimeout(60000L);
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Prov_And_Gzip_Accepted_Then_Compressed_Copy_Is_Returned()
+      throws Exception {
+    when(request.getPathInfo()).thenReturn("/prov");
+    when(request.getHeader("Accept-Encoding")).thenReturn("deflate, gzip;q=0.8");
+    ProvisioningGeneration gen = new ProvisioningGeneration("1.1", "{}");
+    Poker poker = mock(Poker.class);
+    when(poker.getProvisioningGeneration()).thenReturn(gen);
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
+    ServletOutputStream outStream = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(outStream);
+    internalServlet.doGet(request, response);
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).setHeader("ETag", "\"1.1-gz\"");
+    verify(outStream).write(gen.getGzipped());
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Prov_And_Matching_Gzip_ETag_Then_Not_Modified_Is_Returned()
+      throws Exception {
+    when(request.getPathInfo()).thenReturn("/prov");
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    when(request.getHeader("If-None-Match")).thenReturn("\"1.1-gz\"");
+    Poker poker = mock(Poker.class);
+    when(poker.getProvisioningGeneration()).thenReturn(new ProvisioningGeneration("1.1", "{}"));
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
+    internalServlet.doGet(request, response);
+    verify(response).setHeader("ETag", "\"1.1-gz\"");
+    verify(response).setStatus(eq(HttpServletResponse.SC_NOT_MODIFIED));
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Prov_And_Matching_ETag_Then_Not_Modified_Is_Returned()
+      throws Exception {
+    when(request.getPathInfo()).thenReturn("/prov");
+    when(request.getHeader("If-None-Match")).thenReturn("\"1.0\", \"1.1\"");
+    Poker poker = mock(Poker.class);
+    when(poker.getProvisioningGeneration()).thenReturn(new ProvisioningGeneration("1.1", "{}"));
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
+    ServletOutputStream outStream = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(outStream);
+    internalServlet.doGet(request, response);
+    verify(response).setStatus(eq(HttpServletResponse.SC_NOT_MODIFIED));
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Prov_Since_Known_Version_Then_Delta_Is_Returned() throws Exception {
+    when(request.getPathInfo()).thenReturn("/prov");
+    when(request.getParameter("since")).thenReturn("1.1");
+    Poker poker = mock(Poker.class);
+    when(poker.getProvisioningDelta("1.1")).thenReturn("{\"version\": \"1.2\", \"since\": \"1.1\"}");
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
     ServletOutputStream outStream = mock(ServletOutputStream.class);
     when(response.getOutputStream()).thenReturn(outStream);
     internalServlet.doGet(request, response);
     verify(response).setStatus(eq(HttpServletResponse.SC_OK));
+    verify(response).setContentType(BaseServlet.PROVDELTA_CONTENT_TYPE);
+    verify(outStream).print("{\"version\": \"1.2\", \"since\": \"1.1\"}");
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Prov_Since_Unknown_Version_Then_Full_Copy_Is_Returned() throws Exception {
+    when(request.getPathInfo()).thenReturn("/prov");
+    when(request.getParameter("since")).thenReturn("1.1");
+    Poker poker = mock(Poker.class);
+    when(poker.getProvisioningGeneration()).thenReturn(new ProvisioningGeneration("2.5", "{}"));
+    FieldUtils.writeDeclaredStaticField(Poker.class, "poker", poker, true);
+    ServletOutputStream outStream = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(outStream);
+    internalServlet.doGet(request, response);
+    verify(response).setContentType(BaseServlet.PROVFULL_CONTENT_TYPE2);
+    verify(response).setHeader(BaseServlet.PROV_VERSION_HEADER, "2.5");
+    verify(outStream).write("{}".getBytes(StandardCharsets.UTF_8));
   }
 
   @Test
@@ -30,17 +30,33 @@ import org.junit.BeforeClass;
 import org.junit.AfterClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.onap.dmaap.datarouter.provisioning.beans.DeliveryRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.ExpiryRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.LOGJSONable;
+import org.onap.dmaap.datarouter.provisioning.beans.PublishRecord;
+import org.onap.dmaap.datarouter.provisioning.utils.LOGJSONObject;
+import org.onap.dmaap.datarouter.provisioning.utils.ProvDbUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.matches;
@@ -246,6 +262,184 @@ public class LogServletTest extends DrServletTestBase {
         verify(response).setStatus(eq(HttpServletResponse.SC_OK));
     }
 
+    @Test
+    public void Given_Request_Is_HTTP_GET_Then_Streamed_Records_Match_Record_Beans() throws Exception {
+        String[] rows = {
+            "'pub', 1600000000005, 'p1', 99, 'https://prov/publish/99/f1', 'PUT', 'text/plain', 10, '10.0.0.1', 'pubuser', 204, null, null, null, null, null, 9100000001, 'caf\u00e9 </a \"b\"\u2001'",
+            "'pub', 1600000000123, 'p2', 99, 'https://prov/publish/99/f2', 'PUT', 'text/plain', 20, '10.0.0.1', 'pubuser', 204, null, null, null, null, null, 9100000002, 'f2'",
+            "'pub', 1600000000124, 'p3', 99, 'https://prov/publish/99/f3', 'POST', 'text/plain', 30, '10.0.0.1', 'pubuser', 204, null, null, null, null, null, 9100000003, 'f3'",
+            "'pub', 1600000001999, 'p4', 99, 'https://prov/publish/99/f4', 'PUT', 'text/plain', 40, '10.0.0.1', 'pubuser', 204, null, null, null, null, null, 9100000004, null",
+            "'del', 1600000002000, 'p1', 99, 'https://sub/99/f1', 'PUT', 'text/plain', 10, null, 'subuser', null, 7, 'f1', 204, null, null, 9100000005, null",
+            "'del', 1600000002001, 'p2', 99, 'https://sub/99/f2', 'PUT', 'text/plain', 20, null, null, null, 7, 'f2', 500, null, null, 9100000006, null",
+            "'exp', 1600000003000, 'p2', 99, 'https://sub/99/f2', 'PUT', 'text/plain', 20, null, null, null, 7, 'f2', null, 3, 'retriesExhausted', 9100000007, null",
+            "'exp', 1600000003001, 'p2', 99, 'https://sub/99/f2', 'DELETE', 'text/plain', 20, null, null, null, 7, 'f2', null, 3, 'other', 9100000008, null"
+        };
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            Statement stmt = conn.createStatement()) {
+            for (String row : rows) {
+                stmt.execute("insert into LOG_RECORDS (TYPE, EVENT_TIME, PUBLISH_ID, FEEDID, REQURI, METHOD, CONTENT_TYPE,"
+                    + " CONTENT_LENGTH, REMOTE_ADDR, USER, STATUS, DELIVERY_SUBID, DELIVERY_FILEID, RESULT, ATTEMPTS,"
+                    + " REASON, RECORD_ID, FILENAME) values (" + row + ")");
+            }
+        }
+        when(request.getPathInfo()).thenReturn("/99");
+        when(request.getParameter("type")).thenReturn(null);
+        when(request.getParameter("publishId")).thenReturn(null);
+        when(request.getParameter("statusCode")).thenReturn(null);
+        when(request.getParameter("expiryReason")).thenReturn(null);
+        when(request.getParameter("start")).thenReturn("1500000000000");
+        when(request.getParameter("end")).thenReturn("1700000000000");
+        try {
+            for (String fields : new String[]{null, "date:type:bogus:type:contentLength", "statusCode", ""}) {
+                when(request.getParameter("fields")).thenReturn(fields);
+                ByteArrayOutputStream bytes = captureOutput();
+                logServlet.doGet(request, response);
+                assertTrue(beanOutput(fields).startsWith("[\n{"));
+                assertEquals(beanOutput(fields), new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1));
+            }
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection();
+                Statement stmt = conn.createStatement()) {
+                stmt.execute("delete from LOG_RECORDS where FEEDID = 99");
+            }
+        }
+    }
+
+    @Test
+    public void Given_Request_Is_HTTP_GET_With_Limit_Then_Records_Are_Paged_In_Time_Order() throws Exception {
+        String[] rows = {
+            "'pub', 1600000000000, 'q1', 98, 'PUT', 'pubuser', 9200000003",
+            "'del', 1600000000000, 'q2', 98, 'PUT', 'subuser', 9200000004",
+            "'pub', 1600000001000, 'q3', 98, 'PUT', 'pubuser', 9200000001",
+            "'exp', 1600000002000, 'q4', 98, 'PUT', null, 9200000002",
+            "'pub', 1600000003000, 'q5', 98, 'POST', null, 9200000005"
+        };
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            Statement stmt = conn.createStatement()) {
+            for (String row : rows) {
+                stmt.execute("insert into LOG_RECORDS (TYPE, EVENT_TIME, PUBLISH_ID, FEEDID, METHOD, USER, RECORD_ID,"
+                    + " REQURI, CONTENT_TYPE, CONTENT_LENGTH, REMOTE_ADDR, STATUS, RESULT, ATTEMPTS, REASON, FILENAME)"
+                    + " values (" + row + ", '/f', 'text/plain', 1, '10.0.0.1', 204, 204, 3, 'other', 'f')");
+            }
+        }
+        when(request.getPathInfo()).thenReturn("/98");
+        when(request.getRequestURL()).thenReturn(new StringBuffer("https://prov/feedlog/98"));
+        when(request.getParameter("type")).thenReturn(null);
+        when(request.getParameter("publishId")).thenReturn(null);
+        when(request.getParameter("statusCode")).thenReturn(null);
+        when(request.getParameter("expiryReason")).thenReturn(null);
+        when(request.getParameter("start")).thenReturn("1500000000000");
+        when(request.getParameter("end")).thenReturn("1700000000000");
+        when(request.getParameter("fields")).thenReturn("publishId:type");
+        when(request.getParameter("limit")).thenReturn("2");
+        ArgumentCaptor<String> link = ArgumentCaptor.forClass(String.class);
+        try {
+            ByteArrayOutputStream bytes = captureOutput();
+            logServlet.doGet(request, response);
+            assertEquals("[\n{\"publishId\":\"q1\",\"type\":\"pub\"},\n{\"publishId\":\"q2\",\"type\":\"del\"}]",
+                bytes.toString("ISO-8859-1"));
+            verify(response).setHeader(eq("Link"), link.capture());
+            assertTrue(link.getValue().startsWith("<https://prov/feedlog/98?start=1500000000000&end=1700000000000"
+                + "&limit=2&cursor="));
+            assertTrue(link.getValue().endsWith(">; rel=\"next\""));
+
+            when(request.getParameter("cursor")).thenReturn(nextCursor(link.getValue()));
+            bytes = captureOutput();
+            logServlet.doGet(request, response);
+            assertEquals("[\n{\"publishId\":\"q3\",\"type\":\"pub\"},\n{\"publishId\":\"q4\",\"type\":\"exp\"}]",
+                bytes.toString("ISO-8859-1"));
+            verify(response, times(2)).setHeader(eq("Link"), link.capture());
+
+            when(request.getParameter("cursor")).thenReturn(nextCursor(link.getValue()));
+            bytes = captureOutput();
+            logServlet.doGet(request, response);
+            assertEquals("[]", bytes.toString("ISO-8859-1"));
+            verify(response, times(2)).setHeader(eq("Link"), anyString());
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection();
+                Statement stmt = conn.createStatement()) {
+                stmt.execute("delete from LOG_RECORDS where FEEDID = 98");
+            }
+        }
+    }
+
+    @Test
+    public void Given_Request_Is_HTTP_GET_And_Has_Bad_Limit_Then_Bad_Request_Response_Is_Generated() throws Exception {
+        when(request.getParameter("limit")).thenReturn("0");
+        logServlet.doGet(request, response);
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+    }
+
+    @Test
+    public void Given_Request_Is_HTTP_GET_And_Has_Bad_Cursor_Then_Bad_Request_Response_Is_Generated() throws Exception {
+        assertEquals(1600000000000L, LogServlet.decodeCursor(LogServlet.encodeCursor(1600000000000L, 42))[0]);
+        assertEquals(42, LogServlet.decodeCursor(LogServlet.encodeCursor(1600000000000L, 42))[1]);
+        when(request.getParameter("cursor")).thenReturn("not*a*cursor");
+        logServlet.doGet(request, response);
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+    }
+
+    private ByteArrayOutputStream captureOutput() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int octet) {
+                bytes.write(octet);
+            }
+        });
+        return bytes;
+    }
+
+    private String nextCursor(String link) {
+        return link.substring(link.indexOf("cursor=") + 7, link.indexOf('>'));
+    }
+
+    /**
+     * Build the response for feed 99 from the record beans, the way LogServlet used to.
+     */
+    private String beanOutput(String fields) throws Exception {
+        StringBuilder sb = new StringBuilder("[");
+        boolean firstrow = true;
+        for (String type : new String[]{"pub", "del", "exp"}) {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement("select * from LOG_RECORDS where FEEDID = 99"
+                    + " AND TYPE = '" + type + "' AND EVENT_TIME >= 1500000000000 AND EVENT_TIME <= 1700000000000");
+                ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        LOGJSONable js = "pub".equals(type) ? new PublishRecord(rs)
+                            : ("del".equals(type) ? new DeliveryRecord(rs) : new ExpiryRecord(rs));
+                        LOGJSONObject jo = js.asJSONObject();
+                        if (fields != null) {
+                            LOGJSONObject j2 = new LOGJSONObject();
+                            for (String key : fields.split(":")) {
+                                Object val = jo.opt(key);
+                                if (val != null) {
+                                    j2.put(key, val);
+                                }
+                            }
+                            jo = j2;
+                        }
+                        sb.append(firstrow ? "\n" : ",\n").append(jo.toString());
+                        firstrow = false;
+                    } catch (Exception e) {
+                        // the row is left out
+                    }
+                }
+            }
+        }
+        return sb.append("]").toString();
+    }
+
     private void setUpValidParameterValuesForMap() throws Exception {
         when(request.getPathInfo()).thenReturn("123");
         when(request.getParameter("type")).thenReturn("exp");
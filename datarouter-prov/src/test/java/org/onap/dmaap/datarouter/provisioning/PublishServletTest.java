@@ -195,7 +195,6 @@ public class PublishServletTest extends DrServletTestBase {
     }
 
     private void setConditionsForPositiveSuccessFlow() throws Exception {
-        FieldUtils.writeDeclaredField(publishServlet, "provstring", "", true);
         when(request.getPathInfo()).thenReturn("/1/fileName.txt");
     }
 
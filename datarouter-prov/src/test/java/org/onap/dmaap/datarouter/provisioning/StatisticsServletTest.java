@@ -28,18 +28,27 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.Statement;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.onap.dmaap.datarouter.provisioning.utils.LogStatsRollups;
+import org.onap.dmaap.datarouter.provisioning.utils.ProvDbUtils;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.modules.junit4.PowerMockRunner;
 
@@ -133,6 +142,82 @@ public class StatisticsServletTest {
     verify(response).setStatus(eq(HttpServletResponse.SC_OK));
   }
 
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Json_Output_Then_Statistics_Come_From_Hourly_Rollups()
+      throws Exception {
+    long hour = insertRollups();
+    when(request.getParameter("FEEDID")).thenReturn("96");
+    when(request.getParameter("groupid")).thenReturn(null);
+    when(request.getParameter("output_type")).thenReturn("json");
+    ByteArrayOutputStream output = captureOutput();
+    statisticsServlet.doGet(request, response);
+    verify(response).setStatus(eq(HttpServletResponse.SC_OK));
+    JSONArray stats = new JSONArray(output.toString("ISO-8859-1"));
+    Assert.assertEquals(1, stats.length());
+    JSONObject stat = stats.getJSONObject(0);
+    Assert.assertEquals("96", stat.getString("feedid"));
+    Assert.assertEquals("5", stat.getString("subid"));
+    Assert.assertEquals("4", stat.getString("files_published"));
+    Assert.assertEquals("400", stat.getString("publish_length"));
+    Assert.assertEquals("2", stat.getString("files_delivered"));
+    Assert.assertEquals("200", stat.getString("delivered_length"));
+    Assert.assertEquals("https://sub.example.com", stat.getString("subscriber_url"));
+    Assert.assertEquals(Long.toString(hour + 10), stat.getString("delivery_time"));
+    Assert.assertEquals(1.5, Double.parseDouble(stat.getString("averagedelay")), 0.001);
+  }
+
+  @Test
+  public void Given_Request_Is_HTTP_GET_With_Csv_Output_Then_One_Line_Per_Subscription_Is_Written()
+      throws Exception {
+    long hour = insertRollups();
+    when(request.getParameter("FEEDID")).thenReturn("96");
+    when(request.getParameter("groupid")).thenReturn(null);
+    ByteArrayOutputStream output = captureOutput();
+    statisticsServlet.doGet(request, response);
+    String[] lines = output.toString().split("\n");
+    Assert.assertEquals(2, lines.length);
+    Assert.assertTrue(lines[0].startsWith("FEEDNAME,FEEDID,"));
+    Assert.assertTrue(lines[1].startsWith("null,96,4,400,2,200,https://sub.example.com,5," + hour + "," + (hour + 10)
+        + ","));
+  }
+
+  private long insertRollups() throws Exception {
+    long hour = System.currentTimeMillis() / 3600000L * 3600000L;
+    try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+      LogStatsRollups.createTable(conn);
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("DELETE FROM LOG_STATS_HOURLY WHERE FEEDID = 96");
+        stmt.execute("INSERT INTO LOG_STATS_HOURLY VALUES (" + hour + ", 96, 0, 3, 300, 0, 0, 0, 0, " + hour
+            + ", NULL)");
+        stmt.execute("INSERT INTO LOG_STATS_HOURLY VALUES (" + (hour - 3600000L) + ", 96, 0, 1, 100, 0, 0, 0, 0, "
+            + (hour - 3600000L) + ", NULL)");
+        stmt.execute("INSERT INTO LOG_STATS_HOURLY VALUES (" + hour + ", 96, 5, 0, 0, 2, 200, 3000, 2, "
+            + (hour + 10) + ", 'https://sub.example.com')");
+      }
+    }
+    return hour;
+  }
+
+  private ByteArrayOutputStream captureOutput() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+      }
+
+      @Override
+      public void write(int octet) {
+        bytes.write(octet);
+      }
+    });
+    return bytes;
+  }
+
   private void buildRequestParameters() {
     when(request.getParameter("type")).thenReturn("exp");
     when(request.getParameter("publishId")).thenReturn("ID");
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+
+package org.onap.dmaap.datarouter.provisioning.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class EntityCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void Given_Entity_Is_Cached_Then_Loader_Is_Called_Once() {
+        EntityCache<String> cache = new EntityCache<>(id -> "entity" + id + "-" + loads.incrementAndGet());
+        String first = cache.get(1);
+        assertSame(first, cache.get(1));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void Given_Entity_Is_Invalidated_Then_It_Is_Loaded_Again() {
+        EntityCache<String> cache = new EntityCache<>(id -> "entity" + id + "-" + loads.incrementAndGet());
+        cache.get(1);
+        cache.get(2);
+        cache.invalidate(1);
+        assertEquals("entity1-3", cache.get(1));
+        assertEquals("entity2-2", cache.get(2));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void Given_Entity_Does_Not_Exist_Then_Null_Is_Not_Cached() {
+        EntityCache<String> cache = new EntityCache<>(id -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        assertNull(cache.get(1));
+        assertNull(cache.get(1));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void Given_Cache_Is_Invalidated_During_Load_Then_Loaded_Entity_Is_Discarded() {
+        EntityCache<String>[] holder = new EntityCache[1];
+        holder[0] = new EntityCache<>(id -> {
+            holder[0].invalidate(id);   // a concurrent change to the same entity
+            return "stale";
+        });
+        assertEquals("stale", holder[0].get(1));
+        assertEquals(0, holder[0].size());
+    }
+
+    @Test
+    public void Given_Bulk_Load_Is_Stale_Then_It_Is_Ignored() {
+        EntityCache<String> cache = new EntityCache<>(id -> "entity" + id + "-" + loads.incrementAndGet());
+        long gen = cache.getGeneration();
+        cache.invalidate(7);
+        cache.load(Collections.singletonMap(7, "stale"), gen);
+        assertEquals(0, cache.size());
+        cache.load(Collections.singletonMap(7, "current"), cache.getGeneration());
+        assertEquals("current", cache.get(7));
+        assertEquals(0, loads.get());
+    }
+}
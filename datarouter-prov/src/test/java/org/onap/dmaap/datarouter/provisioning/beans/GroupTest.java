@@ -110,4 +110,19 @@ public class GroupTest {
   public void Given_Group_Inserted_GetGroupById_Returns_Correct_Group() {
     Assert.assertEquals(group, Group.getGroupById(group.getGroupid()));
   }
+
+  @Test
+  public void Given_Group_Updated_GetCachedGroupById_Returns_Updated_Group() throws Exception {
+    long misses = Group.getCache().getMisses();
+    Group cached = Group.getCachedGroupById(group.getGroupid());
+    Assert.assertEquals(group, cached);
+    Assert.assertSame(cached, Group.getCachedGroupById(group.getGroupid()));
+    Assert.assertEquals(misses + 1, Group.getCache().getMisses());
+    group.setDescription("This group has been changed");
+    try (Connection conn = provDbUtils.getConnection()) {
+      group.doUpdate(conn);
+    }
+    Assert.assertEquals("This group has been changed",
+        Group.getCachedGroupById(group.getGroupid()).getDescription());
+  }
 }
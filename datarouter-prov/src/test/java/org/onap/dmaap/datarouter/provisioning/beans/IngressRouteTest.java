@@ -52,7 +52,7 @@ public class IngressRouteTest {
   public void setUp() throws IllegalAccessException{
     PowerMockito.mockStatic(Feed.class);
     Feed feed = mock(Feed.class);
-    PowerMockito.when(Feed.getFeedById(1)).thenReturn(feed);
+    PowerMockito.when(Feed.getCachedFeedById(1)).thenReturn(feed);
     Map<String, Integer> map = new HashMap<>();
     FieldUtils.writeDeclaredStaticField(NodeClass.class, "nodesMap", map, true);
   }
@@ -75,6 +75,21 @@ public class IngressRouteTest {
     Assert.assertEquals(ingressRoute.asJSONObject().toString(), ingressRouteJson.toString());
   }
 
+  @Test
+  public void Given_Malformed_Subnet_Then_JSON_Route_Is_Built_And_Never_Matches() {
+    JSONObject ingressRouteJson = createIngressRouteJson();
+    ingressRouteJson.put("subnet", "10.0.0.0/x");
+    ingressRoute = new IngressRoute(ingressRouteJson);
+    Assert.assertFalse(ingressRoute.matches("user1", new byte[]{10, 0, 0, 1}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void Given_Malformed_Subnet_Then_Route_Is_Rejected_As_Invalid() {
+    List<String> nodes = new ArrayList<>();
+    nodes.add("node.datarouternew.com");
+    new IngressRoute(1, 1, "user1", "10.0.0.0/x", nodes);
+  }
+
   private JSONObject createIngressRouteJson() {
     JSONObject ingressRouteJson = new JSONObject();
     ingressRouteJson.put("seq", 1);
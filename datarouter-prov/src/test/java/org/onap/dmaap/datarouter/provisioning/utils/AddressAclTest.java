@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class AddressAclTest {
+
+    @Test
+    public void Given_Bare_Addresses_Then_Only_Those_Addresses_Match() throws Exception {
+        AddressAcl acl = AddressAcl.compile(Arrays.asList("10.1.2.3", "fe80::1"));
+        assertTrue(acl.matches(InetAddress.getByName("10.1.2.3")));
+        assertFalse(acl.matches(InetAddress.getByName("10.1.2.4")));
+        assertTrue(acl.matches(InetAddress.getByName("fe80::1")));
+        assertFalse(acl.matches(InetAddress.getByName("fe80::2")));
+    }
+
+    @Test
+    public void Given_Networks_Then_Addresses_Within_Them_Match() throws Exception {
+        AddressAcl acl = AddressAcl.compile(Arrays.asList("192.168.0.0/16", "172.16.0.0/12", "2001:db8::/32"));
+        assertTrue(acl.matches(InetAddress.getByName("192.168.255.1")));
+        assertFalse(acl.matches(InetAddress.getByName("192.169.0.1")));
+        assertTrue(acl.matches(InetAddress.getByName("172.31.0.1")));
+        assertFalse(acl.matches(InetAddress.getByName("172.32.0.1")));
+        assertTrue(acl.matches(InetAddress.getByName("2001:db8:1::5")));
+        assertFalse(acl.matches(InetAddress.getByName("2001:db9::5")));
+    }
+
+    @Test
+    public void Given_Zero_Or_Oversized_Prefix_Then_Only_Exact_Address_Matches() throws Exception {
+        AddressAcl acl = AddressAcl.compile(Arrays.asList("10.0.0.1/0", "10.0.0.2/40"));
+        assertTrue(acl.matches(InetAddress.getByName("10.0.0.1")));
+        assertTrue(acl.matches(InetAddress.getByName("10.0.0.2")));
+        assertFalse(acl.matches(InetAddress.getByName("10.0.0.3")));
+    }
+
+    @Test
+    public void Given_Bad_Entries_Then_They_Are_Ignored() throws Exception {
+        AddressAcl acl = AddressAcl.compile(Arrays.asList("10.0.0.1/x", "no.such.host.invalid", "10.0.0.9"));
+        assertFalse(acl.matches(InetAddress.getByName("10.0.0.1")));
+        assertTrue(acl.matches(InetAddress.getByName("10.0.0.9")));
+        assertTrue(acl.hasHostNames());
+    }
+
+    @Test
+    public void Given_No_Host_Names_Then_Refresh_Is_A_No_Op() {
+        AddressAcl acl = AddressAcl.compile(Arrays.asList("10.0.0.0/8"));
+        assertFalse(acl.hasHostNames());
+        assertSame(acl, acl.refresh());
+    }
+
+    @Test
+    public void Given_Host_Name_Then_It_Is_Resolved_At_Compile_Time() throws Exception {
+        AddressAcl acl = AddressAcl.compile(Arrays.asList("localhost"));
+        assertTrue(acl.hasHostNames());
+        assertTrue(acl.matches(InetAddress.getByName("localhost")));
+    }
+}
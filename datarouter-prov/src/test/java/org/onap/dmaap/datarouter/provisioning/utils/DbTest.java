@@ -20,6 +20,11 @@
 
 package org.onap.dmaap.datarouter.provisioning.utils;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
@@ -58,4 +63,18 @@ public class DbTest {
         Assert.assertTrue(ProvDbUtils.getInstance().initProvDB());
     }
 
+    @Test
+    public void Verify_Log_Record_Indexes_Are_Created() throws Exception {
+        Assert.assertTrue(ProvDbUtils.getInstance().initProvDB());
+        Set<String> indexes = new HashSet<>();
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            ResultSet rs = conn.getMetaData().getIndexInfo(null, null, "LOG_RECORDS", false, true)) {
+            while (rs.next()) {
+                indexes.add(rs.getString("INDEX_NAME"));
+            }
+        }
+        Assert.assertTrue(indexes.toString(), indexes.containsAll(
+            Arrays.asList("LOG_RECORDS_FEED_TIME", "LOG_RECORDS_SUB_TIME", "LOG_RECORDS_PUBLISH_ID")));
+    }
+
 }
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class LogLineTokenizerTest {
+
+    private static final String[] LINES = {
+        "", "|", "|||", "a", "a|", "a||", "|a", "a||b", "a|b|c|||", "||a||",
+        "2018-08-29T10:10:10.543Z|PUB|pub1|1|https://dr/publish/1/f|PUT|text/plain|12|10.1.1.1|user1|204",
+        "x|y|z|" + String.join("|", Arrays.asList(new String[30]))
+    };
+
+    private final LogLineTokenizer tok = new LogLineTokenizer();
+
+    @Test
+    public void Given_Lines_Then_Fields_Match_Split() {
+        for (String line : LINES) {
+            String[] expected = line.split("\\|");
+            tok.reset(line);
+            assertEquals(line, expected.length, tok.size());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(line, expected[i], tok.get(i));
+                assertTrue(line, tok.equals(i, expected[i]));
+                assertTrue(line, tok.equalsIgnoreCase(i, expected[i].toUpperCase()));
+                assertFalse(line, tok.equals(i, expected[i] + "x"));
+            }
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void Given_Missing_Field_Then_Get_Throws() {
+        tok.reset("a|b").get(2);
+    }
+
+    @Test
+    public void Given_Numbers_Then_Parsing_Matches_JDK() {
+        String[] values = {"0", "7", "0042", "123456789", "2147483647", "2147483648", "-1", "+5", "", "12a", " 1",
+            "9223372036854775807", "9223372036854775808", "999999999999999999", "1e3", "١٢"};
+        for (String value : values) {
+            tok.reset("x|" + value + "|y");
+            Object expected;
+            try {
+                expected = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                expected = e.getClass();
+            }
+            Object actual;
+            try {
+                actual = tok.getInt(1);
+            } catch (NumberFormatException e) {
+                actual = e.getClass();
+            }
+            assertEquals(value, expected, actual);
+            try {
+                expected = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                expected = e.getClass();
+            }
+            try {
+                actual = tok.getLong(1);
+            } catch (NumberFormatException e) {
+                actual = e.getClass();
+            }
+            assertEquals(value, expected, actual);
+        }
+    }
+
+    @Test
+    public void Given_Subscriber_Lists_Then_Values_Match_Split() {
+        String[] lists = {"1", "1 2", "1  2\t3", "1 2 ", " ", "  \t", "", " 1 2", "1 x", "12 34 56 78"};
+        for (String list : lists) {
+            tok.reset("DEL|" + list + "|end");
+            Object expected;
+            try {
+                String[] subs = list.split("\\s+");
+                int[] ints = new int[subs.length];
+                for (int i = 0; i < subs.length; i++) {
+                    ints[i] = Integer.parseInt(subs[i]);
+                }
+                expected = Arrays.toString(ints);
+            } catch (NumberFormatException e) {
+                expected = e.getClass();
+            }
+            Object actual;
+            try {
+                actual = Arrays.toString(tok.getIntList(1));
+            } catch (NumberFormatException e) {
+                actual = e.getClass();
+            }
+            assertEquals("'" + list + "'", expected, actual);
+        }
+    }
+
+    @Test
+    public void Given_Random_Timestamps_Then_Epoch_Millis_Match_Calendar() throws ParseException {
+        Random rand = new Random(1234);
+        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        for (int n = 0; n < 10000; n++) {
+            // Deliberately include out of range values, which the calendar rolls over
+            int[] num = {1970 + rand.nextInt(200), rand.nextInt(14), rand.nextInt(33), rand.nextInt(25),
+                rand.nextInt(61), rand.nextInt(61), rand.nextInt(1001)};
+            String date = String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03dZ", num[0], num[1], num[2], num[3], num[4],
+                num[5], num[6]);
+            cal.clear();
+            cal.set(num[0], num[1] - 1, num[2], num[3], num[4], num[5]);
+            cal.set(Calendar.MILLISECOND, num[6]);
+            assertEquals(date, cal.getTimeInMillis(), tok.reset(date + "|PUB").getEpochMillis(0));
+        }
+    }
+
+    @Test
+    public void Given_Bad_Timestamps_Then_ParseException_Is_Thrown() {
+        String[] dates = {"", "2018-08-29T10:10:10Z", "2018-08-29T10:10:10.543", "2018-08-29T10:10:10.543Z5",
+            "2018-08-29T10:10:10.543Z."};
+        for (String date : dates) {
+            try {
+                tok.reset("x|" + date + "|y").getEpochMillis(1);
+                fail(date);
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void Given_Tokenizer_Is_Reused_Then_Old_Fields_Are_Forgotten() {
+        tok.reset("a|b|c|d|e|f|g|h|i|j|k|l|m|n|o|p|q|r|s|t|u|v|w|x|y|z|aa|bb");
+        assertEquals(28, tok.size());
+        tok.reset("1|2");
+        assertEquals(2, tok.size());
+        assertArrayEquals(new int[]{1, 2}, new int[]{tok.getInt(0), tok.getInt(1)});
+    }
+}
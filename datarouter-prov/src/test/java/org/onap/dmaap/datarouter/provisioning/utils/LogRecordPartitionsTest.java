@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.SortedMap;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"com.sun.org.apache.xerces.*", "javax.xml.*", "org.xml.*", "org.w3c.*"})
+public class LogRecordPartitionsTest {
+
+    private static EntityManagerFactory emf;
+    private static EntityManager em;
+
+    @BeforeClass
+    public static void init() {
+        emf = Persistence.createEntityManagerFactory("dr-unit-tests");
+        em = emf.createEntityManager();
+        System.setProperty(
+            "org.onap.dmaap.datarouter.provserver.properties",
+            "src/test/resources/h2Database.properties");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        em.clear();
+        em.close();
+        emf.close();
+    }
+
+    @Test
+    public void Given_Day_Then_Partition_Is_Named_By_Date() {
+        assertEquals("p19700101", LogRecordPartitions.partitionName(0));
+        assertEquals("p20240229", LogRecordPartitions.partitionName(19782));
+    }
+
+    @Test
+    public void Given_Range_Of_Days_Then_Each_Day_Gets_A_Partition_Followed_By_Max() {
+        assertEquals("PARTITION p20240229 VALUES LESS THAN (1709251200000), "
+                + "PARTITION p20240301 VALUES LESS THAN (1709337600000), "
+                + "PARTITION pmax VALUES LESS THAN MAXVALUE",
+            LogRecordPartitions.partitionDefinitions(19782, 19783));
+    }
+
+    @Test
+    public void Given_H2_Database_Then_Days_Are_Counted_And_Dropped_With_Deletes() throws Exception {
+        long day = 1;
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            LogRecordPartitions partitions = new LogRecordPartitions(conn, 7);
+            assertFalse(partitions.isNative());
+            partitions.maintain(conn, System.currentTimeMillis());
+            try (PreparedStatement ps = conn.prepareStatement("insert into LOG_RECORDS (TYPE, EVENT_TIME, PUBLISH_ID,"
+                + " FEEDID, REQURI, METHOD, CONTENT_TYPE, CONTENT_LENGTH, RECORD_ID) values"
+                + " ('pub', ?, 'pubid', 1, '/publish/1/f', 'PUT', 'text/plain', 1, ?)")) {
+                long[] times = {day * LogRecordPartitions.MS_PER_DAY, (day + 1) * LogRecordPartitions.MS_PER_DAY - 1,
+                    (day + 1) * LogRecordPartitions.MS_PER_DAY};
+                for (int i = 0; i < times.length; i++) {
+                    ps.setLong(1, times[i]);
+                    ps.setLong(2, 9000000000L + i);
+                    ps.executeUpdate();
+                }
+            }
+            SortedMap<Long, Long> days = partitions.getDayCounts(conn);
+            assertEquals(Long.valueOf(2), days.get(day));
+            assertEquals(Long.valueOf(1), days.get(day + 1));
+            assertTrue(partitions.dropBefore(conn, (day + 1) * LogRecordPartitions.MS_PER_DAY));
+            days = partitions.getDayCounts(conn);
+            assertFalse(days.containsKey(day));
+            assertEquals(Long.valueOf(1), days.get(day + 1));
+            assertFalse(partitions.dropBefore(conn, (day + 1) * LogRecordPartitions.MS_PER_DAY));
+        }
+    }
+}
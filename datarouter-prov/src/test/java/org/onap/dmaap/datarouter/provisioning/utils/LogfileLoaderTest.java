@@ -26,7 +26,20 @@ import static org.junit.Assert.assertFalse;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
@@ -37,8 +50,16 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.onap.dmaap.datarouter.provisioning.InternalServlet;
+import org.onap.dmaap.datarouter.provisioning.beans.DeliveryExtraRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.DeliveryRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.ExpiryRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.Loadable;
+import org.onap.dmaap.datarouter.provisioning.beans.LogRecord;
 import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
+import org.onap.dmaap.datarouter.provisioning.beans.PubFailRecord;
+import org.onap.dmaap.datarouter.provisioning.beans.PublishRecord;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
@@ -56,7 +77,7 @@ public class LogfileLoaderTest {
 
     @Before
     public void setUp() throws Exception {
-        testLog = new File(System.getProperty("user.dir") + "/src/test/resources/IN.test_prov_logs");
+        testLog = new File(System.getProperty("user.dir") + "/src/test/resources/test_prov_logs");
         prepFile(testLog);
     }
 
@@ -91,6 +112,326 @@ public class LogfileLoaderTest {
         Assert.assertTrue(lfl.isIdle());
     }
 
+    @Test
+    public void Verify_Bad_Record_In_Batch_Is_Skipped_And_Others_Are_Loaded() throws Exception {
+        String pub = "2018-08-29-10-10-10-543.|PUB|1|1|https://dmaap-dr-prov:8443/publish/1/%s|POST|"
+            + "application/vnd.att-dr.feed|2|128.0.0.9|user123|200\n";
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longName.append('x');
+        }
+        try (FileWriter fileWriter = new FileWriter(testLog)) {
+            fileWriter.write(String.format(pub, "file1") + String.format(pub, "file2")
+                + String.format(pub, longName) + String.format(pub, "file4") + String.format(pub, "file5"));
+        }
+        FieldUtils.writeField(lfl, "batchSize", 2, true);
+        try {
+            int[] actual = lfl.process(testLog);
+            Assert.assertArrayEquals(new int[]{4, 5}, actual);
+        } finally {
+            FieldUtils.writeField(lfl, "batchSize", 1000, true);
+        }
+    }
+
+    @Test
+    public void Verify_Rows_Written_By_A_Failed_Batch_Are_Kept() throws Exception {
+        waitForLoader();
+        long next = (long) FieldUtils.readField(lfl, "nextId", true) + 1;
+        // As if an earlier attempt at the batch had written the first row before failing
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("insert into LOG_RECORDS (TYPE, EVENT_TIME, PUBLISH_ID,"
+                + " FEEDID, REQURI, METHOD, CONTENT_TYPE, CONTENT_LENGTH, RECORD_ID) values ('pub', 1535537410543,"
+                + " 'written', 1, '/publish/1/file1', 'PUT', 'application/octet-stream', 2, ?)")) {
+            ps.setLong(1, next);
+            ps.executeUpdate();
+        }
+        String pub = "2018-08-29-10-10-10-543.|PUB|written|1|https://dmaap-dr-prov:8443/publish/1/%s|PUT|"
+            + "application/octet-stream|2|128.0.0.9|user123|204\n";
+        try (FileWriter fileWriter = new FileWriter(testLog)) {
+            fileWriter.write(String.format(pub, "file1") + String.format(pub, "file2"));
+        }
+        Assert.assertArrayEquals(new int[]{2, 2}, lfl.process(testLog));
+        assertTrue(lfl.getBitSet().get(next));
+        assertTrue(lfl.getBitSet().get(next + 1));
+        assertTrue(recordIds().get(next + 1));
+    }
+
+    @Test
+    public void Verify_Files_Loaded_Through_Pipeline_Are_Inserted_And_Deleted() throws Exception {
+        String pub = "2018-08-29-10-10-10-543.|PUB|1|1|https://dmaap-dr-prov:8443/publish/1/file%d|POST|"
+            + "application/vnd.att-dr.feed|2|128.0.0.9|user123|200\n";
+        File[] files = new File[4];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = File.createTempFile("pipeline", ".log");
+            try (FileWriter fileWriter = new FileWriter(files[i])) {
+                for (int j = 0; j < 5; j++) {
+                    fileWriter.write(String.format(pub, j));
+                }
+            }
+        }
+        int before = lfl.getBitSet().cardinality();
+        FieldUtils.writeField(lfl, "batchSize", 2, true);
+        try {
+            lfl.loadFiles(files);
+        } finally {
+            FieldUtils.writeField(lfl, "batchSize", 1000, true);
+        }
+        Assert.assertEquals(before + 20, lfl.getBitSet().cardinality());
+        for (File file : files) {
+            assertFalse(file.exists());
+        }
+    }
+
+    @Test
+    public void Verify_Spooled_File_Is_Picked_Up_Without_Polling() throws Exception {
+        File tmp = new File(testLog.getParentFile(), "T.watch_prov_logs");
+        File spooled = new File(testLog.getParentFile(), "IN.watch_prov_logs");
+        try (FileWriter fileWriter = new FileWriter(tmp)) {
+            fileWriter.write("2018-08-29-10-10-10-543.|PUB|1|1|https://dmaap-dr-prov:8443/publish/1/file123/|POST|"
+                + "application/vnd.att-dr.feed|2|128.0.0.9|user123|200\n");
+        }
+        Files.move(tmp.toPath(), spooled.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        lfl.fileSpooled(spooled);
+        for (int i = 0; i < 500 && spooled.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(spooled.exists());
+    }
+
+    @Test
+    public void Verify_Tokenized_Records_Match_Split_Records() throws Exception {
+        String pub = "https://dmaap-dr-prov:8443/publish/1/file123";
+        String[] lines = {
+            "2018-08-29T10:10:10.543Z|PUB|1|1|" + pub + "|PUT|application/octet-stream|2|128.0.0.9|user123|204",
+            "2018-08-29-10-10-10-543.|PUB|1|1|" + pub + "/|POST|application/vnd.att-dr.feed|2|128.0.0.9|user|200",
+            "2018-08-29T10:10:10.543Z|pub|1|1|" + pub + "|PUT|text/plain|12|10.1.1.1|user123|204",
+            "2018-08-29T10:10:10.543Z|PUB|1|1|https://dmaap-dr-prov:8443/other/1/file|PUT|text/plain|1|a|b|204",
+            "2018-08-29T10:10:10.543Z|PUB|1|1|" + pub + "|PUT|text/plain|12|10.1.1.1|user123|20x",
+            "2018-02-31T25:61:61.999Z|PUB|1|1|" + pub + "|PUT|text/plain|12|10.1.1.1|user123|204",
+            "2018-08-29T10:10:10Z|PUB|1|1|" + pub + "|PUT|text/plain|12|10.1.1.1|user123|204",
+            "2018-08-29T10:10:10.543Z|DEL|2|1|2|" + pub + "|PUT|text/plain|100|user123|200|123456",
+            "2018-08-29T10:10:10.543Z|DEL|2|1|2 3\t44|" + pub + "|PUT|text/plain|100|user123|200|123456",
+            "2018-08-29T10:10:10.543Z|DEL|2|1|2 3 |" + pub + "|PUT|text/plain|100|user123|200|123456",
+            "2018-08-29T10:10:10.543Z|DEL|2|1| 2 3|" + pub + "|PUT|text/plain|100|user123|200|123456",
+            "2018-08-29T10:10:10.543Z|DEL|2|1| |" + pub + "|PUT|text/plain|100|user123|200|123456",
+            "2018-08-29T10:10:10.543Z|DEL|2|1|2|" + pub + "|PUT|text/plain|100|" + pub + pub + "|200|123456",
+            "2018-08-29T10:10:10.543Z|EXP|1|1|1|'url/file123'|PUT|null|3|diskFull|4",
+            "2018-08-29T10:10:10.543Z|EXP|1|1|1|file123|PUT|null|3|new reason|4",
+            "2018-08-29T10:10:10.543Z|PBF|1|1|" + pub + "|POST|text/plain|100|50|128.0.0.9|user123|failed",
+            "2018-08-29T10:10:10.543Z|DLX|1|1|1|100|100",
+            "2018-08-29T10:10:10.543Z|dlx|1|1|1|100|100",
+            "2018-08-29T10:10:10.543Z|DLX|1|1|1|100|-100",
+            "2018-08-29T10:10:10.543Z|LOG|1|1|" + pub + "|POST|text/plain|100|t|f|a|u|200|1|1|200|2|r|7",
+            "2018-08-29T10:10:10.543Z|LOG|1|1|" + pub + "|POST|text/plain|100|t|f|a|u|200|1|1|200|2|r|7|9",
+            "2018-08-29T10:10:10.543Z|Bad Record|||",
+            "2018-08-29T10:10:10.543Z|PUB|1|1|" + pub + "|PUT|text/plain|12|10.1.1.1|user123|204|||",
+            "", "|||", "garbage"
+        };
+        TimeZone dflt = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));   // both parsers must ignore the default
+        try {
+            LogLineTokenizer tok = new LogLineTokenizer();
+            int loaded = 0;
+            for (String line : lines) {
+                List<String> expected;
+                try {
+                    expected = loadedValues(splitRecords(line));
+                } catch (Exception e) {
+                    expected = Arrays.asList("failed");
+                }
+                List<String> actual;
+                try {
+                    actual = loadedValues(lfl.buildRecords(tok.reset(line)));
+                } catch (Exception e) {
+                    actual = Arrays.asList("failed");
+                }
+                Assert.assertEquals(line, expected, actual);
+                if (actual.contains("record")) {
+                    loaded++;
+                }
+            }
+            Assert.assertEquals(13, loaded);
+        } finally {
+            TimeZone.setDefault(dflt);
+        }
+    }
+
+    @Test
+    public void Verify_Checkpoint_Is_Read_Back_And_Truncated_Checkpoint_Is_Rejected() throws Exception {
+        File checkpoint = File.createTempFile("recordids", ".dat");
+        try {
+            RLEBitSet bs = new RLEBitSet("1-5,9,1000000000000-1000000000010");
+            lfl.writeCheckpoint(checkpoint, bs);
+            Assert.assertEquals(bs.toString(), lfl.readCheckpoint(checkpoint).toString());
+            try (RandomAccessFile raf = new RandomAccessFile(checkpoint, "rw")) {
+                raf.setLength(raf.length() - 4);
+            }
+            Assert.assertNull(lfl.readCheckpoint(checkpoint));
+        } finally {
+            Files.deleteIfExists(checkpoint.toPath());
+        }
+        Assert.assertNull(lfl.readCheckpoint(checkpoint));
+    }
+
+    @Test
+    public void Verify_Pruned_Records_Are_Cleared_From_Bit_Set() throws Exception {
+        waitForLoader();
+        lfl.process(testLog);
+        RLEBitSet loaded = (RLEBitSet) lfl.getBitSet().clone();
+        PowerMockito.mockStatic(Parameters.class);
+        PowerMockito.when(Parameters.getParameter(Parameters.PROV_LOG_RETENTION)).thenReturn(new Parameters(Parameters.PROV_LOG_RETENTION, "0"));
+        PowerMockito.when(Parameters.getParameter(Parameters.DEFAULT_LOG_RETENTION)).thenReturn(new Parameters(Parameters.DEFAULT_LOG_RETENTION, "1"));
+        assertTrue(lfl.pruneRecords());
+        RLEBitSet extra = (RLEBitSet) lfl.getBitSet().clone();
+        extra.andNot(recordIds());
+        Assert.assertEquals("", extra.toString());
+        loaded.andNot(lfl.getBitSet());
+        assertFalse(loaded.isEmpty());
+    }
+
+    @Test
+    public void Verify_Partitioned_Records_Are_Pruned_By_Day() throws Exception {
+        waitForLoader();
+        lfl.process(testLog);
+        RLEBitSet loaded = (RLEBitSet) lfl.getBitSet().clone();
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            FieldUtils.writeField(lfl, "partitions", new LogRecordPartitions(conn, 7), true);
+        }
+        PowerMockito.mockStatic(Parameters.class);
+        PowerMockito.when(Parameters.getParameter(Parameters.PROV_LOG_RETENTION)).thenReturn(new Parameters(Parameters.PROV_LOG_RETENTION, "0"));
+        PowerMockito.when(Parameters.getParameter(Parameters.DEFAULT_LOG_RETENTION)).thenReturn(new Parameters(Parameters.DEFAULT_LOG_RETENTION, "1"));
+        try {
+            assertTrue(lfl.pruneRecords());
+        } finally {
+            FieldUtils.writeField(lfl, "partitions", null, true);
+        }
+        RLEBitSet extra = (RLEBitSet) lfl.getBitSet().clone();
+        extra.andNot(recordIds());
+        Assert.assertEquals("", extra.toString());
+        loaded.andNot(lfl.getBitSet());
+        assertFalse(loaded.isEmpty());
+    }
+
+    @Test
+    public void Verify_Day_Counts_Follow_Loads_And_Prunes() throws Exception {
+        waitForLoader();
+        lfl.process(testLog);
+        Assert.assertEquals(dayHistogram(), dayCounts());
+        Assert.assertEquals(recordIds().cardinality(), lfl.getRecordCount());
+        PowerMockito.mockStatic(Parameters.class);
+        PowerMockito.when(Parameters.getParameter(Parameters.PROV_LOG_RETENTION)).thenReturn(new Parameters(Parameters.PROV_LOG_RETENTION, "0"));
+        PowerMockito.when(Parameters.getParameter(Parameters.DEFAULT_LOG_RETENTION)).thenReturn(new Parameters(Parameters.DEFAULT_LOG_RETENTION, "1"));
+        assertTrue(lfl.pruneRecords());
+        Assert.assertEquals(dayHistogram(), dayCounts());
+        Assert.assertEquals(recordIds().cardinality(), lfl.getRecordCount());
+    }
+
+    @Test
+    public void Verify_Failed_Day_Count_Updates_Are_Retried() throws Exception {
+        waitForLoader();
+        lfl.process(testLog);
+        Assert.assertEquals(dayHistogram(), dayCounts());
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("alter table LOG_DAY_COUNTS rename to LOG_DAY_COUNTS_X")) {
+            ps.executeUpdate();
+        }
+        try {
+            prepFile(testLog);
+            Assert.assertArrayEquals(new int[]{5, 7}, lfl.process(testLog));
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection();
+                PreparedStatement ps = conn.prepareStatement("alter table LOG_DAY_COUNTS_X rename to LOG_DAY_COUNTS")) {
+                ps.executeUpdate();
+            }
+        }
+        Assert.assertNotEquals(dayHistogram(), dayCounts());
+        prepFile(testLog);
+        lfl.process(testLog);
+        Assert.assertEquals(dayHistogram(), dayCounts());
+    }
+
+    @Test
+    public void Verify_Hourly_Statistics_Follow_Loads() throws Exception {
+        waitForLoader();
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("delete from LOG_STATS_HOURLY where FEEDID = 97")) {
+            ps.executeUpdate();
+        }
+        File file = File.createTempFile("rollups", ".log");
+        try (FileWriter fileWriter = new FileWriter(file)) {
+            fileWriter.write("2018-08-29-10-10-10-543.|PUB|rollup1|97|https://dmaap-dr-prov:8443/publish/97/file1|PUT|"
+                + "application/octet-stream|300|128.0.0.9|user123|204\n");
+            fileWriter.write("2018-08-29-10-10-12-543.|DEL|rollup1|97|7|https://sub.example.com:8443/delivery/file1|PUT|"
+                + "application/octet-stream|300|user123|204|1\n");
+            fileWriter.write("2018-08-29-10-10-13-543.|DEL|rollup1|97|8|https://other.example.com/file1|PUT|"
+                + "application/octet-stream|300|user123|500|1\n");
+        }
+        lfl.process(file);
+        Files.deleteIfExists(file.toPath());
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("select SUBID, FILES_PUBLISHED, PUBLISH_LENGTH,"
+                + " FILES_DELIVERED, DELIVERED_LENGTH, DELAY_SUM, DELAY_COUNT, SUBSCRIBER_URL"
+                + " from LOG_STATS_HOURLY where FEEDID = 97 order by SUBID");
+            ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            Assert.assertEquals(0, rs.getInt("SUBID"));
+            Assert.assertEquals(1, rs.getLong("FILES_PUBLISHED"));
+            Assert.assertEquals(300, rs.getLong("PUBLISH_LENGTH"));
+            assertTrue(rs.next());
+            Assert.assertEquals(7, rs.getInt("SUBID"));
+            Assert.assertEquals(1, rs.getLong("FILES_DELIVERED"));
+            Assert.assertEquals(300, rs.getLong("DELIVERED_LENGTH"));
+            Assert.assertEquals(2000, rs.getLong("DELAY_SUM"));
+            Assert.assertEquals(1, rs.getLong("DELAY_COUNT"));
+            Assert.assertEquals("https://sub.example.com:8443", rs.getString("SUBSCRIBER_URL"));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void Verify_Delay_Is_Counted_When_Delivery_Is_Loaded_Before_Publication() throws Exception {
+        waitForLoader();
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("delete from LOG_STATS_HOURLY where FEEDID = 95")) {
+            ps.executeUpdate();
+        }
+        String del = "2018-08-29-10-10-1%d-543.|DEL|late1|95|%d|https://sub.example.com/delivery/file1|PUT|"
+            + "application/octet-stream|300|user123|204|1\n";
+        loadLines(String.format(del, 2, 7));
+        loadLines("2018-08-29-10-10-10-543.|PUB|late1|95|https://dmaap-dr-prov:8443/publish/95/file1|PUT|"
+            + "application/octet-stream|300|128.0.0.9|user123|204\n");
+        loadLines(String.format(del, 5, 7) + String.format(del, 3, 8));
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("select SUBID, FILES_DELIVERED, DELAY_SUM, DELAY_COUNT"
+                + " from LOG_STATS_HOURLY where FEEDID = 95 and SUBID > 0 order by SUBID");
+            ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            Assert.assertEquals(7, rs.getInt("SUBID"));
+            Assert.assertEquals(2, rs.getLong("FILES_DELIVERED"));
+            Assert.assertEquals(7000, rs.getLong("DELAY_SUM"));
+            Assert.assertEquals(2, rs.getLong("DELAY_COUNT"));
+            assertTrue(rs.next());
+            Assert.assertEquals(8, rs.getInt("SUBID"));
+            Assert.assertEquals(3000, rs.getLong("DELAY_SUM"));
+            Assert.assertEquals(1, rs.getLong("DELAY_COUNT"));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void Verify_Reconcile_Corrects_Bit_Set() throws Exception {
+        waitForLoader();
+        lfl.process(testLog);
+        long real = recordIds().previousSetBit(Long.MAX_VALUE);
+        long bogus = real + 1000;
+        RLEBitSet bs = lfl.getBitSet();
+        bs.clear(real);
+        bs.set(bogus);
+        lfl.reconcile();
+        assertTrue(bs.get(real));
+        assertFalse(bs.get(bogus));
+    }
+
     @Test
     public void Verify_Records_Prune_When_Record_Count_Is_Less_Then_Threshold() {
         lfl.process(testLog);
@@ -109,6 +450,103 @@ public class LogfileLoaderTest {
         assertTrue(lfl.pruneRecords());
     }
 
+    private void loadLines(String lines) throws IOException {
+        File file = File.createTempFile("lines", ".log");
+        try (FileWriter fileWriter = new FileWriter(file)) {
+            fileWriter.write(lines);
+        }
+        lfl.process(file);
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void waitForLoader() throws InterruptedException {
+        for (int i = 0; i < 500 && !lfl.isIdle(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private RLEBitSet recordIds() throws Exception {
+        RLEBitSet bs = new RLEBitSet();
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement("select RECORD_ID from LOG_RECORDS");
+            ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                bs.set(rs.getLong("RECORD_ID"));
+            }
+        }
+        return bs;
+    }
+
+    private Map<Long, Long> dayCounts() throws Exception {
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            return LogDayCounts.getDayCounts(conn);
+        }
+    }
+
+    private Map<Long, Long> dayHistogram() throws Exception {
+        Map<Long, Long> hist = new TreeMap<>();
+        try (Connection conn = ProvDbUtils.getInstance().getConnection();
+            PreparedStatement ps = conn.prepareStatement(
+                "select FLOOR(EVENT_TIME/86400000) as DAY, COUNT(*) as COUNT from LOG_RECORDS group by DAY");
+            ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                hist.put(rs.getLong("DAY"), rs.getLong("COUNT"));
+            }
+        }
+        return hist;
+    }
+
+    /**
+     * The record parsing done by LogfileLoader before it used a LogLineTokenizer.
+     */
+    private Loadable[] splitRecords(String line) throws ParseException {
+        String[] pp = line.split("\\|");
+        if (pp.length >= 7) {
+            String rtype = pp[1].toUpperCase();
+            if ("PUB".equals(rtype) && pp.length == 11) {
+                return new Loadable[]{new PublishRecord(pp)};
+            }
+            if ("DEL".equals(rtype) && pp.length == 12) {
+                String[] subs = pp[4].split("\\s+");
+                Loadable[] rv = new Loadable[subs.length];
+                for (int i = 0; i < subs.length; i++) {
+                    pp[4] = subs[i];
+                    rv[i] = new DeliveryRecord(pp);
+                }
+                return rv;
+            }
+            if ("EXP".equals(rtype) && pp.length == 11) {
+                return new Loadable[]{new ExpiryRecord(pp)};
+            }
+            if ("PBF".equals(rtype) && pp.length == 12) {
+                return new Loadable[]{new PubFailRecord(pp)};
+            }
+            if ("DLX".equals(rtype) && pp.length == 7) {
+                return new Loadable[]{new DeliveryExtraRecord(pp)};
+            }
+            if ("LOG".equals(rtype) && (pp.length == 19 || pp.length == 20)) {
+                return new Loadable[]{new LogRecord(pp)};
+            }
+        }
+        return new Loadable[0];
+    }
+
+    /**
+     * Collect the values each record would insert into the LOG_RECORDS table.
+     */
+    private List<String> loadedValues(Loadable[] records) throws Exception {
+        List<String> values = new ArrayList<>();
+        PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                values.add(method.getName() + Arrays.toString(args));
+                return null;
+            });
+        for (Loadable rec : records) {
+            values.add("record");
+            rec.load(ps);
+        }
+        return values;
+    }
 
     private void prepFile(File logFile) {
         String testLogs =           "2018-08-29-10-10-10-543.|LOG|1|1|https://dmaap-dr-prov:/url/file123|POST|application/vnd.att-dr.feed|100|mockType|file123|https://dmaap-dr-prov|user123|200|1|1|200|2|2\n"
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onap.dmaap.datarouter.provisioning.ProvRunner;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"com.sun.org.apache.xerces.*", "javax.xml.*", "org.xml.*", "org.w3c.*", "com.sun.net.*"})
+public class PokerTest {
+
+    private static final String HTTP_PORT = "org.onap.dmaap.datarouter.provserver.http.port";
+    private static EntityManagerFactory emf;
+    private static EntityManager em;
+
+    @BeforeClass
+    public static void init() {
+        emf = Persistence.createEntityManagerFactory("dr-unit-tests");
+        em = emf.createEntityManager();
+        System.setProperty(
+                "org.onap.dmaap.datarouter.provserver.properties",
+                "src/test/resources/h2Database.properties");
+        ProvRunner.getProvProperties().setProperty("org.onap.dmaap.datarouter.provserver.poke_retries", "2");
+        ProvRunner.getProvProperties().setProperty("org.onap.dmaap.datarouter.provserver.poke_retry_backoff", "10");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        em.clear();
+        em.close();
+        emf.close();
+    }
+
+    @Test
+    public void Given_Node_Is_Reachable_Then_Poke_Succeeds_And_Is_Counted() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/internal/fetchProv", exchange -> {
+            hits.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            ProvRunner.getProvProperties().setProperty(HTTP_PORT, Integer.toString(server.getAddress().getPort()));
+            Poker poker = Poker.getPoker();
+            Whitebox.invokeMethod(poker, "pokeNode", "127.0.0.1");
+            waitFor(poker, "127.0.0.1", 1);
+            assertEquals(1, hits.get());
+            assertEquals(1, poker.getPokeStats().get("127.0.0.1").getSuccesses());
+            assertTrue(poker.getPokeStats().get("127.0.0.1").getLastLatency() >= 0);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void Given_Poke_Is_In_Progress_Then_New_Poke_Is_Queued() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/internal/fetchProv", exchange -> {
+            hits.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        try {
+            ProvRunner.getProvProperties().setProperty(HTTP_PORT, Integer.toString(server.getAddress().getPort()));
+            Poker poker = Poker.getPoker();
+            Poker.PokeStats before = poker.getPokeStats().get("127.0.0.1");
+            long attempts = (before == null) ? 0 : before.getSuccesses() + before.getFailures();
+            Whitebox.invokeMethod(poker, "pokeNode", "127.0.0.1");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Whitebox.invokeMethod(poker, "pokeNode", "127.0.0.1");
+            release.countDown();
+            for (int i = 0; i < 500 && hits.get() < 2; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, hits.get());
+            waitFor(poker, "127.0.0.1", attempts + 2);
+        } finally {
+            server.stop(0);
+            Map<String, Poker.PokeStats> stats = Whitebox.getInternalState(Poker.getPoker(), "pokeStats");
+            stats.remove("127.0.0.1");
+        }
+    }
+
+    @Test
+    public void Given_Node_Is_Unreachable_Then_Poke_Is_Retried() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        ProvRunner.getProvProperties().setProperty(HTTP_PORT, Integer.toString(port));
+        Poker poker = Poker.getPoker();
+        Whitebox.invokeMethod(poker, "pokeNode", "localhost");
+        waitFor(poker, "localhost", 3);
+        assertEquals(0, poker.getPokeStats().get("localhost").getSuccesses());
+        assertEquals(3, poker.getPokeStats().get("localhost").getFailures());
+    }
+
+    private void waitFor(Poker poker, String node, long attempts) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            Poker.PokeStats stats = poker.getPokeStats().get(node);
+            if (stats != null && stats.getSuccesses() + stats.getFailures() >= attempts) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onap.dmaap.datarouter.provisioning.beans.Group;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"com.sun.org.apache.xerces.*", "javax.xml.*", "org.xml.*", "org.w3c.*"})
+public class ProvisioningDocumentTest {
+
+    private static EntityManagerFactory emf;
+    private static EntityManager em;
+
+    @BeforeClass
+    public static void init() {
+        emf = Persistence.createEntityManagerFactory("dr-unit-tests");
+        em = emf.createEntityManager();
+        System.setProperty(
+                "org.onap.dmaap.datarouter.provserver.properties",
+                "src/test/resources/h2Database.properties");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        em.clear();
+        em.close();
+        emf.close();
+    }
+
+    @Test
+    public void Given_Initial_Build_Then_Document_Contains_All_Sections() {
+        JSONObject jo = new JSONObject(new ProvisioningDocument(10).build());
+        for (String key : new String[]{"feeds", "groups", "subscriptions", "parameters", "ingress", "egress",
+            "routing"}) {
+            assertTrue(key, jo.has(key));
+        }
+        assertTrue(jo.getJSONArray("feeds").length() > 0);
+    }
+
+    @Test
+    public void Given_No_Changes_Then_Same_Document_Is_Returned() {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        String first = document.build();
+        assertSame(first, document.build());
+    }
+
+    @Test
+    public void Given_Entity_Changed_Then_Incremental_Build_Matches_Full_Build() throws Exception {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        String before = document.build();
+        Group group = new Group("ProvisioningDocumentTest", "Incremental update", "");
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            assertTrue(group.doInsert(conn));
+        }
+        try {
+            document.entityChanged(group);
+            String after = document.build();
+            assertNotSame(before, after);
+            assertTrue(after.contains("ProvisioningDocumentTest"));
+            assertEquals(new ProvisioningDocument(10).build(), after);
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                group.doDelete(conn);
+            }
+        }
+        document.entityChanged(group);
+        String removed = document.build();
+        assertFalse(removed.contains("ProvisioningDocumentTest"));
+        assertEquals(before, removed);
+    }
+
+    @Test
+    public void Given_Entity_Changed_Then_Delta_Contains_Only_That_Entity() throws Exception {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        document.build();
+        String base = document.getVersion();
+        Group group = new Group("ProvisioningDocumentDelta", "Delta update", "");
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            assertTrue(group.doInsert(conn));
+        }
+        try {
+            document.entityChanged(group);
+            document.build();
+            String added = document.getVersion();
+            JSONObject delta = new JSONObject(document.getDelta(base));
+            assertEquals(added, delta.getString("version"));
+            assertEquals(base, delta.getString("since"));
+            assertEquals(1, delta.getJSONObject("groups").getJSONArray("changed").length());
+            assertEquals("ProvisioningDocumentDelta",
+                delta.getJSONObject("groups").getJSONArray("changed").getJSONObject(0).getString("name"));
+            assertFalse(delta.has("feeds"));
+            assertFalse(delta.has("parameters"));
+
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                group.doDelete(conn);
+            }
+            document.entityChanged(group);
+            document.build();
+            delta = new JSONObject(document.getDelta(added));
+            assertEquals(0, delta.getJSONObject("groups").getJSONArray("changed").length());
+            assertEquals(group.getGroupid(), delta.getJSONObject("groups").getJSONArray("removed").getInt(0));
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                group.doDelete(conn);
+            }
+        }
+    }
+
+    @Test
+    public void Given_Build_Is_Running_Then_Readers_Do_Not_Wait() throws Exception {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        document.build();
+        String version = document.getVersion();
+        synchronized (document) {
+            // build() holds this monitor while it reads the DB
+            assertEquals(version, CompletableFuture.supplyAsync(document::getVersion).get(10, TimeUnit.SECONDS));
+            assertTrue(CompletableFuture.supplyAsync(() -> document.getDelta(version)).get(10, TimeUnit.SECONDS)
+                .contains(version));
+            assertSame(document.getRoutingSnapshot(),
+                CompletableFuture.supplyAsync(document::getRoutingSnapshot).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void Given_Reload_Finds_No_Changes_Then_Version_Is_Kept() {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        String first = document.build();
+        String version = document.getVersion();
+        document.invalidateAll();
+        assertEquals(first, document.build());
+        assertEquals(version, document.getVersion());
+    }
+
+    @Test
+    public void Given_DB_Cannot_Be_Read_Then_Entities_Are_Kept_And_Retried() throws Exception {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        Group group = new Group("ProvisioningDocumentKept", "Kept on error", "");
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            assertTrue(group.doInsert(conn));
+        }
+        try {
+            String before = document.build();
+            assertTrue(before.contains("ProvisioningDocumentKept"));
+            group.setDescription("Updated while the DB was down");
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                assertTrue(group.doUpdate(conn));
+                renameTable(conn, "GROUPS", "GROUPS_X");
+            }
+            try {
+                document.entityChanged(group);
+                assertEquals(before, document.build());
+                document.invalidateAll();
+                assertEquals(before, document.build());
+            } finally {
+                try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                    renameTable(conn, "GROUPS_X", "GROUPS");
+                }
+            }
+            String after = document.build();
+            assertTrue(after.contains("Updated while the DB was down"));
+            assertEquals(new ProvisioningDocument(10).build(), after);
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                group.doDelete(conn);
+            }
+        }
+    }
+
+    @Test
+    public void Given_Current_Version_Then_Delta_Is_Empty() {
+        ProvisioningDocument document = new ProvisioningDocument(10);
+        document.build();
+        JSONObject delta = new JSONObject(document.getDelta(document.getVersion()));
+        assertEquals(2, delta.length());
+    }
+
+    @Test
+    public void Given_Unknown_Or_Expired_Version_Then_No_Delta_Is_Returned() throws Exception {
+        ProvisioningDocument document = new ProvisioningDocument(1);
+        document.build();
+        String first = document.getVersion();
+        assertNull(document.getDelta("0." + first.substring(first.indexOf('.') + 1)));
+        assertNull(document.getDelta("garbage"));
+        assertNull(document.getDelta(null));
+        Group group = new Group("ProvisioningDocumentReload", "Unreported insert", "");
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            assertTrue(group.doInsert(conn));
+        }
+        try {
+            document.invalidateAll();
+            document.build();
+        } finally {
+            try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+                group.doDelete(conn);
+            }
+        }
+        // the full reload cannot be expressed as a delta
+        assertNull(document.getDelta(first));
+        String second = document.getVersion();
+        Group other = new Group("ProvisioningDocumentHistory", "Two generations", "");
+        try (Connection conn = ProvDbUtils.getInstance().getConnection()) {
+            assertTrue(other.doInsert(conn));
+            document.entityChanged(other);
+            document.build();
+            other.doDelete(conn);
+            document.entityChanged(other);
+            document.build();
+        }
+        // only one generation is kept
+        assertNull(document.getDelta(second));
+    }
+
+    private void renameTable(Connection conn, String from, String to) throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("alter table " + from + " rename to " + to);
+        }
+    }
+}
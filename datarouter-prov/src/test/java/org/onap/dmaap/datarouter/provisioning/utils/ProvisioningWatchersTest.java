@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"com.sun.org.apache.xerces.*", "javax.xml.*", "org.xml.*", "org.w3c.*"})
+public class ProvisioningWatchersTest {
+
+    private ProvisioningWatchers watchers;
+    private AsyncContext ctx;
+    private HttpServletResponse response;
+    private ServletOutputStream outStream;
+
+    @Before
+    public void setUp() throws Exception {
+        watchers = new ProvisioningWatchers();
+        ctx = mock(AsyncContext.class);
+        response = mock(HttpServletResponse.class);
+        outStream = mock(ServletOutputStream.class);
+        when(ctx.getResponse()).thenReturn(response);
+        when(response.getOutputStream()).thenReturn(outStream);
+    }
+
+    @Test
+    public void Given_Watch_On_Current_Version_Then_It_Completes_When_Version_Changes() throws Exception {
+        watchers.provisioningChanged("1.1");
+        watchers.watch("node1", "1.1", ctx, 1000L);
+        assertEquals(1, watchers.getWatchCount());
+        verify(ctx, never()).complete();
+
+        Set<String> nodes = watchers.provisioningChanged("1.2");
+        assertTrue(nodes.contains("node1"));
+        assertEquals(0, watchers.getWatchCount());
+        JSONObject event = writtenEvent();
+        assertEquals("prov", event.getString("event"));
+        assertEquals("1.2", event.getString("version"));
+        verify(ctx).complete();
+    }
+
+    @Test
+    public void Given_Watch_On_Old_Version_Then_It_Completes_At_Once() {
+        watchers.provisioningChanged("1.2");
+        watchers.watch("node1", "1.1", ctx, 1000L);
+        assertEquals(0, watchers.getWatchCount());
+        verify(ctx).complete();
+    }
+
+    @Test
+    public void Given_Unchanged_Version_Then_Watch_Is_Left_Open_But_Node_Is_Up_To_Date() {
+        watchers.provisioningChanged("1.1");
+        watchers.watch("node1", "1.1", ctx, 1000L);
+        assertTrue(watchers.provisioningChanged("1.1").contains("node1"));
+        assertEquals(1, watchers.getWatchCount());
+        verify(ctx, never()).complete();
+    }
+
+    @Test
+    public void Given_Subscription_Reset_Then_Watch_Completes() throws Exception {
+        watchers.provisioningChanged("1.1");
+        watchers.watch("node1", "1.1", ctx, 1000L);
+        assertTrue(watchers.subscriptionReset(7).contains("node1"));
+        JSONObject event = writtenEvent();
+        assertEquals("resetSubscription", event.getString("event"));
+        assertEquals(7, event.getInt("subid"));
+        verify(ctx).complete();
+    }
+
+    @Test
+    public void Given_Watch_Times_Out_Then_No_Content_Is_Returned() throws Exception {
+        watchers.provisioningChanged("1.1");
+        watchers.watch("node1", "1.1", ctx, 1000L);
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(ctx).addListener(listener.capture());
+        listener.getValue().onTimeout(mock(AsyncEvent.class));
+        verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
+        verify(ctx).complete();
+        assertTrue(watchers.subscriptionReset(7).isEmpty());
+        verify(outStream, never()).write(any(byte[].class));
+    }
+
+    private JSONObject writtenEvent() throws Exception {
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(outStream).write(body.capture());
+        return new JSONObject(new String(body.getValue(), StandardCharsets.UTF_8));
+    }
+}
@@ -26,6 +26,9 @@ package org.onap.dmaap.datarouter.provisioning.utils;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -169,4 +172,100 @@ public class RLEBitSetTest {
     RLEBSet.set(2L, 9L);
     assertThat(RLEBSet.clone().toString(), is(RLEBSet.toString()));
   }
+
+  @Test
+  public void Given_Method_Is_PreviousSetBit_Return_Nearest_Set_Bit_At_Or_Before()
+      throws Exception {
+    RLEBSet.set("3-5,10");
+    assertThat(RLEBSet.previousSetBit(2L), is(-1L));
+    assertThat(RLEBSet.previousSetBit(4L), is(4L));
+    assertThat(RLEBSet.previousSetBit(9L), is(5L));
+    assertThat(RLEBSet.previousSetBit(Long.MAX_VALUE), is(10L));
+  }
+
+  @Test
+  public void Given_Method_Is_GetRangeIterator_Return_Each_Range()
+      throws Exception {
+    RLEBSet.set("1-3,7,10-20");
+    Iterator<Long[]> iter = RLEBSet.getRangeIterator();
+    StringBuilder sb = new StringBuilder();
+    while (iter.hasNext()) {
+      Long[] range = iter.next();
+      sb.append(range[0]).append(':').append(range[1]).append(' ');
+    }
+    assertThat(sb.toString(), is("1:3 7:7 10:20 "));
+  }
+
+  @Test
+  public void Given_Random_Operations_Then_Bits_Match_BitSet()
+      throws Exception {
+    Random rand = new Random(42);
+    BitSet expected = new BitSet();
+    for (int n = 0; n < 20000; n++) {
+      int from = rand.nextInt(2000);
+      int to = from + rand.nextInt(20);
+      switch (rand.nextInt(3)) {
+        case 0:
+          RLEBSet.clear(from, to);
+          expected.clear(from, to);
+          break;
+        case 1:
+          RLEBSet.set(from);
+          expected.set(from);
+          break;
+        default:
+          RLEBSet.set(from, to);
+          expected.set(from, to);
+          break;
+      }
+    }
+    assertThat(RLEBSet.toString(), is(toRleString(expected)));
+    assertThat(RLEBSet.cardinality(), is(expected.cardinality()));
+    assertThat(RLEBSet.length(), is((long) expected.length()));
+    for (int bit = 0; bit < 2100; bit++) {
+      assertThat(RLEBSet.get(bit), is(expected.get(bit)));
+    }
+  }
+
+  @Test
+  public void Given_Random_Sets_Then_And_And_AndNot_Match_BitSet()
+      throws Exception {
+    Random rand = new Random(7);
+    for (int n = 0; n < 200; n++) {
+      BitSet bs1 = randomBits(rand);
+      BitSet bs2 = randomBits(rand);
+      RLEBitSet rle1 = new RLEBitSet(toRleString(bs1));
+      RLEBitSet rle2 = new RLEBitSet(toRleString(bs2));
+      RLEBitSet copy = (RLEBitSet) rle1.clone();
+      rle1.and(rle2);
+      copy.andNot(rle2);
+      BitSet and = (BitSet) bs1.clone();
+      and.and(bs2);
+      bs1.andNot(bs2);
+      assertThat(rle1.toString(), is(toRleString(and)));
+      assertThat(copy.toString(), is(toRleString(bs1)));
+    }
+  }
+
+  private static BitSet randomBits(Random rand) {
+    BitSet bs = new BitSet();
+    for (int i = rand.nextInt(30); i > 0; i--) {
+      int from = rand.nextInt(500);
+      bs.set(from, from + 1 + rand.nextInt(15));
+    }
+    return bs;
+  }
+
+  private static String toRleString(BitSet bs) {
+    StringBuilder sb = new StringBuilder();
+    for (int from = bs.nextSetBit(0); from >= 0; from = bs.nextSetBit(from)) {
+      int to = bs.nextClearBit(from) - 1;
+      sb.append(sb.length() > 0 ? "," : "").append(from);
+      if (to != from) {
+        sb.append('-').append(to);
+      }
+      from = to + 1;
+    }
+    return sb.toString();
+  }
 }
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.onap.dmaap.datarouter.provisioning.beans.Parameters;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"com.sun.org.apache.xerces.*", "javax.xml.*", "org.xml.*", "org.w3c.*"})
+@SuppressStaticInitializationFor("org.onap.dmaap.datarouter.provisioning.beans.Parameters")
+public class RateLimitFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private FilterChain filterchain;
+
+    private RateLimitFilter rateLimitFilter = new RateLimitFilter();
+
+    @After
+    public void tearDown() {
+        mockParametersWithValues(null);
+        RateLimitFilter.configure();
+    }
+
+    @Test
+    public void Given_Filter_Is_Disabled_Then_All_Requests_Are_Passed_On() throws Exception {
+        mockParametersWithValues("off");
+        RateLimitFilter.configure();
+        mockRequest("/feed/1", "user1");
+        for (int i = 0; i < 100; i++) {
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        verify(filterchain, times(100)).doFilter(request, response);
+    }
+
+    @Test
+    public void Given_Bucket_Is_Empty_Then_Request_Gets_429_With_Retry_After() throws Exception {
+        mockParametersWithValues("prov=0.01/2");
+        RateLimitFilter.configure();
+        mockRequest("/feed/1", "user2");
+        long rejected = RateLimitFilter.getRejectedCount(RateLimitFilter.PROV_CLASS);
+        for (int i = 0; i < 3; i++) {
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        verify(filterchain, times(2)).doFilter(request, response);
+        verify(response).setHeader("Retry-After", "100");
+        verify(response).sendError(eq(429), anyString());
+        assertThat(RateLimitFilter.getRejectedCount(RateLimitFilter.PROV_CLASS), is(rejected + 1));
+    }
+
+    @Test
+    public void Given_Log_Requests_Then_The_Cheaper_Default_Log_Limit_Applies() throws Exception {
+        mockParametersWithValues("prov=1000/1000");
+        RateLimitFilter.configure();
+        mockRequest("/feedlog/1", "user3");
+        for (int i = 0; i < 20; i++) {
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        verify(filterchain, times(10)).doFilter(request, response);
+        verify(response, times(10)).sendError(eq(429), anyString());
+    }
+
+    @Test
+    public void Given_Identity_Has_Its_Own_Limit_Then_It_Overrides_The_Class_Limit() throws Exception {
+        mockParametersWithValues("stats=0.01/1|robot:stats=0.01/3");
+        RateLimitFilter.configure();
+        mockRequest("/statistics", "robot");
+        for (int i = 0; i < 5; i++) {
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        verify(filterchain, times(3)).doFilter(request, response);
+
+        HttpServletRequest other = mock(HttpServletRequest.class);
+        when(other.getRequestURI()).thenReturn("/statistics");
+        when(other.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn("someone");
+        rateLimitFilter.doFilter(other, response, filterchain);
+        rateLimitFilter.doFilter(other, response, filterchain);
+        verify(filterchain, times(1)).doFilter(other, response);
+    }
+
+    @Test
+    public void Given_Publish_Or_Internal_Requests_Then_They_Are_Not_Limited() throws Exception {
+        mockParametersWithValues("prov=0.01/1");
+        RateLimitFilter.configure();
+        mockRequest("/publish/1/file", "user4");
+        rateLimitFilter.doFilter(request, response, filterchain);
+        rateLimitFilter.doFilter(request, response, filterchain);
+        when(request.getRequestURI()).thenReturn("/internal/prov");
+        rateLimitFilter.doFilter(request, response, filterchain);
+        verify(filterchain, times(3)).doFilter(request, response);
+        verify(response, never()).sendError(eq(429), anyString());
+    }
+
+    @Test
+    public void Given_Identity_Header_Changes_Then_Remote_Address_Is_Still_Limited() throws Exception {
+        mockParametersWithValues("prov=0.01/1");
+        RateLimitFilter.configure();
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(request.getRequestURI()).thenReturn("/feed/1");
+        for (int i = 0; i < 15; i++) {
+            when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn("rotating" + i);
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        verify(filterchain, times(10)).doFilter(request, response);
+        verify(response, times(5)).sendError(eq(429), anyString());
+    }
+
+    @Test
+    public void Given_Many_Identities_Then_Buckets_Are_Capped() throws Exception {
+        mockParametersWithValues("prov=0.001/1");
+        RateLimitFilter.configure();
+        AtomicInteger addr = new AtomicInteger();
+        when(request.getRequestURI()).thenReturn("/feed/1");
+        when(request.getRemoteAddr()).thenAnswer(invocation -> "addr" + addr.incrementAndGet());
+        for (int i = 0; i < RateLimitFilter.MAX_BUCKETS + 50; i++) {
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        Map<String, ?> buckets = Whitebox.getInternalState(RateLimitFilter.class, "buckets");
+        assertThat(buckets.size(), is(RateLimitFilter.MAX_BUCKETS + 1));
+        verify(filterchain, times(RateLimitFilter.MAX_BUCKETS + 1)).doFilter(request, response);
+    }
+
+    @Test
+    public void Given_Buckets_Are_Full_Then_Override_Does_Not_Set_The_Overflow_Limit() throws Exception {
+        mockParametersWithValues("prov=0.001/2|vip:prov=100/100");
+        RateLimitFilter.configure();
+        when(request.getRequestURI()).thenReturn("/feed/1");
+        for (int i = 0; i < RateLimitFilter.MAX_BUCKETS; i++) {
+            when(request.getRemoteAddr()).thenReturn("addr" + i);
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        Map<String, ?> buckets = Whitebox.getInternalState(RateLimitFilter.class, "buckets");
+        when(request.getRemoteAddr()).thenReturn("vipaddr");
+        when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn("vip");
+        rateLimitFilter.doFilter(request, response, filterchain);
+        assertThat(buckets.containsKey("prov/vip"), is(true));
+        assertThat(buckets.containsKey("prov/*"), is(false));
+
+        // newcomers share the overflow bucket, which has the class limit of 2 tokens
+        when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn(null);
+        for (int i = 0; i < 3; i++) {
+            when(request.getRemoteAddr()).thenReturn("new" + i);
+            rateLimitFilter.doFilter(request, response, filterchain);
+        }
+        assertThat(buckets.containsKey("prov/new0"), is(false));
+        verify(filterchain, times(RateLimitFilter.MAX_BUCKETS + 3)).doFilter(request, response);
+        verify(response, times(1)).sendError(eq(429), anyString());
+    }
+
+    @Test
+    public void Given_Limits_Are_Unchanged_Then_Reconfiguring_Keeps_The_Buckets() throws Exception {
+        mockParametersWithValues("prov=0.01/1");
+        RateLimitFilter.configure();
+        mockRequest("/feed/1", "user5");
+        rateLimitFilter.doFilter(request, response, filterchain);
+        RateLimitFilter.configure();
+        rateLimitFilter.doFilter(request, response, filterchain);
+        verify(filterchain, times(1)).doFilter(request, response);
+        mockParametersWithValues("prov=0.01/1|log=1");
+        RateLimitFilter.configure();
+        rateLimitFilter.doFilter(request, response, filterchain);
+        verify(filterchain, times(2)).doFilter(request, response);
+    }
+
+    private void mockRequest(String uri, String behalf) {
+        when(request.getRequestURI()).thenReturn(uri);
+        when(request.getHeader("X-DMAAP-DR-ON-BEHALF-OF")).thenReturn(behalf);
+    }
+
+    private void mockParametersWithValues(String values) {
+        PowerMockito.mockStatic(Parameters.class);
+        PowerMockito.when(Parameters.getParameter(Parameters.API_RATE_LIMITS))
+            .thenReturn((values == null) ? null : new Parameters(Parameters.API_RATE_LIMITS, values));
+    }
+}
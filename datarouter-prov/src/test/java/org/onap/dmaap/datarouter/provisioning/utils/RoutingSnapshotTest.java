@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * ============LICENSE_START==================================================
+ * * org.onap.dmaap
+ * * ===========================================================================
+ * * Copyright © 2017 AT&T Intellectual Property. All rights reserved.
+ * * ===========================================================================
+ * * Licensed under the Apache License, Version 2.0 (the "License");
+ * * you may not use this file except in compliance with the License.
+ * * You may obtain a copy of the License at
+ * *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ * *
+ *  * Unless required by applicable law or agreed to in writing, software
+ * * distributed under the License is distributed on an "AS IS" BASIS,
+ * * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * * See the License for the specific language governing permissions and
+ * * limitations under the License.
+ * * ============LICENSE_END====================================================
+ * *
+ * * ECOMP is a trademark and service mark of AT&T Intellectual Property.
+ * *
+ ******************************************************************************/
+
+package org.onap.dmaap.datarouter.provisioning.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onap.dmaap.datarouter.provisioning.beans.NodeClass;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"com.sun.org.apache.xerces.*", "javax.xml.*", "org.xml.*", "org.w3c.*"})
+public class RoutingSnapshotTest {
+
+    private static final String PROV = "{\"feeds\": [{\"feedid\": 7}, {\"feedid\": 2}, {\"feedid\": 40}],"
+        + "\"ingress\": [{\"feedid\": 2, \"seq\": 1, \"user\": \"pub\", \"node\": [\"node1\"]},"
+        + "{\"feedid\": 7, \"seq\": 2, \"subnet\": \"10.0.0.0/8\", \"node\": [\"node2\", \"node3\"]}]}";
+
+    @Before
+    public void setUp() throws IllegalAccessException {
+        FieldUtils.writeDeclaredStaticField(NodeClass.class, "nodesMap", new HashMap<String, Integer>(), true);
+    }
+
+    @Test
+    public void Given_Prov_Data_Then_Only_Listed_Feeds_Are_Valid() {
+        RoutingSnapshot snapshot = RoutingSnapshot.fromJSON(new JSONObject(PROV));
+        assertTrue(snapshot.isValidFeed(2));
+        assertTrue(snapshot.isValidFeed(7));
+        assertTrue(snapshot.isValidFeed(40));
+        assertFalse(snapshot.isValidFeed(1));
+        assertFalse(snapshot.isValidFeed(41));
+    }
+
+    @Test
+    public void Given_Prov_Data_Then_Ingress_Routes_Are_Parsed_In_Order() {
+        RoutingSnapshot snapshot = RoutingSnapshot.fromJSON(new JSONObject(PROV));
+        assertEquals(2, snapshot.getIngressRoutes().size());
+        assertEquals("INGRESS: feed=2, userid=pub, subnet=-, seq=1", snapshot.getIngressRoutes().get(0).toString());
+        assertEquals(2, snapshot.getIngressRoutes().get(1).getNodes().size());
+    }
+
+    @Test
+    public void Given_Request_From_Routed_Subnet_Then_Route_Is_Found() {
+        RoutingSnapshot snapshot = RoutingSnapshot.fromJSON(new JSONObject(PROV));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn("10.1.2.3");
+        assertEquals(7, snapshot.getIngressRoute(7, request).getFeedid());
+        when(request.getRemoteAddr()).thenReturn("192.168.0.1");
+        assertNull(snapshot.getIngressRoute(7, request));
+    }
+
+    @Test
+    public void Given_Request_From_Routed_User_Then_Route_Is_Found() {
+        RoutingSnapshot snapshot = RoutingSnapshot.fromJSON(new JSONObject(PROV));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn("10.1.2.3");
+        when(request.getHeader("Authorization")).thenReturn("Basic cHViOnB3");
+        assertEquals(2, snapshot.getIngressRoute(2, request).getFeedid());
+        when(request.getHeader("Authorization")).thenReturn("Basic b3RoZXI6cHc=");
+        assertNull(snapshot.getIngressRoute(2, request));
+        assertNull(snapshot.getIngressRoute(40, request));
+    }
+
+    @Test
+    public void Given_Empty_Snapshot_Then_No_Feed_Is_Valid() {
+        assertFalse(RoutingSnapshot.empty().isValidFeed(1));
+        assertTrue(RoutingSnapshot.empty().getIngressRoutes().isEmpty());
+    }
+}
@@ -24,17 +24,17 @@
 package org.onap.dmaap.datarouter.provisioning.utils;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
-import org.eclipse.jetty.continuation.Continuation;
-import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpConnection;
 import org.eclipse.jetty.server.Request;
+import org.junit.After;
 import org.junit.Test;
 
 import org.junit.runner.RunWith;
 import static org.junit.Assert.*;
 import static org.hamcrest.core.Is.is;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
 import static org.mockito.Matchers.*;
@@ -45,6 +45,9 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletInputStream;
@@ -52,11 +55,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RunWith(PowerMockRunner.class)
 @SuppressStaticInitializationFor({"org.onap.dmaap.datarouter.provisioning.beans.Parameters",
                                   "org.eclipse.jetty.server.Request",
-                                  "org.eclipse.jetty.continuation.ContinuationSupport",
                                   "org.eclipse.jetty.server.HttpConnection"})
 public class ThrottleFilterTest {
 
@@ -72,8 +75,6 @@ public class ThrottleFilterTest {
     @Mock
     private HttpConnection httpconnection;
 
-    @Mock
-    private ContinuationSupport continuationsupport;
 
     @Mock
     private Request req;
@@ -82,9 +83,15 @@ public class ThrottleFilterTest {
     private HttpChannel httpchannel;
 
     @Mock
-    private Continuation continuation;
+    private AsyncContext asynccontext;
+
 
 
+    @After
+    public void tearDown() throws Exception {
+        ((Map<?, ?>) FieldUtils.readStaticField(ThrottleFilter.class, "parked", true)).clear();
+        ((Map<?, ?>) FieldUtils.readStaticField(ThrottleFilter.class, "map", true)).clear();
+    }
 
     @Test
     public void Given_Throttle_Filter_Configure_And_Parameter_Is_Not_Null_Then_Enabled_And_Action_Is_True() throws Exception {
@@ -93,54 +100,100 @@ public class ThrottleFilterTest {
         boolean enabled = (boolean) FieldUtils.readStaticField(ThrottleFilter.class, "enabled", true);
         int action = (int) FieldUtils.readStaticField(ThrottleFilter.class, "action", true);
         assertThat(enabled, is(true));
-        assertThat(action, is(0));
+        assertThat(action, is(1));
+        assertThat(FieldUtils.readStaticField(ThrottleFilter.class, "releaseRate", true), is(1));
+        assertThat(FieldUtils.readStaticField(ThrottleFilter.class, "queueLimit", true), is(60));
+        assertThat(FieldUtils.readStaticField(ThrottleFilter.class, "queueTimeout", true), is(60));
+    }
 
+    @Test
+    public void Given_Queue_Cannot_Drain_Before_Timeout_Then_Queue_Limit_Is_Capped() throws Exception {
+        mockParametersWithValues("10,5,throttle,2,500,30");
+        ThrottleFilter.configure();
+        assertThat(FieldUtils.readStaticField(ThrottleFilter.class, "queueLimit", true), is(60));
+        mockParametersWithValues("10,5,throttle,5,20,30");
+        ThrottleFilter.configure();
+        assertThat(FieldUtils.readStaticField(ThrottleFilter.class, "queueLimit", true), is(20));
     }
 
     @Test
-    public void Given_Do_Filter_run_and_enabled_and_action_is_true_and_rate_is_0_then_continiuation_will_call_setAttribute_and_resume_once() throws Exception {
-        mockParametersWithValues("100,5,thing");
+    public void Given_Do_Filter_Run_and_throttle_is_enabled_and_rate_is_under_N_then_request_is_passed_on() throws Exception {
+        mockParametersWithValues("100,5,throttle");
         ThrottleFilter throttlefilter = new ThrottleFilter();
         ThrottleFilter.configure();
-        mockServletInputStream();
-        FieldUtils.writeDeclaredStaticField(ThrottleFilter.class, "action", 1, true);
-        Map<String, List<Continuation>> suspended_requests = new HashMap<String, List<Continuation>>();
-        List<Continuation> continuation_list = new ArrayList<>();
-        continuation_list.add(continuation);
-        suspended_requests.put("null/-1", continuation_list);
-        FieldUtils.writeDeclaredField(throttlefilter, "suspendedRequests", suspended_requests, true);
         throttlefilter.doFilter(request, response, filterchain);
-        verify(continuation, times(1)).setAttribute(anyString(), any());
-        verify(continuation, times(1)).resume();
+        verify(filterchain, times(1)).doFilter(request, response);
+        verify(request, never()).startAsync();
     }
 
     @Test
-    public void Given_Do_Filter_Run_and_enabled_and_action_is_true_and_rate_is_greater_than_0_then_continuation_will_call_suspend_and_dispatch_once() throws Exception {
-        mockParametersWithValues("0,5,thing");
-        mockContinuationSupport();
+    public void Given_Do_Filter_Run_and_throttle_is_enabled_and_rate_is_N_then_request_is_parked_and_released() throws Exception {
+        mockParametersWithValues("0,5,throttle,1,10,30");
         ThrottleFilter.configure();
-        mockServletInputStream();
-        FieldUtils.writeDeclaredStaticField(ThrottleFilter.class, "action", 1, true);
+        mockAsyncContext();
         ThrottleFilter throttlefilter = new ThrottleFilter();
+        when(request.getPathInfo()).thenReturn("/123/fileName.txt");
+        long throttled = ThrottleFilter.getThrottledCount();
         throttlefilter.doFilter(request, response, filterchain);
-        verify(continuation, times(1)).undispatch();
-        verify(continuation, times(1)).suspend();
+        verify(filterchain, never()).doFilter(request, response);
+        verify(asynccontext, times(1)).setTimeout(30000L);
+        assertThat(ThrottleFilter.getParkedCount(), is(1));
+        assertThat(ThrottleFilter.getThrottledCount(), is(throttled + 1));
+
+        ThrottleFilter.releaseParked();
+        verify(request, times(1)).setAttribute(anyString(), any());
+        verify(asynccontext, times(1)).dispatch();
+        assertThat(ThrottleFilter.getParkedCount(), is(0));
+
+        when(request.getAttribute(anyString())).thenReturn(Boolean.TRUE);
+        throttlefilter.doFilter(request, response, filterchain);
+        verify(filterchain, times(1)).doFilter(request, response);
     }
 
+    @Test
+    public void Given_Do_Filter_Run_and_throttle_queue_is_full_then_request_gets_503_with_retry_after() throws Exception {
+        mockParametersWithValues("0,5,throttle,1,1,30");
+        ThrottleFilter.configure();
+        mockAsyncContext();
+        ThrottleFilter throttlefilter = new ThrottleFilter();
+        long rejected = ThrottleFilter.getRejectedCount();
+        throttlefilter.doFilter(request, response, filterchain);
+        throttlefilter.doFilter(request, response, filterchain);
+        verify(response, times(1)).setHeader("Retry-After", "30");
+        verify(response, times(1)).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+        verify(asynccontext, times(1)).complete();
+        assertThat(ThrottleFilter.getParkedCount(), is(1));
+        assertThat(ThrottleFilter.getRejectedCount(), is(rejected + 1));
+    }
 
     @Test
-    public void Given_Do_Filter_Run_and_enabled_and_action_is_true_and_rate_is_greater_than_0_and_getFeedId_returns_id_then_continuation_will_call_suspend_and_dispatch_once() throws Exception {
-        mockParametersWithValues("0,5,thing");
-        PowerMockito.mockStatic(ContinuationSupport.class);
-        PowerMockito.when(continuationsupport.getContinuation(any())).thenReturn(continuation);
+    public void Given_parked_request_times_out_then_request_gets_503_and_is_not_released() throws Exception {
+        mockParametersWithValues("0,5,throttle,1,10,30");
+        ThrottleFilter.configure();
+        mockAsyncContext();
+        ThrottleFilter throttlefilter = new ThrottleFilter();
+        long timedOut = ThrottleFilter.getTimedOutCount();
+        throttlefilter.doFilter(request, response, filterchain);
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asynccontext).addListener(listener.capture());
+        listener.getValue().onTimeout(new AsyncEvent(asynccontext));
+        verify(response, times(1)).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+        verify(asynccontext, times(1)).complete();
+        assertThat(ThrottleFilter.getTimedOutCount(), is(timedOut + 1));
+        ThrottleFilter.releaseParked();
+        verify(asynccontext, never()).dispatch();
+    }
+
+    @Test
+    public void Given_Do_Filter_Run_and_throttle_is_enabled_and_async_is_not_supported_then_connection_is_dropped() throws Exception {
+        mockParametersWithValues("0,5,throttle");
+        ServletInputStream serverinputstream = mock(ServletInputStream.class);
+        mockHttpConnectionHttpChannelAndRequest(serverinputstream);
         ThrottleFilter.configure();
-        mockServletInputStream();
-        FieldUtils.writeDeclaredStaticField(ThrottleFilter.class, "action", 1, true);
         ThrottleFilter throttlefilter = new ThrottleFilter();
-        when(request.getPathInfo()).thenReturn("/123/fileName.txt");
         throttlefilter.doFilter(request, response, filterchain);
-        verify(continuation, times(1)).undispatch();
-        verify(continuation, times(1)).suspend();
+        verify(request, never()).startAsync();
+        verify(httpchannel, times(1)).getEndPoint();
     }
 
     @Test
@@ -159,7 +212,7 @@ public class ThrottleFilterTest {
     @Test
     public void Given_run_is_called_then_continuation_will_call_prune_once() throws Exception {
         ThrottleFilter tf = new ThrottleFilter();
-        Map<String, ThrottleFilter.Counter> map = new HashMap<String, ThrottleFilter.Counter>();
+        Map<String, ThrottleFilter.Counter> map = new ConcurrentHashMap<String, ThrottleFilter.Counter>();
         ThrottleFilter.Counter tfc = mock(ThrottleFilter.Counter.class);
         map.put("Key", tfc);
         when(tfc.prune()).thenReturn(-1);
@@ -168,14 +221,37 @@ public class ThrottleFilterTest {
         verify(tfc, times(1)).prune();
     }
 
+    @Test
+    public void Given_Counter_Is_Full_Then_Rate_Stays_At_N() throws Exception {
+        FieldUtils.writeDeclaredStaticField(ThrottleFilter.class, "samplingPeriod", 5, true);
+        ThrottleFilter.Counter counter = new ThrottleFilter.Counter(3);
+        assertThat(counter.getRequestRate(), is(1));
+        assertThat(counter.getRequestRate(), is(2));
+        assertThat(counter.getRequestRate(), is(3));
+        assertThat(counter.getRequestRate(), is(3));
+        assertThat(counter.prune(), is(3));
+    }
+
+    @Test
+    public void Given_run_is_called_and_requests_are_older_than_M_minutes_then_counter_is_removed() throws Exception {
+        ThrottleFilter tf = new ThrottleFilter();
+        FieldUtils.writeDeclaredStaticField(ThrottleFilter.class, "samplingPeriod", 0, true);
+        Map<String, ThrottleFilter.Counter> map = new ConcurrentHashMap<String, ThrottleFilter.Counter>();
+        ThrottleFilter.Counter idle = new ThrottleFilter.Counter(3);
+        idle.getRequestRate();
+        map.put("Idle", idle);
+        FieldUtils.writeDeclaredStaticField(ThrottleFilter.class, "map", map, true);
+        Thread.sleep(5);
+        tf.run();
+        assertTrue(map.isEmpty());
+    }
+
     @Test
     public void Given_destroy_is_called_then_map_is_empty() throws Exception
     {
         ThrottleFilter throttleFilter = new ThrottleFilter();
         FilterConfig filterconfig = mock(FilterConfig.class);
         mockParametersWithValues("0,5,thing");
-        PowerMockito.mockStatic(ContinuationSupport.class);
-        PowerMockito.when(continuationsupport.getContinuation(any())).thenReturn(continuation);
 
         throttleFilter.init(filterconfig);
         throttleFilter.destroy();
@@ -186,25 +262,19 @@ public class ThrottleFilterTest {
         return mock(Parameters.class);
     }
 
-    private void mockServletInputStream() throws IOException {
-        ServletInputStream serverinputstream = mock(ServletInputStream.class);
-        when(serverinputstream.read(any())).thenReturn(2).thenReturn(1).thenReturn(0);
-        when(request.getInputStream()).thenReturn(serverinputstream);
-    }
-
     private void mockParametersWithValues(String values) {
         Parameters parameters = getParameters();
         PowerMockito.when(parameters.getParameter(anyString())).thenReturn(new Parameters("key", values));
     }
 
-    private void mockContinuationSupport() {
-        PowerMockito.mockStatic(ContinuationSupport.class);
-        PowerMockito.when(continuationsupport.getContinuation(any())).thenReturn(continuation);
+    private void mockAsyncContext() {
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync()).thenReturn(asynccontext);
+        when(asynccontext.getRequest()).thenReturn(request);
+        when(asynccontext.getResponse()).thenReturn(response);
     }
 
     private void mockHttpConnectionHttpChannelAndRequest(ServletInputStream serverinputstream) throws IOException {
-        PowerMockito.mockStatic(ContinuationSupport.class);
-        PowerMockito.when(continuationsupport.getContinuation(any())).thenReturn(continuation);
         when(serverinputstream.read(any())).thenReturn(2).thenReturn(1).thenReturn(0);
         when(request.getInputStream()).thenReturn(serverinputstream);
         PowerMockito.mockStatic(HttpConnection.class);